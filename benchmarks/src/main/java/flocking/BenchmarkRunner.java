@@ -0,0 +1,23 @@
+package flocking;
+
+import org.openjdk.jmh.Main;
+
+import java.util.Arrays;
+
+/**
+ * BenchmarkRunner class - runs the JMH benchmarks with the GC profiler, so
+ * every result also reports the allocation rate. arguments are passed on
+ * to JMH, and a -prof argument replaces the default profiler
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("-prof")) {
+            Main.main(args);
+            return;
+        }
+        String[] withProfiler = Arrays.copyOf(args, args.length + 2);
+        withProfiler[args.length] = "-prof";
+        withProfiler[args.length + 1] = "gc";
+        Main.main(withProfiler);
+    }
+}
@@ -0,0 +1,32 @@
+package flocking;
+
+/**
+ * BenchmarkWorlds class - creates populated engines for the benchmarks. the
+ * world grows with the number of vehicles, so every benchmark runs at the
+ * density of the default 600 vehicles on a 1920x1080 screen
+ */
+final class BenchmarkWorlds {
+    // the area of the world per vehicle, in square pixels
+    private static final float AREA_PER_VEHICLE = 1920f * 1080f / 600f;
+    private static final float ASPECT_RATIO = 16f / 9f;
+    static final long SEED = 42;
+
+    private BenchmarkWorlds() {
+    }
+
+    /**
+     * creates an engine holding about the given number of vehicles
+     *
+     * @param vehicles    - the total number of vehicles
+     * @param flocks      - the number of flocks the vehicles are split into
+     * @param storageMode - the way the engine holds its vehicles
+     * @return the populated engine
+     */
+    static FlockEngine create(int vehicles, int flocks, FlockEngine.StorageMode storageMode) {
+        int height = (int) Math.sqrt(vehicles * AREA_PER_VEHICLE / ASPECT_RATIO);
+        int width = (int) (height * ASPECT_RATIO);
+        FlockEngine engine = new FlockEngine(width, height, SEED, storageMode);
+        engine.populate(flocks, Math.max(1, vehicles / flocks));
+        return engine;
+    }
+}
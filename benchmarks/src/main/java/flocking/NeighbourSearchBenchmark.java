@@ -0,0 +1,70 @@
+package flocking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks the neighbour search of a single vehicle with every search
+ * the engine offers, on an index built once for the whole population
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourSearchBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    int vehicles;
+
+    @Param({"1", "6"})
+    int flocks;
+
+    private FlockEngine engine;
+    private ArrayList<Vehicle> flock;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = BenchmarkWorlds.create(vehicles, flocks, FlockEngine.StorageMode.OBJECTS);
+        flock = engine.getVehicles();
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.QUAD_TREE);
+        engine.rebuildNeighbourIndex();
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.GRID);
+        engine.rebuildNeighbourIndex();
+    }
+
+    private Vehicle nextVehicle() {
+        Vehicle v = flock.get(next);
+        next = (next + 1) % flock.size();
+        return v;
+    }
+
+    @Benchmark
+    public ArrayList<Vehicle> bruteForce() {
+        return nextVehicle().getNeighbours(flock);
+    }
+
+    @Benchmark
+    public ArrayList<Vehicle> quadTree() {
+        return nextVehicle().getNeighboursQuad();
+    }
+
+    @Benchmark
+    public ArrayList<Vehicle> grid() {
+        return nextVehicle().getNeighboursGrid(flock);
+    }
+}
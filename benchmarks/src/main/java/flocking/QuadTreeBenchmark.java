@@ -0,0 +1,121 @@
+package flocking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks building and querying a QuadTree of uniformly scattered
+ * points, at the vehicle density of the default screen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadTreeBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    int points;
+
+    @Param({"50", "150", "400"})
+    float visionRadius;
+
+    private QuadTree<Integer> tree;
+    // holds copies of the pooled points, which it moves in place
+    private QuadTree<Integer> movingTree;
+    private ArrayList<Point<Integer>> moving;
+    private float direction = 1;
+    private ArrayList<Point<Integer>> pool;
+    private float size;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(BenchmarkWorlds.SEED);
+        size = (float) Math.sqrt(points * 1920f * 1080f / 600f);
+        pool = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            pool.add(new Point<>(random.nextFloat() * size, random.nextFloat() * size, i));
+        }
+        tree = new QuadTree<>(new Square<>(size * 0.5f, size * 0.5f, size * 0.5f + Vehicle.RENDER_BUFFER));
+        fill();
+        movingTree = new QuadTree<>(new Square<>(size * 0.5f, size * 0.5f, size * 0.5f + Vehicle.RENDER_BUFFER),
+                Vehicle.MAX_SPEED);
+        moving = new ArrayList<>(points);
+        for (int i = 0; i < pool.size(); i++) {
+            Point<Integer> p = pool.get(i);
+            moving.add(new Point<>(p.getX(), p.getY(), p.getUserData()));
+            movingTree.insert(moving.get(i));
+        }
+    }
+
+    private void fill() {
+        for (int i = 0; i < pool.size(); i++) {
+            tree.insert(pool.get(i));
+        }
+    }
+
+    private Point<Integer> nextPoint() {
+        Point<Integer> p = pool.get(next);
+        next = (next + 1) % pool.size();
+        return p;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuadTree<Integer> insertAll() {
+        QuadTree<Integer> fresh = new QuadTree<>(new Square<>(size * 0.5f, size * 0.5f, size * 0.5f + Vehicle.RENDER_BUFFER));
+        for (int i = 0; i < pool.size(); i++) {
+            fresh.insert(pool.get(i));
+        }
+        return fresh;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuadTree<Integer> clearAndRefill() {
+        tree.clear();
+        fill();
+        return tree;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuadTree<Integer> moveAll() {
+        // every point moves by the maximum speed, alternately back and forth
+        direction = -direction;
+        float d = direction * Vehicle.MAX_SPEED;
+        for (int i = 0; i < moving.size(); i++) {
+            Point<Integer> p = moving.get(i);
+            movingTree.move(p, p.getX() + d, p.getY() + d);
+        }
+        return movingTree;
+    }
+
+    @Benchmark
+    public ArrayList<Point<Integer>> queryRange() {
+        Point<Integer> p = nextPoint();
+        return tree.queryRange(new Square<>(p.getX(), p.getY(), visionRadius));
+    }
+
+    @Benchmark
+    public void queryRadius(Blackhole blackhole) {
+        Point<Integer> p = nextPoint();
+        tree.queryRadius(p.getX(), p.getY(), visionRadius, blackhole::consume);
+    }
+}
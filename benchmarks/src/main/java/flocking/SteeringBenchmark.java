@@ -0,0 +1,103 @@
+package flocking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks the per vehicle steering functions against neighbour lists
+ * collected once, after the flocks had time to gather
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SteeringBenchmark {
+    // ticks run before collecting the neighbour lists
+    private static final int GATHER_TICKS = 100;
+    private static final int OBSTACLES = 50;
+
+    @Param({"1000", "10000"})
+    int vehicles;
+
+    @Param({"1", "6"})
+    int flocks;
+
+    private FlockEngine engine;
+    private ArrayList<Vehicle> flock;
+    private ArrayList<ArrayList<Vehicle>> neighbours;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = BenchmarkWorlds.create(vehicles, flocks, FlockEngine.StorageMode.OBJECTS);
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.GRID);
+        for (int i = 0; i < OBSTACLES; i++) {
+            engine.addObstacle(engine.random(0, engine.getWidth()), engine.random(0, engine.getHeight()));
+        }
+        engine.step(GATHER_TICKS);
+        engine.rebuildNeighbourIndex();
+        flock = engine.getVehicles();
+        neighbours = new ArrayList<>(flock.size());
+        for (Vehicle v : flock) {
+            neighbours.add(v.getNeighboursGrid(flock));
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (next + 1) % flock.size();
+        return i;
+    }
+
+    @Benchmark
+    public PVector alignment() {
+        int i = nextIndex();
+        return flock.get(i).alignment(neighbours.get(i));
+    }
+
+    @Benchmark
+    public PVector cohesion() {
+        int i = nextIndex();
+        return flock.get(i).cohesion(neighbours.get(i));
+    }
+
+    @Benchmark
+    public PVector separation() {
+        int i = nextIndex();
+        ArrayList<Vehicle> n = neighbours.get(i);
+        // separation divides by the number of neighbours, and is only called with some
+        return n.isEmpty() ? null : flock.get(i).separation(n);
+    }
+
+    @Benchmark
+    public Vehicle fusedSteering() {
+        int i = nextIndex();
+        ArrayList<Vehicle> n = neighbours.get(i);
+        Vehicle v = flock.get(i);
+        if (!n.isEmpty()) {
+            v.steer(n);
+        }
+        return v;
+    }
+
+    @Benchmark
+    public PVector obstacleAvoidance() {
+        return flock.get(nextIndex()).obstacleAvoidance(engine.getObstacleIndex());
+    }
+}
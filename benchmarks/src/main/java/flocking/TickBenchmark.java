@@ -0,0 +1,69 @@
+package flocking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks a full headless tick of the engine. a mode is a storage mode
+ * and a neighbour search joined by an underscore, e.g. ARRAYS_GRID. a
+ * million vehicles can be benchmarked with the indexed modes by passing
+ * -p vehicles=1000000. the topological interaction mode is benchmarked with
+ * -p nearest=7, and reordering the vehicles by Morton code every few ticks
+ * with e.g. -p reorder=10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int vehicles;
+
+    @Param({"6"})
+    int flocks;
+
+    @Param({"OBJECTS_BRUTE_FORCE", "OBJECTS_QUAD_TREE", "OBJECTS_GRID", "ARRAYS_BRUTE_FORCE", "ARRAYS_GRID",
+            "ARRAYS_VERLET", "ARRAYS_GRID_BATCHED"})
+    String mode;
+
+    // the number of nearest neighbours every vehicle reacts to, 0 for all in sight
+    @Param({"0"})
+    int nearest;
+
+    // the number of ticks between Morton code reorders, 0 to never reorder
+    @Param({"0"})
+    int reorder;
+
+    private FlockEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int split = mode.indexOf('_');
+        engine = BenchmarkWorlds.create(vehicles, flocks, FlockEngine.StorageMode.valueOf(mode.substring(0, split)));
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.valueOf(mode.substring(split + 1)));
+        for (int f = 0; f < flocks; f++) {
+            engine.setTopologicalNeighbours(f, nearest);
+        }
+        engine.setReorderInterval(reorder);
+    }
+
+    @Benchmark
+    public long tick() {
+        engine.step();
+        return engine.getTick();
+    }
+}
@@ -0,0 +1,130 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * drives an adaptive controller with synthetic tick times, checking that it
+ * settles on the fastest search, cuts slow trials short and moves the
+ * population towards the budget in bounded steps
+ */
+class AdaptiveControllerTest {
+    private static final long MILLI = 1_000_000;
+
+    @Test
+    void choosesTheFastestSearch() {
+        FlockEngine engine = engine(60);
+        AdaptiveController controller = new AdaptiveController(engine, 1);
+        Map<FlockEngine.NeighbourSearch, Long> nanos = new EnumMap<>(FlockEngine.NeighbourSearch.class);
+        nanos.put(FlockEngine.NeighbourSearch.BRUTE_FORCE, 5 * MILLI);
+        nanos.put(FlockEngine.NeighbourSearch.GRID, 3 * MILLI);
+        nanos.put(FlockEngine.NeighbourSearch.QUAD_TREE, 2 * MILLI);
+        Map<FlockEngine.NeighbourSearch, Integer> ticks = run(engine, controller, nanos);
+        assertEquals(FlockEngine.NeighbourSearch.QUAD_TREE, controller.getChoice());
+        assertEquals(FlockEngine.NeighbourSearch.QUAD_TREE, engine.getNeighbourSearch());
+        assertEquals(2.0, controller.getChosenMillis());
+        assertEquals(1, controller.getSwitches());
+        // every search was fast enough to be tried in full
+        for (int tried : ticks.values()) {
+            assertEquals(AdaptiveController.TRIAL_WARMUP_TICKS + AdaptiveController.TRIAL_TICKS, tried);
+        }
+    }
+
+    @Test
+    void cutsSlowTrialsShort() {
+        FlockEngine engine = engine(60);
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.GRID);
+        AdaptiveController controller = new AdaptiveController(engine, 1);
+        Map<FlockEngine.NeighbourSearch, Long> nanos = new EnumMap<>(FlockEngine.NeighbourSearch.class);
+        nanos.put(FlockEngine.NeighbourSearch.GRID, 2 * MILLI);
+        // slower than the cutoff, but within its square while warming up
+        nanos.put(FlockEngine.NeighbourSearch.BRUTE_FORCE, 3 * 2 * MILLI);
+        // slower than the square of the cutoff
+        nanos.put(FlockEngine.NeighbourSearch.QUAD_TREE, 5 * 2 * MILLI);
+        Map<FlockEngine.NeighbourSearch, Integer> ticks = run(engine, controller, nanos);
+        assertEquals(FlockEngine.NeighbourSearch.GRID, engine.getNeighbourSearch());
+        assertEquals(0, controller.getSwitches());
+        assertEquals(AdaptiveController.TRIAL_WARMUP_TICKS + AdaptiveController.TRIAL_TICKS,
+                (int) ticks.get(FlockEngine.NeighbourSearch.GRID));
+        assertEquals(AdaptiveController.TRIAL_WARMUP_TICKS + 1, (int) ticks.get(FlockEngine.NeighbourSearch.BRUTE_FORCE));
+        assertEquals(1, (int) ticks.get(FlockEngine.NeighbourSearch.QUAD_TREE));
+    }
+
+    @Test
+    void populationMovesTowardsTheBudgetInBoundedSteps() {
+        FlockEngine engine = engine(50);
+        AdaptiveController controller = new AdaptiveController(engine, 1);
+        // a tick takes 20 microseconds per vehicle with every search
+        long perVehicle = 20_000;
+        controller.setFrameBudget(8, 100, 300);
+        assertTrue(holdBudget(engine, controller, perVehicle, 8, 100, 300) > 0);
+        assertEquals(300, engine.size());
+
+        controller.setFrameBudget(2, 150, 300);
+        assertTrue(holdBudget(engine, controller, perVehicle, 2, 150, 300) < 0);
+        assertEquals(150, engine.size());
+    }
+
+    /**
+     * steps the engine with the given budget bounds until the population
+     * stays put, checking every change against the budget and the bounds
+     *
+     * @return the total change of the population
+     */
+    private static int holdBudget(FlockEngine engine, AdaptiveController controller, long perVehicle,
+                                  long budget, int min, int max) {
+        int start = engine.size();
+        int unchanged = 0;
+        // long enough for a trial of every search and a few adjustments
+        while (unchanged < 2 * AdaptiveController.MIN_SETTLED_TICKS) {
+            int n = engine.size();
+            engine.step();
+            controller.afterStep(engine, perVehicle * n);
+            int change = engine.size() - n;
+            if (change == 0) {
+                unchanged++;
+                continue;
+            }
+            unchanged = 0;
+            assertEquals(0, engine.getTick() % AdaptiveController.BUDGET_INTERVAL);
+            assertTrue(Math.abs(change) <= n * AdaptiveController.MAX_POPULATION_STEP + 1, "step " + change);
+            // towards the budget
+            assertEquals(perVehicle * n < budget * MILLI, change > 0);
+            assertTrue(engine.size() >= min && engine.size() <= max, "population " + engine.size());
+        }
+        return engine.size() - start;
+    }
+
+    /**
+     * steps the engine until the controller settled, timing every tick by
+     * the search it was stepped with
+     *
+     * @return the number of ticks every search was tried for
+     */
+    private static Map<FlockEngine.NeighbourSearch, Integer> run(FlockEngine engine, AdaptiveController controller,
+                                                                  Map<FlockEngine.NeighbourSearch, Long> nanos) {
+        Map<FlockEngine.NeighbourSearch, Integer> ticks = new EnumMap<>(FlockEngine.NeighbourSearch.class);
+        assertTrue(controller.isTrying());
+        while (controller.isTrying()) {
+            FlockEngine.NeighbourSearch search = engine.getNeighbourSearch();
+            ticks.merge(search, 1, Integer::sum);
+            engine.step();
+            controller.afterStep(engine, nanos.get(search));
+        }
+        assertFalse(controller.isTrying());
+        assertEquals(nanos.keySet(), ticks.keySet());
+        return ticks;
+    }
+
+    private static FlockEngine engine(int vehiclesPerFlock) {
+        FlockEngine engine = new FlockEngine(400, 300, 7, FlockEngine.StorageMode.OBJECTS);
+        engine.populate(3, vehiclesPerFlock);
+        return engine;
+    }
+}
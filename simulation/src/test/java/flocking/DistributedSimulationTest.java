@@ -0,0 +1,92 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PVector;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * runs a 2 by 2 tiling with its workers on threads of this process, and
+ * checks it against the same flock stepped in a single engine
+ */
+class DistributedSimulationTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int TICKS = 10;
+
+    @Test
+    void tiledRunKeepsEveryVehicleAndItsId() throws IOException, InterruptedException {
+        FlockEngine engine = world();
+        int n = engine.size();
+        int wrapping = n - 1;
+        TileLayout layout = new TileLayout(WIDTH, HEIGHT, 2, 2, engine.getParameters().gridCellSize());
+
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0)) {
+            String[] address = {"localhost", Integer.toString(server.getLocalPort())};
+            for (int t = 0; t < layout.tileCount(); t++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        TileWorker.main(address);
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            // gathering counts the vehicles of every tile and fails unless
+            // all n come back
+            DistributedSimulation.coordinate(engine, layout, server, TICKS, 1);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(TICKS, engine.getTick());
+        assertEquals(n, engine.size());
+
+        // the vehicle that left the right edge came back through the left one
+        FlockArrays arrays = engine.getArrays();
+        assertTrue(arrays.posX[wrapping] < WIDTH / 2f, "x " + arrays.posX[wrapping]);
+        assertEquals(2, arrays.flockNumber[wrapping]);
+        assertEquals(0.25f, arrays.alignmentCoefficient[wrapping]);
+        assertEquals(0.5f, arrays.cohesionCoefficient[wrapping]);
+        assertEquals(0.75f, arrays.separationCoefficient[wrapping]);
+
+        FlockEngine single = world();
+        single.setNeighbourSearch(FlockEngine.NeighbourSearch.GRID);
+        single.setThreads(1);
+        try {
+            single.step(TICKS);
+        } finally {
+            single.setThreads(0);
+        }
+        FlockArrays expected = single.getArrays();
+        for (int i = 0; i < n; i++) {
+            // the tiles sum the neighbours in another order
+            assertEquals(expected.posX[i], arrays.posX[i], 1e-2f, "vehicle " + i);
+            assertEquals(expected.posY[i], arrays.posY[i], 1e-2f, "vehicle " + i);
+        }
+    }
+
+    /**
+     * returns a seeded flock whose last vehicle is about to cross the right
+     * edge of the world
+     */
+    private static FlockEngine world() {
+        FlockEngine engine = new FlockEngine(WIDTH, HEIGHT, 21, FlockEngine.StorageMode.ARRAYS);
+        engine.populate(4, 60);
+        engine.addVehicle(WIDTH + Vehicle.RENDER_BUFFER - 1, HEIGHT / 2f, 4, 0, 0, 0, 2,
+                new PVector(0.25f, 0.5f, 0.75f));
+        return engine;
+    }
+}
@@ -0,0 +1,81 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * checks that the ids of the vehicles keep pointing at the same vehicles
+ * when the vehicles are reordered and some of them are removed
+ */
+class FlockEngineTest {
+    private static final int REORDER_INTERVAL = 5;
+    private static final int REMOVED = 37;
+
+    @Test
+    void idsFollowReorderedArrayVehicles() {
+        FlockEngine engine = new FlockEngine(800, 600, 13, FlockEngine.StorageMode.ARRAYS);
+        engine.populate(4, 60);
+        FlockArrays arrays = engine.getArrays();
+        int n = engine.size();
+        // a distinct set of coefficients per vehicle, to tell them apart
+        int[] flocks = new int[n];
+        for (int id = 0; id < n; id++) {
+            arrays.alignmentCoefficient[id] = 1 + id / 1000f;
+            arrays.cohesionCoefficient[id] = 1 + id / 2000f;
+            arrays.separationCoefficient[id] = 1 + id / 3000f;
+            flocks[id] = arrays.flockNumber[id];
+        }
+        engine.setReorderInterval(REORDER_INTERVAL);
+        engine.step(2 * REORDER_INTERVAL + 1);
+        assertTrue(engine.isReordered());
+        engine.removeVehicles(REMOVED);
+        engine.step(2 * REORDER_INTERVAL);
+
+        assertBijection(engine);
+        for (int id = 0; id < engine.size(); id++) {
+            int i = engine.indexOf(id);
+            assertEquals(flocks[id], arrays.flockNumber[i]);
+            assertEquals(1 + id / 1000f, arrays.alignmentCoefficient[i]);
+            assertEquals(1 + id / 2000f, arrays.cohesionCoefficient[i]);
+            assertEquals(1 + id / 3000f, arrays.separationCoefficient[i]);
+        }
+    }
+
+    @Test
+    void idsFollowReorderedObjectVehicles() {
+        FlockEngine engine = new FlockEngine(800, 600, 13, FlockEngine.StorageMode.OBJECTS);
+        engine.populate(4, 60);
+        ArrayList<Vehicle> byId = new ArrayList<>(engine.getVehicles());
+        engine.setReorderInterval(REORDER_INTERVAL);
+        engine.step(2 * REORDER_INTERVAL + 1);
+        assertTrue(engine.isReordered());
+        engine.removeVehicles(REMOVED);
+        engine.step(2 * REORDER_INTERVAL);
+
+        assertBijection(engine);
+        for (int id = 0; id < engine.size(); id++) {
+            assertSame(byId.get(id), engine.getVehicles().get(engine.indexOf(id)));
+        }
+    }
+
+    /**
+     * checks that the ids map onto every index once, and back
+     */
+    private static void assertBijection(FlockEngine engine) {
+        assertEquals(4 * 60 - REMOVED, engine.size());
+        boolean[] seen = new boolean[engine.size()];
+        for (int id = 0; id < engine.size(); id++) {
+            int i = engine.indexOf(id);
+            assertTrue(i >= 0 && i < engine.size());
+            assertFalse(seen[i]);
+            seen[i] = true;
+            assertEquals(id, engine.idOf(i));
+        }
+    }
+}
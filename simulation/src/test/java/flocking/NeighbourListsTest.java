@@ -0,0 +1,153 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * checks that the Verlet neighbour lists find exactly the neighbours the
+ * grid search finds, and step the flock as the grid search does, both on
+ * ticks with a few movers and on ticks where so many vehicles jumped that
+ * the lists are rebuilt
+ */
+class NeighbourListsTest {
+    private static final int TICKS = 120;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void verletMatchesGrid() throws IOException {
+        FlockEngine verlet = new FlockEngine(800, 600, 3, FlockEngine.StorageMode.ARRAYS);
+        verlet.populate(4, 100);
+        verlet.setNeighbourSearch(FlockEngine.NeighbourSearch.VERLET);
+        verlet.setReorderInterval(0);
+        verlet.setThreads(1);
+        FlockArrays flock = verlet.getArrays();
+        NeighbourLists lists = verlet.getNeighbourLists();
+        Random random = new Random(3);
+        boolean sawMovers = false;
+        long builds = -1;
+        int rebuildsAfterJumps = 0;
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                // a tenth of the flock jumps, which leaves them movers, or
+                // two fifths, which is more than a quarter and rebuilds the lists
+                if (tick % 20 == 5 || tick % 20 == 15) {
+                    int jumpers = tick % 20 == 5 ? flock.size() / 10 : flock.size() * 2 / 5;
+                    for (int k = 0; k < jumpers; k++) {
+                        int i = random.nextInt(flock.size());
+                        flock.posX[i] = random.nextFloat() * verlet.getWidth();
+                        flock.posY[i] = random.nextFloat() * verlet.getHeight();
+                    }
+                }
+                verlet.rebuildNeighbourIndex();
+                sawMovers |= lists.getMoverCount() > 0;
+                if (tick % 20 == 15 && lists.getBuilds() > builds) rebuildsAfterJumps++;
+                builds = lists.getBuilds();
+                for (int i = 0; i < flock.size(); i++) {
+                    assertArrayEquals(gridNeighbours(verlet, i), verletNeighbours(verlet, i), "vehicle " + i);
+                }
+
+                Path path = dir.resolve("tick.snapshot");
+                Snapshot.save(verlet, path);
+                FlockEngine grid = Snapshot.load(path, FlockEngine.StorageMode.ARRAYS);
+                grid.setNeighbourSearch(FlockEngine.NeighbourSearch.GRID);
+                grid.setReorderInterval(0);
+                grid.setThreads(1);
+                try {
+                    verlet.step();
+                    grid.step();
+                } finally {
+                    grid.setThreads(0);
+                }
+                FlockArrays expected = grid.getArrays();
+                for (int i = 0; i < flock.size(); i++) {
+                    // the neighbours are summed in another order
+                    assertEquals(expected.posX[i], flock.posX[i], 1e-3f);
+                    assertEquals(expected.posY[i], flock.posY[i], 1e-3f);
+                    assertEquals(expected.velX[i], flock.velX[i], 1e-3f);
+                    assertEquals(expected.velY[i], flock.velY[i], 1e-3f);
+                }
+            }
+        } finally {
+            verlet.setThreads(0);
+        }
+        assertTrue(sawMovers);
+        assertEquals(TICKS / 20, rebuildsAfterJumps);
+    }
+
+    /**
+     * returns the sorted ids of the neighbours of the given vehicle in the
+     * cells of the grid around it
+     */
+    private static int[] gridNeighbours(FlockEngine engine, int i) {
+        SpatialGrid grid = engine.getGrid();
+        FlockArrays flock = engine.getArrays();
+        int[] found = new int[flock.size()];
+        int count = 0;
+        int cx = grid.cellX(flock.posX[i]);
+        int cy = grid.cellY(flock.posY[i]);
+        for (int row = Math.max(0, cy - 1); row <= Math.min(grid.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(grid.columns - 1, cx + 1); col++) {
+                int cell = row * grid.columns + col;
+                for (int k = grid.cellStart[cell]; k < grid.cellStart[cell] + grid.cellCount[cell]; k++) {
+                    if (isNeighbour(engine, i, grid.ids[k])) found[count++] = grid.ids[k];
+                }
+            }
+        }
+        int[] sorted = Arrays.copyOf(found, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * returns the sorted ids of the neighbours of the given vehicle as the
+     * Verlet search finds them: in its list and among the movers around it,
+     * or on the grid if it is a mover itself. a vehicle found twice is
+     * returned twice
+     */
+    private static int[] verletNeighbours(FlockEngine engine, int i) {
+        NeighbourLists lists = engine.getNeighbourLists();
+        if (lists.moved[i]) return gridNeighbours(engine, i);
+        FlockArrays flock = engine.getArrays();
+        int[] found = new int[2 * flock.size()];
+        int count = 0;
+        for (int k = lists.start[i]; k < lists.start[i + 1]; k++) {
+            int j = lists.ids[k];
+            if (!lists.moved[j] && isNeighbour(engine, i, j)) found[count++] = j;
+        }
+        SpatialGrid movers = lists.moverGrid;
+        int cx = movers.cellX(flock.posX[i]);
+        int cy = movers.cellY(flock.posY[i]);
+        for (int row = Math.max(0, cy - 1); row <= Math.min(movers.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(movers.columns - 1, cx + 1); col++) {
+                int cell = row * movers.columns + col;
+                for (int k = movers.cellStart[cell]; k < movers.cellStart[cell] + movers.cellCount[cell]; k++) {
+                    int j = lists.moverCellIds[k];
+                    if (isNeighbour(engine, i, j)) found[count++] = j;
+                }
+            }
+        }
+        int[] sorted = Arrays.copyOf(found, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static boolean isNeighbour(FlockEngine engine, int i, int j) {
+        FlockArrays flock = engine.getArrays();
+        float radius = engine.getParameters().visionRadius;
+        float dx = flock.posX[j] - flock.posX[i];
+        float dy = flock.posY[j] - flock.posY[i];
+        float distSq = dx * dx + dy * dy;
+        return j != i && distSq <= radius * radius && Vehicle.inView(flock.velX[i], flock.velY[i], dx, dy, distSq);
+    }
+}
@@ -0,0 +1,91 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * checks that removing obstacles under a point removes every one of a
+ * cluster, and that the cells around a vehicle hold every obstacle it
+ * avoids
+ */
+class ObstacleIndexTest {
+
+    @Test
+    void removingAClusterLeavesNoneOfIt() {
+        FlockEngine engine = new FlockEngine(800, 600, 3, FlockEngine.StorageMode.ARRAYS);
+        ObstacleIndex index = engine.getObstacleIndex();
+        // a cluster across a cell edge, with obstacles on top of each other
+        float x = 0;
+        while (index.cellX(x) == index.cellX(0)) x++;
+        float y = 300;
+        for (int i = -2; i <= 2; i++) {
+            for (int j = -2; j <= 2; j++) {
+                engine.addObstacle(x + 3 * i, y + 3 * j);
+                engine.addObstacle(x + 3 * i, y + 3 * j);
+            }
+        }
+        engine.addObstacle(x + 100, y);
+        engine.addObstacle(x, y - 100);
+
+        engine.removeObstacle(x, y);
+        assertEquals(2, engine.getObstacles().size());
+        for (Obstacle o : engine.getObstacles()) {
+            assertTrue(Math.hypot(o.getX() - x, o.getY() - y) >= Obstacle.OBSTACLE_SIZE);
+            assertEquals(o, engine.getObstacles().get(o.slot));
+        }
+        int cells = 0;
+        for (int row = 0; row < index.rows; row++) {
+            for (int col = 0; col < index.columns; col++) {
+                ArrayList<Obstacle> cell = index.cell(col, row);
+                if (cell != null) cells += cell.size();
+            }
+        }
+        assertEquals(2, cells);
+    }
+
+    @Test
+    void cellsAroundAVehicleHoldEveryObstacleInRange() {
+        FlockParameters parameters = new FlockParameters(40, 4, 0.2f);
+        FlockEngine engine = new FlockEngine(800, 600, 3, FlockEngine.StorageMode.ARRAYS, parameters);
+        ObstacleIndex index = engine.getObstacleIndex();
+        Random random = new Random(5);
+        for (int k = 0; k < 400; k++) {
+            engine.addObstacle(random.nextFloat() * 800, random.nextFloat() * 600);
+        }
+        float range = (parameters.visionRadius + Obstacle.OBSTACLE_SIZE) * 1.25f;
+        for (int q = 0; q < 500; q++) {
+            float x = random.nextFloat() * 800;
+            float y = random.nextFloat() * 600;
+            HashSet<Obstacle> expected = new HashSet<>();
+            for (Obstacle o : engine.getObstacles()) {
+                if (inRange(o, x, y, range)) expected.add(o);
+            }
+            // the lookup the obstacle avoidance does
+            HashSet<Obstacle> found = new HashSet<>();
+            int cx = index.cellX(x);
+            int cy = index.cellY(y);
+            for (int row = Math.max(0, cy - 1); row <= Math.min(index.rows - 1, cy + 1); row++) {
+                for (int col = Math.max(0, cx - 1); col <= Math.min(index.columns - 1, cx + 1); col++) {
+                    ArrayList<Obstacle> cell = index.cell(col, row);
+                    if (cell == null) continue;
+                    for (Obstacle o : cell) {
+                        if (inRange(o, x, y, range)) found.add(o);
+                    }
+                }
+            }
+            assertEquals(expected, found);
+        }
+    }
+
+    private static boolean inRange(Obstacle o, float x, float y, float range) {
+        float dx = x - o.getX();
+        float dy = y - o.getY();
+        return dx * dx + dy * dy <= range * range;
+    }
+}
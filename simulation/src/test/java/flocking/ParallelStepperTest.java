@@ -0,0 +1,64 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * checks that stepping in parallel gives the same flock for any number of
+ * threads, and that stepping the flock in grid cell batches gives exactly
+ * the flock that stepping it vehicle by vehicle on the grid gives
+ */
+class ParallelStepperTest {
+    private static final long SEED = 42;
+    private static final int TICKS = 50;
+
+    @Test
+    void gridStepIsIdenticalForOneAndFourThreads() {
+        assertSame(run(FlockEngine.NeighbourSearch.GRID, 1), run(FlockEngine.NeighbourSearch.GRID, 4));
+    }
+
+    @Test
+    void bruteForceStepIsIdenticalForOneAndFourThreads() {
+        assertSame(run(FlockEngine.NeighbourSearch.BRUTE_FORCE, 1), run(FlockEngine.NeighbourSearch.BRUTE_FORCE, 4));
+    }
+
+    @Test
+    void batchedStepIsIdenticalToGridStep() {
+        assertSame(run(FlockEngine.NeighbourSearch.GRID, 1), run(FlockEngine.NeighbourSearch.GRID_BATCHED, 0));
+    }
+
+    @Test
+    void parallelBatchedStepIsIdenticalToGridStep() {
+        assertSame(run(FlockEngine.NeighbourSearch.GRID, 1), run(FlockEngine.NeighbourSearch.GRID_BATCHED, 4));
+    }
+
+    private static void assertSame(FlockArrays expected, FlockArrays actual) {
+        int n = expected.size();
+        assertArrayEquals(Arrays.copyOf(expected.posX, n), Arrays.copyOf(actual.posX, n));
+        assertArrayEquals(Arrays.copyOf(expected.posY, n), Arrays.copyOf(actual.posY, n));
+        assertArrayEquals(Arrays.copyOf(expected.velX, n), Arrays.copyOf(actual.velX, n));
+        assertArrayEquals(Arrays.copyOf(expected.velY, n), Arrays.copyOf(actual.velY, n));
+    }
+
+    /**
+     * steps a seeded flock, one of whose flocks reacts only to its nearest
+     * neighbours, and that is reordered every few ticks
+     */
+    private static FlockArrays run(FlockEngine.NeighbourSearch search, int threads) {
+        FlockEngine engine = new FlockEngine(800, 600, SEED, FlockEngine.StorageMode.ARRAYS);
+        engine.populate(4, 150);
+        engine.setTopologicalNeighbours(3, 7);
+        engine.setReorderInterval(10);
+        engine.setNeighbourSearch(search);
+        engine.setThreads(threads);
+        try {
+            engine.step(TICKS);
+        } finally {
+            engine.setThreads(0);
+        }
+        return engine.getArrays();
+    }
+}
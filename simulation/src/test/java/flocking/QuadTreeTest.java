@@ -0,0 +1,240 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * checks the radius query of a quad tree against a brute force scan while
+ * points are moved, removed and inserted at random, many of them exactly on
+ * the edges between nodes, and the far field query and steering against
+ * the radius query
+ */
+class QuadTreeTest {
+    private static final float SIZE = 1024;
+    private static final int POINTS = 500;
+    private static final int ROUNDS = 200;
+
+    @Test
+    void radiusQueryMatchesBruteForce() {
+        assertMatchesBruteForce(0, 1);
+    }
+
+    @Test
+    void looseRadiusQueryMatchesBruteForce() {
+        assertMatchesBruteForce(8, 2);
+    }
+
+    @Test
+    void farFieldCoversTheRadiusAndSkipsTheOwnNode() {
+        Random random = new Random(3);
+        float slack = 4;
+        int n = 4 * POINTS;
+        // flocks 0 to 2, and flock 3 for the point a query is made for
+        int[] flocks = new int[n];
+        float[] vx = new float[n];
+        float[] vy = new float[n];
+        QuadTree<Integer> tree = new QuadTree<>(new Square<>(SIZE / 2, SIZE / 2, SIZE / 2), slack);
+        ArrayList<Point<Integer>> points = new ArrayList<>();
+        for (int id = 0; id < n; id++) {
+            flocks[id] = id % 3;
+            vx[id] = random.nextFloat() * 8 - 4;
+            vy[id] = random.nextFloat() * 8 - 4;
+            Point<Integer> p = new Point<>(random.nextFloat() * SIZE, random.nextFloat() * SIZE, id);
+            tree.insert(p);
+            points.add(p);
+        }
+        QuadTree.FlockAccessor<Integer> accessor = new QuadTree.FlockAccessor<Integer>() {
+            @Override
+            public int flockOf(Integer id) {
+                return flocks[id];
+            }
+
+            @Override
+            public float velocityXOf(Integer id) {
+                return vx[id];
+            }
+
+            @Override
+            public float velocityYOf(Integer id) {
+                return vy[id];
+            }
+        };
+
+        int farNodes = 0;
+        for (int q = 0; q < 50; q++) {
+            Point<Integer> own = points.get(random.nextInt(n));
+            int flock = flocks[own.getUserData()];
+            flocks[own.getUserData()] = 3;
+            tree.aggregate(4, accessor);
+            // the point may have moved by up to the slack since
+            float x = own.getX() + random.nextFloat() * 2 * slack - slack;
+            float y = own.getY() + random.nextFloat() * 2 * slack - slack;
+            float radius = 150 + random.nextFloat() * 250;
+            double[] expected = new double[5];
+            for (Point<Integer> p : bruteForce(new HashSet<>(points), x, y, radius)) {
+                add(expected, 1, p.getX(), p.getY(), vx[p.getUserData()], vy[p.getUserData()]);
+            }
+            double[] actual = new double[5];
+            int[] far = new int[1];
+            // a node holding the point can only be narrow enough for large angles
+            float openingAngle = q % 2 == 0 ? 0.5f : 3;
+            tree.queryFarField(x, y, radius, openingAngle, slack,
+                    p -> add(actual, 1, p.getX(), p.getY(), vx[p.getUserData()], vy[p.getUserData()]),
+                    aggregates -> {
+                        far[0]++;
+                        assertEquals(0, aggregates[3 * QuadTree.AGG_STRIDE + QuadTree.AGG_COUNT]);
+                        for (int at = 0; at < aggregates.length; at += QuadTree.AGG_STRIDE) {
+                            add(actual, aggregates[at + QuadTree.AGG_COUNT], aggregates[at + QuadTree.AGG_X],
+                                    aggregates[at + QuadTree.AGG_Y], aggregates[at + QuadTree.AGG_VX],
+                                    aggregates[at + QuadTree.AGG_VY]);
+                        }
+                    });
+            farNodes += far[0];
+            // the aggregated nodes lie within the radius, so together with
+            // the points visited one by one they hold exactly the points in it
+            assertEquals(expected[0], actual[0]);
+            for (int k = 1; k < 5; k++) {
+                assertEquals(expected[k], actual[k], 1e-5 * expected[0] * SIZE);
+            }
+            flocks[own.getUserData()] = flock;
+        }
+        assertTrue(farNodes > 0);
+    }
+
+    @Test
+    void farFieldSteeringWithoutOpeningAngleIsExact() {
+        FlockEngine engine = farFieldEngine();
+        for (Vehicle v : engine.getVehicles()) {
+            PVector farField = farFieldSteering(v, 0);
+            PVector exact = exactSteering(v);
+            assertEquals(exact.x, farField.x);
+            assertEquals(exact.y, farField.y);
+        }
+    }
+
+    @Test
+    void farFieldAlignmentAndCohesionStayClose() {
+        FlockEngine engine = farFieldEngine();
+        // separation only counts the vehicles looked at one by one
+        for (Vehicle v : engine.getVehicles()) {
+            v.getCoefficientVector().z = 0;
+        }
+        float openingAngle = 0.5f;
+        engine.setOpeningAngle(openingAngle);
+        engine.rebuildNeighbourIndex();
+        double error = 0;
+        for (Vehicle v : engine.getVehicles()) {
+            PVector farField = farFieldSteering(v, openingAngle);
+            PVector exact = exactSteering(v);
+            error += PVector.dist(farField, exact);
+        }
+        error /= engine.size();
+        // about 0.0014 against steering forces of up to 2 * 0.2
+        assertTrue(error > 0);
+        assertTrue(error < 0.01, "mean error " + error);
+    }
+
+    /**
+     * returns an engine whose vehicles see far enough for many quad tree
+     * nodes to lie within their vision
+     */
+    private static FlockEngine farFieldEngine() {
+        FlockEngine engine = new FlockEngine(1024, 768, 3, FlockEngine.StorageMode.OBJECTS,
+                new FlockParameters(200, 4, 0.2f));
+        engine.populate(3, 300);
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.QUAD_TREE);
+        engine.step(10);
+        return engine;
+    }
+
+    private static PVector farFieldSteering(Vehicle v, float openingAngle) {
+        v.applyForce(new PVector(-v.getAccelerationX(), -v.getAccelerationY()));
+        v.steerFarField(openingAngle);
+        return new PVector(v.getAccelerationX(), v.getAccelerationY());
+    }
+
+    private static PVector exactSteering(Vehicle v) {
+        v.applyForce(new PVector(-v.getAccelerationX(), -v.getAccelerationY()));
+        ArrayList<Vehicle> neighbours = v.getNeighboursQuad();
+        if (!neighbours.isEmpty()) v.steer(neighbours);
+        return new PVector(v.getAccelerationX(), v.getAccelerationY());
+    }
+
+    private static void add(double[] sums, float count, float x, float y, float vx, float vy) {
+        sums[0] += count;
+        sums[1] += x;
+        sums[2] += y;
+        sums[3] += vx;
+        sums[4] += vy;
+    }
+
+    private static void assertMatchesBruteForce(float looseness, long seed) {
+        Random random = new Random(seed);
+        QuadTree<Integer> tree = new QuadTree<>(new Square<>(SIZE / 2, SIZE / 2, SIZE / 2), looseness);
+        ArrayList<Point<Integer>> points = new ArrayList<>();
+        HashSet<Point<Integer>> held = new HashSet<>();
+        for (int id = 0; id < POINTS; id++) {
+            Point<Integer> p = new Point<>(coordinate(random), coordinate(random), id);
+            points.add(p);
+            if (tree.insert(p)) held.add(p);
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int k = 0; k < POINTS / 10; k++) {
+                Point<Integer> p = points.get(random.nextInt(POINTS));
+                int op = random.nextInt(4);
+                if (op == 0) {
+                    tree.remove(p);
+                    held.remove(p);
+                } else if (op == 1) {
+                    // a small step, which a loose node absorbs
+                    float x = p.getX() + random.nextFloat() * 8 - 4;
+                    float y = p.getY() + random.nextFloat() * 8 - 4;
+                    if (tree.move(p, x, y)) held.add(p);
+                    else held.remove(p);
+                } else if (tree.move(p, coordinate(random), coordinate(random))) {
+                    held.add(p);
+                } else {
+                    held.remove(p);
+                }
+            }
+            assertEquals(held.size(), tree.size());
+            for (int q = 0; q < 10; q++) {
+                float x = coordinate(random);
+                float y = coordinate(random);
+                float radius = random.nextInt(3) == 0 ? 64 : random.nextFloat() * 200;
+                HashSet<Point<Integer>> found = new HashSet<>();
+                tree.queryRadius(x, y, radius, found::add);
+                assertEquals(bruteForce(held, x, y, radius), found);
+            }
+        }
+    }
+
+    /**
+     * returns a random coordinate, half of the time on the edge of a node
+     * at some depth, including the edges of the tree itself
+     */
+    private static float coordinate(Random random) {
+        if (random.nextBoolean()) {
+            return random.nextInt(17) * SIZE / 16;
+        }
+        return random.nextFloat() * (SIZE + 20) - 10;
+    }
+
+    private static HashSet<Point<Integer>> bruteForce(HashSet<Point<Integer>> held, float x, float y, float radius) {
+        HashSet<Point<Integer>> result = new HashSet<>();
+        for (Point<Integer> p : held) {
+            float dx = p.getX() - x;
+            float dy = p.getY() - y;
+            if (dx * dx + dy * dy <= radius * radius) result.add(p);
+        }
+        return result;
+    }
+}
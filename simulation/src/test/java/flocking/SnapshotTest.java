@@ -0,0 +1,83 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * checks that an engine restored from a snapshot continues exactly as the
+ * saved engine does
+ */
+class SnapshotTest {
+    private static final int TICKS = 40;
+    // parameters other than the defaults, which a restored engine must keep
+    private static final FlockParameters PARAMETERS = new FlockParameters(40, 3, 0.15f);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restoredArraysEngineStepsAsTheOriginal() throws IOException {
+        assertRoundTrip(FlockEngine.StorageMode.ARRAYS);
+    }
+
+    @Test
+    void restoredObjectsEngineStepsAsTheOriginal() throws IOException {
+        assertRoundTrip(FlockEngine.StorageMode.OBJECTS);
+    }
+
+    private void assertRoundTrip(FlockEngine.StorageMode storageMode) throws IOException {
+        FlockEngine original = new FlockEngine(800, 600, 11, storageMode, PARAMETERS);
+        original.populate(3, 100);
+        original.addObstacle(400, 300);
+        original.step(TICKS);
+        Path path = dir.resolve("flock.snapshot");
+        Snapshot.save(original, path);
+
+        FlockEngine restored = Snapshot.load(path, storageMode);
+        assertEquals(original.getTick(), restored.getTick());
+        assertEquals(original.getRandomState(), restored.getRandomState());
+        assertEquals(PARAMETERS.visionRadius, restored.getParameters().visionRadius);
+        assertEquals(PARAMETERS.maxSpeed, restored.getParameters().maxSpeed);
+        assertEquals(PARAMETERS.maxForce, restored.getParameters().maxForce);
+        original.step(TICKS);
+        restored.step(TICKS);
+        assertSameState(original, restored);
+        // the restored random numbers continue the original sequence
+        for (int k = 0; k < 10; k++) {
+            assertEquals(original.random(-10, 10), restored.random(-10, 10));
+        }
+    }
+
+    private static void assertSameState(FlockEngine expected, FlockEngine actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getObstacles().size(), actual.getObstacles().size());
+        if (expected.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+            FlockArrays a = expected.getArrays();
+            FlockArrays b = actual.getArrays();
+            for (int i = 0; i < a.size(); i++) {
+                assertEquals(a.posX[i], b.posX[i]);
+                assertEquals(a.posY[i], b.posY[i]);
+                assertEquals(a.velX[i], b.velX[i]);
+                assertEquals(a.velY[i], b.velY[i]);
+                assertEquals(a.flockNumber[i], b.flockNumber[i]);
+            }
+        } else {
+            ArrayList<Vehicle> a = expected.getVehicles();
+            ArrayList<Vehicle> b = actual.getVehicles();
+            for (int i = 0; i < a.size(); i++) {
+                assertEquals(a.get(i).getX(), b.get(i).getX());
+                assertEquals(a.get(i).getY(), b.get(i).getY());
+                assertEquals(a.get(i).getVelocityX(), b.get(i).getVelocityX());
+                assertEquals(a.get(i).getVelocityY(), b.get(i).getVelocityY());
+                assertEquals(a.get(i).getFlockNumber(), b.get(i).getFlockNumber());
+            }
+        }
+    }
+}
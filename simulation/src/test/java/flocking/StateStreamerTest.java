@@ -0,0 +1,197 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * checks that a {@link StreamClient} decodes the keyframes, delta frames and
+ * obstacle changes a {@link StateStreamer} sends over loopback, and that a
+ * slow client whose delta frames are dropped stays in step with the
+ * keyframes
+ */
+class StateStreamerTest {
+    private static final float POSITION_STEP = 1f / 8;
+    private static final int STALLED_TICKS = 200;
+
+    @Test
+    @Timeout(value = 60, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void clientDecodesEveryTick() throws IOException, InterruptedException {
+        FlockEngine engine = new FlockEngine(800, 600, 9, FlockEngine.StorageMode.ARRAYS);
+        engine.populate(3, 80);
+        engine.setReorderInterval(7);
+        try (StateStreamer streamer = new StateStreamer(new InetSocketAddress("127.0.0.1", 0),
+                engine.getWidth(), engine.getHeight(), POSITION_STEP, 10, 64);
+             StreamClient client = connect(streamer)) {
+            int keyframes = 0;
+            int deltas = 0;
+            for (int tick = 0; tick < 60; tick++) {
+                if (tick == 10) {
+                    engine.addObstacle(200, 150);
+                    engine.addObstacle(600, 450);
+                } else if (tick == 25) {
+                    engine.removeVehicles(15);
+                } else if (tick == 30) {
+                    engine.removeObstacle(200, 150);
+                }
+                engine.step();
+                publish(streamer, engine);
+                // read in step with the simulation, so no frame is dropped
+                assertTrue(client.next());
+                assertEquals(engine.getTick(), client.getTick());
+                verify(client, byId(engine), obstacles(engine));
+                if (client.getKeyframeTick() == client.getTick()) {
+                    keyframes++;
+                } else {
+                    deltas++;
+                }
+                if (tick == 25) {
+                    assertEquals(client.getTick(), client.getKeyframeTick());
+                }
+            }
+            assertTrue(keyframes > 0);
+            assertTrue(deltas > 0);
+            assertEquals(0, streamer.getDroppedFrames());
+        }
+    }
+
+    @Test
+    @Timeout(value = 120, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void slowClientSkipsDeltaFramesWithoutLosingTrack() throws Exception {
+        FlockEngine engine = new FlockEngine(1920, 1080, 11, FlockEngine.StorageMode.ARRAYS);
+        engine.populate(3, 1000);
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.GRID);
+        engine.addObstacle(500, 500);
+        Map<Long, float[]> expected = new ConcurrentHashMap<>();
+        try (StateStreamer streamer = new StateStreamer(new InetSocketAddress("127.0.0.1", 0),
+                engine.getWidth(), engine.getHeight(), POSITION_STEP, 30, 2);
+             StreamClient client = connect(streamer)) {
+            // the client reads nothing while the simulation runs ahead, and
+            // the simulation keeps running until the client caught up, as a
+            // dropped delta frame is only made up for by a later tick
+            CountDownLatch stalled = new CountDownLatch(1);
+            CountDownLatch caughtUp = new CountDownLatch(1);
+            Thread simulation = new Thread(() -> {
+                try {
+                    for (int tick = 0; caughtUp.getCount() > 0; tick++) {
+                        engine.step();
+                        expected.put(engine.getTick(), byId(engine));
+                        publish(streamer, engine);
+                        if (tick == STALLED_TICKS) stalled.countDown();
+                        if (tick >= STALLED_TICKS) Thread.sleep(2);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            simulation.start();
+            stalled.await();
+            int frames = 0;
+            long skipped = 0;
+            long lastTick = -1;
+            try {
+                while (client.getTick() <= STALLED_TICKS) {
+                    assertTrue(client.next());
+                    float[] frame = expected.get(client.getTick());
+                    assertNotNull(frame);
+                    verify(client, frame, null);
+                    assertTrue(client.getTick() > lastTick);
+                    if (lastTick >= 0) skipped += client.getTick() - lastTick - 1;
+                    lastTick = client.getTick();
+                    frames++;
+                }
+            } finally {
+                caughtUp.countDown();
+                simulation.join();
+            }
+            assertTrue(frames <= STALLED_TICKS);
+            assertTrue(skipped > 0);
+            assertTrue(streamer.getDroppedFrames() > 0);
+            verify(client, expected.get(client.getTick()), obstacles(engine));
+        }
+    }
+
+    /**
+     * connects a client to the given streamer and waits until the streamer
+     * accepted it
+     */
+    private static StreamClient connect(StateStreamer streamer) throws IOException, InterruptedException {
+        StreamClient client = new StreamClient("127.0.0.1", streamer.getPort());
+        while (streamer.getClientCount() == 0) {
+            Thread.sleep(1);
+        }
+        return client;
+    }
+
+    /**
+     * publishes the current tick, waiting until the streamer has a free
+     * buffer instead of dropping it
+     */
+    private static void publish(StateStreamer streamer, FlockEngine engine) throws InterruptedException {
+        while (true) {
+            long dropped = streamer.getDroppedTicks();
+            streamer.publish(engine);
+            if (streamer.getDroppedTicks() == dropped) return;
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * checks the decoded frame against the x, y, quantized heading and flock
+     * number of every vehicle, and against the obstacles unless null
+     */
+    private static void verify(StreamClient client, float[] frame, float[] obstacles) {
+        int n = frame.length / 4;
+        assertEquals(n, client.size());
+        for (int id = 0; id < n; id++) {
+            assertEquals(frame[4 * id], client.getX(id), POSITION_STEP / 2 + 1e-3f);
+            assertEquals(frame[4 * id + 1], client.getY(id), POSITION_STEP / 2 + 1e-3f);
+            assertEquals((int) frame[4 * id + 2], Math.round(client.getHeading(id)
+                    * TrajectoryRecorder.HEADING_STEPS / (float) (2 * Math.PI)));
+            assertEquals((int) frame[4 * id + 3], client.getFlockNumber(id));
+        }
+        if (obstacles == null) return;
+        assertEquals(obstacles.length / 2, client.getObstacleCount());
+        for (int k = 0; k < client.getObstacleCount(); k++) {
+            assertEquals(obstacles[2 * k], client.getObstacleX(k));
+            assertEquals(obstacles[2 * k + 1], client.getObstacleY(k));
+        }
+    }
+
+    /**
+     * returns the x, y, quantized heading and flock number of every vehicle,
+     * in the order of their ids
+     */
+    private static float[] byId(FlockEngine engine) {
+        FlockArrays arrays = engine.getArrays();
+        float[] frame = new float[4 * engine.size()];
+        for (int id = 0; id < engine.size(); id++) {
+            int i = engine.indexOf(id);
+            frame[4 * id] = arrays.posX[i];
+            frame[4 * id + 1] = arrays.posY[i];
+            frame[4 * id + 2] = TrajectoryRecorder.heading(arrays.velX[i], arrays.velY[i]);
+            frame[4 * id + 3] = arrays.flockNumber[i];
+        }
+        return frame;
+    }
+
+    private static float[] obstacles(FlockEngine engine) {
+        ArrayList<Obstacle> obstacles = engine.getObstacles();
+        float[] positions = new float[2 * obstacles.size()];
+        for (int k = 0; k < obstacles.size(); k++) {
+            positions[2 * k] = obstacles.get(k).getX();
+            positions[2 * k + 1] = obstacles.get(k).getY();
+        }
+        return positions;
+    }
+}
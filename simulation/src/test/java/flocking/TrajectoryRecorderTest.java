@@ -0,0 +1,84 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * checks that a recorded trajectory reads back as the quantized state of
+ * every recorded tick, across the keyframes forced by population changes
+ */
+class TrajectoryRecorderTest {
+    private static final float POSITION_STEP = 1f / 8;
+    private static final int TICKS = 60;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordingReadsBackWithinHalfAPositionStep() throws IOException {
+        FlockEngine engine = new FlockEngine(800, 600, 5, FlockEngine.StorageMode.ARRAYS);
+        engine.populate(3, 80);
+        engine.setReorderInterval(7);
+        Path path = dir.resolve("flock.trajectory");
+        TrajectoryRecorder recorder = new TrajectoryRecorder(path, engine.getWidth(), engine.getHeight(),
+                POSITION_STEP, 1000);
+        ArrayList<float[]> expected = new ArrayList<>();
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (tick == 15) {
+                engine.removeVehicles(20);
+            } else if (tick == 35) {
+                for (int k = 0; k < 10; k++) {
+                    engine.spawnVehicle(engine.indexOf(k), 400, 300, 1, -1);
+                }
+            }
+            engine.step();
+            recorder.record(engine);
+            expected.add(byId(engine));
+        }
+        recorder.close();
+        assertEquals(TICKS, recorder.getFrameCount());
+
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            for (int tick = 0; tick < TICKS; tick++) {
+                assertTrue(reader.next());
+                float[] frame = expected.get(tick);
+                int n = frame.length / 4;
+                assertEquals(tick + 1, reader.getTick());
+                assertEquals(n, reader.size());
+                for (int id = 0; id < n; id++) {
+                    assertEquals(frame[4 * id], reader.getX(id), POSITION_STEP / 2 + 1e-3f);
+                    assertEquals(frame[4 * id + 1], reader.getY(id), POSITION_STEP / 2 + 1e-3f);
+                    assertEquals((int) frame[4 * id + 2], Math.round(reader.getHeading(id)
+                            * TrajectoryRecorder.HEADING_STEPS / (float) (2 * Math.PI)));
+                    assertEquals((int) frame[4 * id + 3], reader.getFlockNumber(id));
+                }
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    /**
+     * returns the x, y, quantized heading and flock number of every vehicle,
+     * in the order of their ids
+     */
+    private static float[] byId(FlockEngine engine) {
+        FlockArrays arrays = engine.getArrays();
+        float[] frame = new float[4 * engine.size()];
+        for (int id = 0; id < engine.size(); id++) {
+            int i = engine.indexOf(id);
+            frame[4 * id] = arrays.posX[i];
+            frame[4 * id + 1] = arrays.posY[i];
+            frame[4 * id + 2] = TrajectoryRecorder.heading(arrays.velX[i], arrays.velY[i]);
+            frame[4 * id + 3] = arrays.flockNumber[i];
+        }
+        return frame;
+    }
+}
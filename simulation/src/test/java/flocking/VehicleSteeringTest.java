@@ -0,0 +1,89 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * checks the single pass steering against the separate alignment, cohesion
+ * and separation rules, with neighbours picked by distance and angle as
+ * before the squared tests replaced them
+ */
+class VehicleSteeringTest {
+    private static final long SEED = 7;
+    private static final int TICKS = 30;
+
+    @Test
+    void fusedSteeringMatchesPerRuleSteering() {
+        FlockEngine engine = new FlockEngine(800, 600, SEED, FlockEngine.StorageMode.OBJECTS);
+        engine.populate(4, 100);
+        engine.setNeighbourSearch(FlockEngine.NeighbourSearch.BRUTE_FORCE);
+        for (int tick = 0; tick < TICKS; tick++) {
+            engine.step();
+            ArrayList<Vehicle> flock = engine.getVehicles();
+            for (Vehicle v : flock) {
+                ArrayList<Vehicle> neighbours = v.getNeighbours(flock);
+                ArrayList<Vehicle> expected = perRuleNeighbours(v, flock, engine.getParameters().visionRadius);
+                assertEquals(expected.size(), neighbours.size());
+                for (int k = 0; k < expected.size(); k++) {
+                    assertSame(expected.get(k), neighbours.get(k));
+                }
+                if (neighbours.isEmpty()) continue;
+
+                PVector coefficients = v.getCoefficientVector();
+                PVector acceleration = new PVector(v.getAccelerationX(), v.getAccelerationY());
+                acceleration.add(v.alignment(expected).mult(coefficients.x));
+                acceleration.add(v.cohesion(expected).mult(coefficients.y));
+                acceleration.add(v.separation(expected).mult(coefficients.z));
+                v.steer(neighbours);
+                assertEquals(acceleration.x, v.getAccelerationX());
+                assertEquals(acceleration.y, v.getAccelerationY());
+            }
+        }
+    }
+
+    @Test
+    void arrayStepMatchesObjectStep() {
+        FlockEngine objects = new FlockEngine(800, 600, SEED, FlockEngine.StorageMode.OBJECTS);
+        FlockEngine arrays = new FlockEngine(800, 600, SEED, FlockEngine.StorageMode.ARRAYS);
+        objects.populate(4, 100);
+        arrays.populate(4, 100);
+        objects.setNeighbourSearch(FlockEngine.NeighbourSearch.BRUTE_FORCE);
+        arrays.setNeighbourSearch(FlockEngine.NeighbourSearch.BRUTE_FORCE);
+        objects.step(TICKS);
+        arrays.step(TICKS);
+        FlockArrays state = arrays.getArrays();
+        ArrayList<Vehicle> flock = objects.getVehicles();
+        for (int i = 0; i < flock.size(); i++) {
+            Vehicle v = flock.get(i);
+            assertEquals(v.getX(), state.posX[i]);
+            assertEquals(v.getY(), state.posY[i]);
+            assertEquals(v.getVelocityX(), state.velX[i]);
+            assertEquals(v.getVelocityY(), state.velY[i]);
+        }
+    }
+
+    /**
+     * returns the neighbours of the given vehicle as the per rule steering
+     * picked them, by the distance and the angle between vectors
+     */
+    private static ArrayList<Vehicle> perRuleNeighbours(Vehicle v, ArrayList<Vehicle> flock, float visionRadius) {
+        PVector position = new PVector(v.getX(), v.getY());
+        PVector velocity = new PVector(v.getVelocityX(), v.getVelocityY());
+        ArrayList<Vehicle> neighbours = new ArrayList<>();
+        for (Vehicle other : flock) {
+            if (other == v) continue;
+            PVector otherPosition = new PVector(other.getX(), other.getY());
+            if (PVector.dist(position, otherPosition) > visionRadius) continue;
+            float angle = PVector.angleBetween(velocity, PVector.sub(otherPosition, position));
+            if (!(Vehicle.MIN_VISION_ANGLE <= angle && angle <= Vehicle.MAX_VISION_ANGLE)) {
+                neighbours.add(other);
+            }
+        }
+        return neighbours;
+    }
+}
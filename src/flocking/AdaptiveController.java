@@ -0,0 +1,289 @@
+package flocking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * AdaptiveController class - tunes an engine at runtime from the measured
+ * time of its ticks. it tries every neighbour search the engine's storage
+ * supports for a few ticks and keeps the fastest, and tries them again
+ * when the population or the tick time drifts far from when it chose.
+ * with a frame budget it also adds or removes vehicles to hold the tick
+ * time near the budget
+ * <p>
+ * the controller is told the time of every tick by {@link
+ * FlockEngine#step}, and changes the engine between ticks on the thread
+ * stepping it
+ */
+class AdaptiveController {
+    // the number of ticks every neighbour search is tried for
+    static final int TRIAL_TICKS = 20;
+    // the first ticks of a trial, which build the search's index from
+    // scratch, are not measured
+    static final int TRIAL_WARMUP_TICKS = 2;
+    // a trial is cut short once a measured tick is this many times slower
+    // than the fastest search so far, or a warmup tick the square of it, so
+    // a slow search is never run for long
+    static final float TRIAL_CUTOFF = 2;
+    // the searches are tried again after this many ticks anyway, as the
+    // flocks gather and spread
+    static final int REEVALUATE_TICKS = 3000;
+    // the searches are tried again once the population changed by this
+    // fraction, or the smoothed tick time by this factor, since the choice,
+    // but not within this many ticks of it
+    static final float POPULATION_DRIFT = 0.25f;
+    static final float TIME_DRIFT = 1.5f;
+    static final int MIN_SETTLED_TICKS = 200;
+    // the weight of the latest tick in the smoothed tick time, and the most
+    // a tick counts as, relative to the smoothed time, so a single slow tick
+    // from e.g. a garbage collection does not move it far
+    static final float SMOOTHING = 0.1f;
+    static final float MAX_SAMPLE = 2;
+    // the population is adjusted every this many ticks, by at most this
+    // fraction, once the smoothed time is off the budget by more than the
+    // tolerance
+    static final int BUDGET_INTERVAL = 10;
+    static final float MAX_POPULATION_STEP = 0.1f;
+    static final float BUDGET_TOLERANCE = 0.1f;
+
+    private final List<FlockEngine.NeighbourSearch> candidates = new ArrayList<>();
+    private final SplittableRandom random;
+
+    // the frame budget in nanoseconds, 0 to keep the population, and the
+    // bounds of the population
+    private long budgetNanos = 0;
+    private int minVehicles = 0;
+    private int maxVehicles = Integer.MAX_VALUE;
+
+    // the trial in progress: the index of the tried candidate, or -1 when
+    // settled, the ticks measured so far and the best median so far
+    private int trial = -1;
+    private int trialTick = 0;
+    private final long[] trialTimes = new long[TRIAL_TICKS];
+    private FlockEngine.NeighbourSearch best;
+    private long bestNanos = Long.MAX_VALUE;
+
+    // the state the current choice was made in
+    private double smoothedNanos = 0;
+    private long chosenNanos = 0;
+    private int chosenPopulation = 0;
+    private long chosenTick = 0;
+    private long switches = 0;
+
+    /**
+     * constructor. the controller starts by trying every neighbour search
+     * the engine's storage supports
+     *
+     * @param engine - the engine to control
+     * @param seed   - the seed of the positions and velocities of added
+     *               vehicles
+     */
+    AdaptiveController(FlockEngine engine, long seed) {
+        this.random = new SplittableRandom(seed);
+        candidates.add(FlockEngine.NeighbourSearch.BRUTE_FORCE);
+        candidates.add(FlockEngine.NeighbourSearch.GRID);
+        if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+            candidates.add(FlockEngine.NeighbourSearch.VERLET);
+            candidates.add(FlockEngine.NeighbourSearch.GRID_BATCHED);
+        } else {
+            candidates.add(FlockEngine.NeighbourSearch.QUAD_TREE);
+        }
+        // the current search is tried first, so a slow alternative is cut short
+        candidates.remove(engine.getNeighbourSearch());
+        candidates.add(0, engine.getNeighbourSearch());
+        beginTrials(engine);
+    }
+
+    /**
+     * creates a controller as configured by the system properties: with
+     * -Dadaptive=true the neighbour search is chosen at runtime, and with
+     * -Dadaptive.budget=MILLIS the population is also adjusted to hold a
+     * tick within MILLIS milliseconds, between -Dadaptive.min and
+     * -Dadaptive.max vehicles
+     *
+     * @param engine - the engine to control
+     * @return the configured controller, or null if -Dadaptive is not set
+     */
+    static AdaptiveController fromSystemProperties(FlockEngine engine) {
+        if (!Boolean.getBoolean("adaptive")) return null;
+        AdaptiveController controller = new AdaptiveController(engine, System.nanoTime());
+        float budget = Float.parseFloat(System.getProperty("adaptive.budget", "0"));
+        if (budget > 0) {
+            controller.setFrameBudget(budget, Integer.getInteger("adaptive.min", 0),
+                    Integer.getInteger("adaptive.max", Integer.MAX_VALUE));
+        }
+        return controller;
+    }
+
+    /**
+     * makes the controller add or remove vehicles to hold the time of a
+     * tick near the given budget
+     *
+     * @param millis      - the budget in milliseconds, or 0 to keep the
+     *                    population
+     * @param minVehicles - the fewest vehicles to keep
+     * @param maxVehicles - the most vehicles to hold
+     */
+    void setFrameBudget(float millis, int minVehicles, int maxVehicles) {
+        if (millis < 0 || minVehicles < 0 || maxVehicles < minVehicles) {
+            throw new IllegalArgumentException("invalid frame budget " + millis + " ms for "
+                    + minVehicles + " .. " + maxVehicles + " vehicles");
+        }
+        this.budgetNanos = (long) (millis * 1e6);
+        this.minVehicles = minVehicles;
+        this.maxVehicles = maxVehicles;
+    }
+
+    /**
+     * takes the time of the tick just stepped, and tries the next search,
+     * settles on the fastest or adjusts the population as due
+     *
+     * @param engine - the engine that stepped
+     * @param nanos  - the time the tick took
+     */
+    void afterStep(FlockEngine engine, long nanos) {
+        if (trial >= 0) {
+            trial(engine, nanos);
+            return;
+        }
+        smoothedNanos += SMOOTHING * (Math.min(nanos, MAX_SAMPLE * smoothedNanos) - smoothedNanos);
+        int n = engine.size();
+        if (budgetNanos > 0 && engine.getTick() % BUDGET_INTERVAL == 0) {
+            holdBudget(engine, n);
+            n = engine.size();
+        }
+        long settled = engine.getTick() - chosenTick;
+        if (settled >= REEVALUATE_TICKS || settled >= MIN_SETTLED_TICKS
+                && (Math.abs(n - chosenPopulation) > POPULATION_DRIFT * chosenPopulation
+                || smoothedNanos > TIME_DRIFT * chosenNanos || smoothedNanos * TIME_DRIFT < chosenNanos)) {
+            beginTrials(engine);
+        }
+    }
+
+    /**
+     * measures a tick of the search on trial, moving on to the next search
+     * once it is done or too slow
+     */
+    private void trial(FlockEngine engine, long nanos) {
+        int measured = trialTick - TRIAL_WARMUP_TICKS;
+        if (measured >= 0) {
+            trialTimes[measured] = nanos;
+        }
+        trialTick++;
+        float cutoff = measured >= 0 ? TRIAL_CUTOFF : TRIAL_CUTOFF * TRIAL_CUTOFF;
+        boolean tooSlow = bestNanos != Long.MAX_VALUE && nanos > cutoff * bestNanos;
+        if (!tooSlow && trialTick < TRIAL_TICKS + TRIAL_WARMUP_TICKS) return;
+
+        long median = Long.MAX_VALUE;
+        if (!tooSlow) {
+            long[] sorted = Arrays.copyOf(trialTimes, TRIAL_TICKS);
+            Arrays.sort(sorted);
+            median = sorted[TRIAL_TICKS / 2];
+        }
+        if (median < bestNanos) {
+            bestNanos = median;
+            best = candidates.get(trial);
+        }
+        trial++;
+        trialTick = 0;
+        if (trial < candidates.size()) {
+            engine.setNeighbourSearch(candidates.get(trial));
+            return;
+        }
+
+        trial = -1;
+        if (best != engine.getNeighbourSearch()) {
+            engine.setNeighbourSearch(best);
+        }
+        if (best != candidates.get(0)) {
+            switches++;
+            // the new choice is tried first next time
+            candidates.remove(best);
+            candidates.add(0, best);
+        }
+        smoothedNanos = bestNanos;
+        chosenNanos = bestNanos;
+        chosenPopulation = engine.size();
+        chosenTick = engine.getTick();
+    }
+
+    /**
+     * starts trying every search, the current choice first
+     */
+    private void beginTrials(FlockEngine engine) {
+        trial = 0;
+        trialTick = 0;
+        best = null;
+        bestNanos = Long.MAX_VALUE;
+        engine.setNeighbourSearch(candidates.get(0));
+    }
+
+    /**
+     * adds or removes vehicles to bring the smoothed tick time towards the
+     * budget, assuming it grows linearly with the population
+     * <p>
+     * vehicles are removed by {@link FlockEngine#removeVehicles}, the most
+     * recently added first, so the ids of the others stay the same for
+     * recordings and streams. the vehicles this controller added, which
+     * joined random flocks, go first. after them the highest ids go, which
+     * {@link FlockEngine#populate} spreads evenly over the flocks, but which
+     * in an engine restored from a snapshot of reordered vehicles lie in one
+     * region of the world, so a flock there may disappear before the others
+     * shrink
+     */
+    private void holdBudget(FlockEngine engine, int n) {
+        double ratio = budgetNanos / Math.max(1, smoothedNanos);
+        if (Math.abs(ratio - 1) <= BUDGET_TOLERANCE) return;
+        ratio = Math.max(1 - MAX_POPULATION_STEP, Math.min(1 + MAX_POPULATION_STEP, ratio));
+        int target = Math.max(minVehicles, Math.min(maxVehicles, (int) Math.round(n * ratio)));
+        if (target < n) {
+            engine.removeVehicles(n - target);
+        } else if (target > n && n > 0) {
+            for (int k = n; k < target; k++) {
+                // a new vehicle joins the flock of a random vehicle, anywhere in the world
+                engine.spawnVehicle(random.nextInt(n),
+                        (float) random.nextDouble(engine.getWidth()), (float) random.nextDouble(engine.getHeight()),
+                        (float) random.nextDouble(-10, 10), (float) random.nextDouble(-10, 10));
+            }
+        }
+        // the time of the ticks before the change says little about the ones after it
+        smoothedNanos *= (double) target / n;
+    }
+
+    /**
+     * returns whether the controller is trying the searches
+     *
+     * @return true while a trial is in progress, false once settled
+     */
+    boolean isTrying() {
+        return trial >= 0;
+    }
+
+    FlockEngine.NeighbourSearch getChoice() {
+        return best;
+    }
+
+    /**
+     * returns the median tick time the chosen search was measured at
+     *
+     * @return the time in milliseconds
+     */
+    double getChosenMillis() {
+        return chosenNanos / 1e6;
+    }
+
+    /**
+     * returns the smoothed time of the latest ticks
+     *
+     * @return the time in milliseconds
+     */
+    double getSmoothedMillis() {
+        return smoothedNanos / 1e6;
+    }
+
+    long getSwitches() {
+        return switches;
+    }
+}
@@ -0,0 +1,647 @@
+package flocking;
+
+import java.util.ArrayList;
+
+/**
+ * ArrayStepper class - steps a flock held in {@link FlockArrays}. mirrors
+ * the vehicle by vehicle behaviour of {@link Vehicle#flock}, {@link
+ * Vehicle#update} and {@link Vehicle#edges} with primitive math only, so a
+ * tick allocates nothing. the alignment, cohesion and separation sums are
+ * gathered in a single pass over the candidate neighbours, or over the k
+ * nearest of them for flocks that interact topologically
+ */
+class ArrayStepper {
+    // the vectorized brute force kernel, or null to use the scalar loop
+    private static final BruteForceKernel VECTOR_KERNEL = BruteForceKernel.loadVectorKernel();
+
+    // the awareness and motion limits of the vehicles
+    private final float visionRadius;
+    private final float visionRadiusSq;
+    private final float maxSpeed;
+    private final float maxForce;
+
+    // the steering sums of the vehicle currently being stepped
+    private int neighbourCount;
+    private int flockmateCount;
+    private float alignmentX;
+    private float alignmentY;
+    private float cohesionX;
+    private float cohesionY;
+    private float separationX;
+    private float separationY;
+
+    // the sums written by the vectorized kernel
+    private final float[] sums = new float[BruteForceKernel.SUMS];
+
+    // the candidates around the cell being stepped in cell batches, copied
+    // into dense arrays
+    private int gatheredSize = 0;
+    private int[] gatheredIds = new int[0];
+    private int[] gatheredFlock = new int[0];
+    private float[] gatheredX = new float[0];
+    private float[] gatheredY = new float[0];
+    private float[] gatheredVX = new float[0];
+    private float[] gatheredVY = new float[0];
+
+    // the nearest neighbours of the vehicle currently being stepped, in
+    // the topological interaction mode
+    private final NearestNeighbours selected = new NearestNeighbours();
+
+    // the steering vector currently being calculated
+    private float steerX;
+    private float steerY;
+
+    // the phase times and neighbour counts, gathered only while counting
+    private final PhaseCounters counters = new PhaseCounters();
+    private boolean counting = false;
+
+    /**
+     * constructor
+     *
+     * @param parameters - the awareness and motion limits of the vehicles
+     */
+    ArrayStepper(FlockParameters parameters) {
+        this.visionRadius = parameters.visionRadius;
+        this.visionRadiusSq = parameters.visionRadius * parameters.visionRadius;
+        this.maxSpeed = parameters.maxSpeed;
+        this.maxForce = parameters.maxForce;
+    }
+
+    /**
+     * sets whether the time of every phase and the neighbour counts are
+     * gathered into this stepper's counters
+     *
+     * @param counting - true to gather, false to step without timing
+     */
+    void setCounting(boolean counting) {
+        this.counting = counting;
+    }
+
+    /**
+     * returns whether the brute force search runs on the vectorized kernel
+     *
+     * @return true if the vectorized kernel was loaded, false if the scalar
+     * loop is used
+     */
+    static boolean isVectorized() {
+        return VECTOR_KERNEL != null;
+    }
+
+    PhaseCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * advances every vehicle in the flock by a single tick, in id order
+     *
+     * @param flock     - the flock to step
+     * @param grid      - a grid index built over the flock at the start of
+     *                  the tick, or null to search neighbours by brute force
+     * @param lists     - neighbour lists updated at the start of the tick,
+     *                  or null to search the grid
+     * @param obstacles - the obstacles in the world
+     * @param nearest   - the number of nearest neighbours the vehicles of
+     *                  every flock react to, indexed by flock number, where
+     *                  0 or a missing flock reacts to every neighbour in sight
+     * @param width     - the width of the world
+     * @param height    - the height of the world
+     */
+    void step(FlockArrays flock, SpatialGrid grid, NeighbourLists lists, ObstacleIndex obstacles, int[] nearest,
+              int width, int height) {
+        for (int i = 0; i < flock.size(); i++) {
+            flock(flock, grid, lists, i, obstacles, nearest);
+            long start = counting ? System.nanoTime() : 0;
+            update(flock, i, flock);
+            edges(flock, i, width, height);
+            if (counting) counters.lap(PhaseCounters.Phase.INTEGRATION, start);
+        }
+    }
+
+    /**
+     * advances the vehicles with ids in [from, to) by a single tick, reading
+     * only the current state of the flock and writing their new positions
+     * and velocities into the next state, so the result does not depend on
+     * the order the vehicles are stepped in
+     *
+     * @param flock     - the current state of the flock
+     * @param grid      - a grid index built over the current state, or null
+     *                  to search neighbours by brute force
+     * @param lists     - neighbour lists updated over the current state, or
+     *                  null to search the grid
+     * @param obstacles - the obstacles in the world
+     * @param nearest   - the number of nearest neighbours the vehicles of
+     *                  every flock react to, indexed by flock number
+     * @param width     - the width of the world
+     * @param height    - the height of the world
+     * @param next      - the state to write the new positions and velocities to
+     * @param from      - the first id to step, inclusive
+     * @param to        - the last id to step, exclusive
+     */
+    void step(FlockArrays flock, SpatialGrid grid, NeighbourLists lists, ObstacleIndex obstacles, int[] nearest,
+              int width, int height, FlockArrays next, int from, int to) {
+        for (int i = from; i < to; i++) {
+            flock(flock, grid, lists, i, obstacles, nearest);
+            long start = counting ? System.nanoTime() : 0;
+            update(flock, i, next);
+            edges(next, i, width, height);
+            if (counting) counters.lap(PhaseCounters.Phase.INTEGRATION, start);
+        }
+    }
+
+    /**
+     * advances the vehicles in the grid cells [fromCell, toCell) by a single
+     * tick, as {@link #step(FlockArrays, SpatialGrid, NeighbourLists,
+     * ObstacleIndex, int[], int, int, FlockArrays, int, int)} does. the
+     * candidates of the 3 by 3 cells around a cell are gathered once into
+     * dense scratch arrays, and every vehicle of the cell is tested against
+     * them, so the grid is walked once per cell instead of once per vehicle.
+     * the flock is not modified until the whole tick is stepped, so the
+     * copies stay exact
+     *
+     * @param flock     - the current state of the flock
+     * @param grid      - a grid index built over the current state
+     * @param obstacles - the obstacles in the world
+     * @param nearest   - the number of nearest neighbours the vehicles of
+     *                  every flock react to, indexed by flock number
+     * @param width     - the width of the world
+     * @param height    - the height of the world
+     * @param next      - the state to write the new positions and velocities to
+     * @param fromCell  - the first cell to step, inclusive
+     * @param toCell    - the last cell to step, exclusive
+     */
+    void stepCells(FlockArrays flock, SpatialGrid grid, ObstacleIndex obstacles, int[] nearest, int width, int height,
+                   FlockArrays next, int fromCell, int toCell) {
+        for (int c = fromCell; c < toCell; c++) {
+            if (grid.cellCount[c] == 0) continue;
+            long start = counting ? System.nanoTime() : 0;
+            gather(flock, grid, c % grid.columns, c / grid.columns);
+            if (counting) counters.lap(PhaseCounters.Phase.NEIGHBOUR_SEARCH, start);
+            int end = grid.cellStart[c] + grid.cellCount[c];
+            for (int k = grid.cellStart[c]; k < end; k++) {
+                int i = grid.ids[k];
+                int f = flock.flockNumber[i];
+                if (f < nearest.length && nearest[f] > 0) {
+                    flock(flock, grid, null, i, obstacles, nearest);
+                } else {
+                    start = counting ? System.nanoTime() : 0;
+                    accumulateGathered(flock, i);
+                    if (counting) {
+                        start = counters.lap(PhaseCounters.Phase.NEIGHBOUR_SEARCH, start);
+                        counters.neighbours(neighbourCount);
+                    }
+                    steer(flock, i, obstacles, start);
+                }
+                start = counting ? System.nanoTime() : 0;
+                update(flock, i, next);
+                edges(next, i, width, height);
+                if (counting) counters.lap(PhaseCounters.Phase.INTEGRATION, start);
+            }
+        }
+    }
+
+    /**
+     * copies the vehicles of the 3 by 3 cells around the given cell into the
+     * gathered arrays, in the order {@link #flock} visits them
+     */
+    private void gather(FlockArrays flock, SpatialGrid grid, int cx, int cy) {
+        int size = 0;
+        for (int row = Math.max(0, cy - 1); row <= Math.min(grid.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(grid.columns - 1, cx + 1); col++) {
+                int cell = row * grid.columns + col;
+                size += grid.cellCount[cell];
+            }
+        }
+        if (gatheredIds.length < size) {
+            int capacity = Math.max(size, gatheredIds.length * 2);
+            gatheredIds = new int[capacity];
+            gatheredFlock = new int[capacity];
+            gatheredX = new float[capacity];
+            gatheredY = new float[capacity];
+            gatheredVX = new float[capacity];
+            gatheredVY = new float[capacity];
+        }
+        int m = 0;
+        for (int row = Math.max(0, cy - 1); row <= Math.min(grid.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(grid.columns - 1, cx + 1); col++) {
+                int cell = row * grid.columns + col;
+                int end = grid.cellStart[cell] + grid.cellCount[cell];
+                for (int k = grid.cellStart[cell]; k < end; k++) {
+                    int j = grid.ids[k];
+                    gatheredIds[m] = j;
+                    gatheredFlock[m] = flock.flockNumber[j];
+                    gatheredX[m] = flock.posX[j];
+                    gatheredY[m] = flock.posY[j];
+                    gatheredVX[m] = flock.velX[j];
+                    gatheredVY[m] = flock.velY[j];
+                    m++;
+                }
+            }
+        }
+        gatheredSize = m;
+    }
+
+    /**
+     * sets the steering sums of the given vehicle from the gathered
+     * candidates, as {@link #accumulate(FlockArrays, int, int[], int, int,
+     * boolean[])} does
+     */
+    private void accumulateGathered(FlockArrays flock, int i) {
+        neighbourCount = 0;
+        flockmateCount = 0;
+        alignmentX = alignmentY = 0;
+        cohesionX = cohesionY = 0;
+        separationX = separationY = 0;
+        accumulate(flock, i, gatheredIds, 0, gatheredSize, null,
+                gatheredFlock, gatheredX, gatheredY, gatheredVX, gatheredVY, true);
+    }
+
+    /**
+     * makes the given vehicle flock with its neighbours
+     *
+     * @param flock     - the flock holding the vehicle
+     * @param grid      - the grid index, or null for brute force
+     * @param lists     - the neighbour lists, or null to search the grid
+     * @param i         - the id of the vehicle
+     * @param obstacles - the obstacles in the world
+     * @param nearest   - the number of nearest neighbours of every flock
+     */
+    private void flock(FlockArrays flock, SpatialGrid grid, NeighbourLists lists, int i, ObstacleIndex obstacles,
+                       int[] nearest) {
+        neighbourCount = 0;
+        flockmateCount = 0;
+        alignmentX = alignmentY = 0;
+        cohesionX = cohesionY = 0;
+        separationX = separationY = 0;
+        long start = counting ? System.nanoTime() : 0;
+        int f = flock.flockNumber[i];
+        int k = f < nearest.length ? nearest[f] : 0;
+        if (k > 0) {
+            selectNearest(flock, grid, i, k);
+            accumulate(flock, i, selected.ids, 0, selected.size, null);
+        } else if (lists != null && !lists.moved[i]) {
+            // the cached list, whose movers may be anywhere by now, then
+            // the movers around the vehicle
+            accumulate(flock, i, lists.ids, lists.start[i], lists.start[i + 1], lists.moved);
+            SpatialGrid movers = lists.moverGrid;
+            int cx = movers.cellX(flock.posX[i]);
+            int cy = movers.cellY(flock.posY[i]);
+            for (int row = Math.max(0, cy - 1); row <= Math.min(movers.rows - 1, cy + 1); row++) {
+                for (int col = Math.max(0, cx - 1); col <= Math.min(movers.columns - 1, cx + 1); col++) {
+                    int cell = row * movers.columns + col;
+                    accumulate(flock, i, lists.moverCellIds, movers.cellStart[cell],
+                            movers.cellStart[cell] + movers.cellCount[cell], null);
+                }
+            }
+        } else if (grid == null && VECTOR_KERNEL != null) {
+            VECTOR_KERNEL.accumulate(flock, i, visionRadiusSq, sums);
+            neighbourCount = (int) sums[BruteForceKernel.NEIGHBOURS];
+            flockmateCount = (int) sums[BruteForceKernel.FLOCKMATES];
+            alignmentX = sums[BruteForceKernel.ALIGNMENT_X];
+            alignmentY = sums[BruteForceKernel.ALIGNMENT_Y];
+            cohesionX = sums[BruteForceKernel.COHESION_X];
+            cohesionY = sums[BruteForceKernel.COHESION_Y];
+            separationX = sums[BruteForceKernel.SEPARATION_X];
+            separationY = sums[BruteForceKernel.SEPARATION_Y];
+        } else if (grid == null) {
+            accumulate(flock, i, null, 0, flock.size(), null);
+        } else {
+            int cx = grid.cellX(flock.posX[i]);
+            int cy = grid.cellY(flock.posY[i]);
+            for (int row = Math.max(0, cy - 1); row <= Math.min(grid.rows - 1, cy + 1); row++) {
+                for (int col = Math.max(0, cx - 1); col <= Math.min(grid.columns - 1, cx + 1); col++) {
+                    int cell = row * grid.columns + col;
+                    accumulate(flock, i, grid.ids, grid.cellStart[cell], grid.cellStart[cell] + grid.cellCount[cell],
+                            null);
+                }
+            }
+        }
+        if (counting) {
+            // the steering sums are gathered along with the search
+            start = counters.lap(PhaseCounters.Phase.NEIGHBOUR_SEARCH, start);
+            counters.neighbours(neighbourCount);
+        }
+        steer(flock, i, obstacles, start);
+    }
+
+    /**
+     * applies the steering vectors of the given vehicle from its steering
+     * sums, and avoids the obstacles, if it has any neighbours
+     *
+     * @param flock     - the flock holding the vehicle
+     * @param i         - the id of the vehicle
+     * @param obstacles - the obstacles in the world
+     * @param start     - the time the steering starts at, when counting
+     */
+    private void steer(FlockArrays flock, int i, ObstacleIndex obstacles, long start) {
+        if (neighbourCount != 0) {
+            alignment(flock, i);
+            flock.accX[i] += steerX * flock.alignmentCoefficient[i];
+            flock.accY[i] += steerY * flock.alignmentCoefficient[i];
+            cohesion(flock, i);
+            flock.accX[i] += steerX * flock.cohesionCoefficient[i];
+            flock.accY[i] += steerY * flock.cohesionCoefficient[i];
+            separation(flock, i);
+            flock.accX[i] += steerX * flock.separationCoefficient[i];
+            flock.accY[i] += steerY * flock.separationCoefficient[i];
+            if (counting) start = counters.lap(PhaseCounters.Phase.STEERING, start);
+            obstacleAvoidance(flock, i, obstacles);
+            flock.accX[i] += steerX * Vehicle.OBSTACLE_AVOIDANCE_COEFFICIENT;
+            flock.accY[i] += steerY * Vehicle.OBSTACLE_AVOIDANCE_COEFFICIENT;
+            if (counting) counters.lap(PhaseCounters.Phase.OBSTACLES, start);
+        }
+    }
+
+    /**
+     * writes the steering sums of the given vehicle over every other vehicle
+     * of the flock, as the scalar brute force loop gathers them, in the
+     * layout a {@link BruteForceKernel} writes them in
+     *
+     * @param flock - the flock holding the vehicle
+     * @param i     - the id of the vehicle
+     * @param sums  - the array to write the sums to
+     */
+    void accumulateBruteForce(FlockArrays flock, int i, float[] sums) {
+        neighbourCount = 0;
+        flockmateCount = 0;
+        alignmentX = alignmentY = 0;
+        cohesionX = cohesionY = 0;
+        separationX = separationY = 0;
+        accumulate(flock, i, null, 0, flock.size(), null);
+        sums[BruteForceKernel.NEIGHBOURS] = neighbourCount;
+        sums[BruteForceKernel.FLOCKMATES] = flockmateCount;
+        sums[BruteForceKernel.ALIGNMENT_X] = alignmentX;
+        sums[BruteForceKernel.ALIGNMENT_Y] = alignmentY;
+        sums[BruteForceKernel.COHESION_X] = cohesionX;
+        sums[BruteForceKernel.COHESION_Y] = cohesionY;
+        sums[BruteForceKernel.SEPARATION_X] = separationX;
+        sums[BruteForceKernel.SEPARATION_Y] = separationY;
+    }
+
+    /**
+     * adds every candidate within the vision radius and vision angle of the
+     * given vehicle to its steering sums. the candidates are ids[from] ..
+     * ids[to - 1], or the ids from .. to - 1 themselves if ids is null,
+     * except the ones skip is true for. the tests use squared distances and
+     * dot products, so only a vehicle that turns out to be a neighbour costs
+     * a square root
+     */
+    private void accumulate(FlockArrays flock, int i, int[] ids, int from, int to, boolean[] skip) {
+        accumulate(flock, i, ids, from, to, skip,
+                flock.flockNumber, flock.posX, flock.posY, flock.velX, flock.velY, false);
+    }
+
+    /**
+     * adds every candidate within the vision radius and vision angle of the
+     * given vehicle to its steering sums, reading the candidates from the
+     * given columns. the columns are indexed by the candidates' ids, or, if
+     * dense, by k itself, as the gathered copies of the candidates are
+     */
+    private void accumulate(FlockArrays flock, int i, int[] ids, int from, int to, boolean[] skip,
+                            int[] flocks, float[] posX, float[] posY, float[] velX, float[] velY, boolean dense) {
+        float x = flock.posX[i];
+        float y = flock.posY[i];
+        float vx = flock.velX[i];
+        float vy = flock.velY[i];
+        int flockNumber = flock.flockNumber[i];
+        int count = neighbourCount;
+        int mates = flockmateCount;
+        float ax = alignmentX, ay = alignmentY;
+        float cx = cohesionX, cy = cohesionY;
+        float sx = separationX, sy = separationY;
+        for (int k = from; k < to; k++) {
+            int j = ids == null ? k : ids[k];
+            if (j == i || skip != null && skip[j]) continue;
+            int at = dense ? k : j;
+            float dx = posX[at] - x;
+            float dy = posY[at] - y;
+            float distSq = dx * dx + dy * dy;
+            if (distSq > visionRadiusSq || !Vehicle.inView(vx, vy, dx, dy, distSq)) continue;
+            count++;
+            if (flocks[at] == flockNumber) {
+                mates++;
+                ax += velX[at];
+                ay += velY[at];
+                cx += posX[at];
+                cy += posY[at];
+            }
+            if (distSq != 0) {
+                float dist = (float) Math.sqrt(distSq);
+                sx += (x - posX[at]) / dist;
+                sy += (y - posY[at]) / dist;
+            }
+        }
+        neighbourCount = count;
+        flockmateCount = mates;
+        alignmentX = ax;
+        alignmentY = ay;
+        cohesionX = cx;
+        cohesionY = cy;
+        separationX = sx;
+        separationY = sy;
+    }
+
+    /**
+     * selects the k nearest neighbours of the given vehicle into the
+     * selected heap. with a grid, the vehicle's own cell is searched first
+     * and a surrounding cell is skipped once it is farther than the k
+     * nearest so far, so in a dense cluster most cells are never scanned
+     */
+    private void selectNearest(FlockArrays flock, SpatialGrid grid, int i, int k) {
+        selected.reset(k);
+        if (grid == null) {
+            offer(flock, i, null, 0, flock.size());
+            return;
+        }
+        float x = flock.posX[i];
+        float y = flock.posY[i];
+        int cx = grid.cellX(x);
+        int cy = grid.cellY(y);
+        int own = cy * grid.columns + cx;
+        offer(flock, i, grid.ids, grid.cellStart[own], grid.cellStart[own] + grid.cellCount[own]);
+        for (int row = Math.max(0, cy - 1); row <= Math.min(grid.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(grid.columns - 1, cx + 1); col++) {
+                int cell = row * grid.columns + col;
+                if (cell == own || farther(grid.distanceSq(col, row, x, y), selected.bound())) continue;
+                offer(flock, i, grid.ids, grid.cellStart[cell], grid.cellStart[cell] + grid.cellCount[cell]);
+            }
+        }
+    }
+
+    /**
+     * whether every vehicle of a cell the given squared distance away is
+     * farther than the given squared distance. when stepping in place, a
+     * vehicle may have moved up to the max speed out of the cell it was
+     * indexed in
+     */
+    private boolean farther(float cellDistSq, float boundSq) {
+        float d = (float) Math.sqrt(cellDistSq) - maxSpeed;
+        return d > 0 && d * d > boundSq;
+    }
+
+    /**
+     * offers every candidate within the vision radius and vision angle of
+     * the given vehicle to the selected heap, the candidates being as in
+     * {@link #accumulate}
+     */
+    private void offer(FlockArrays flock, int i, int[] ids, int from, int to) {
+        float[] posX = flock.posX;
+        float[] posY = flock.posY;
+        float x = posX[i];
+        float y = posY[i];
+        float vx = flock.velX[i];
+        float vy = flock.velY[i];
+        for (int k = from; k < to; k++) {
+            int j = ids == null ? k : ids[k];
+            if (j == i) continue;
+            float dx = posX[j] - x;
+            float dy = posY[j] - y;
+            float distSq = dx * dx + dy * dy;
+            if (distSq > visionRadiusSq || distSq >= selected.bound() || !Vehicle.inView(vx, vy, dx, dy, distSq)) {
+                continue;
+            }
+            selected.offer(j, distSq);
+        }
+    }
+
+    /**
+     * calculates the alignment steering vector of the given vehicle from
+     * its steering sums
+     */
+    private void alignment(FlockArrays flock, int i) {
+        steerX = alignmentX;
+        steerY = alignmentY;
+        if (flockmateCount != 0) {
+            setMag(maxSpeed);
+            steerX -= flock.velX[i];
+            steerY -= flock.velY[i];
+            limit(maxForce);
+        }
+    }
+
+    /**
+     * calculates the cohesion steering vector of the given vehicle from its
+     * steering sums
+     */
+    private void cohesion(FlockArrays flock, int i) {
+        steerX = cohesionX;
+        steerY = cohesionY;
+        if (flockmateCount != 0) {
+            steerX /= flockmateCount;
+            steerY /= flockmateCount;
+            steerX -= flock.posX[i];
+            steerY -= flock.posY[i];
+            setMag(maxSpeed);
+            steerX -= flock.velX[i];
+            steerY -= flock.velY[i];
+            limit(maxForce);
+        }
+    }
+
+    /**
+     * calculates the separation steering vector of the given vehicle from
+     * its steering sums
+     */
+    private void separation(FlockArrays flock, int i) {
+        steerX = separationX / neighbourCount;
+        steerY = separationY / neighbourCount;
+        setMag(maxSpeed);
+        steerX -= flock.velX[i];
+        steerY -= flock.velY[i];
+        limit(maxForce);
+    }
+
+    /**
+     * calculates the obstacle avoidance steering vector of the given vehicle
+     */
+    private void obstacleAvoidance(FlockArrays flock, int i, ObstacleIndex obstacles) {
+        float x = flock.posX[i];
+        float y = flock.posY[i];
+        float sumX = 0;
+        float sumY = 0;
+        int cx = obstacles.cellX(x);
+        int cy = obstacles.cellY(y);
+        for (int row = Math.max(0, cy - 1); row <= Math.min(obstacles.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(obstacles.columns - 1, cx + 1); col++) {
+                ArrayList<Obstacle> cell = obstacles.cell(col, row);
+                if (cell == null) continue;
+                for (int k = 0; k < cell.size(); k++) {
+                    Obstacle o = cell.get(k);
+                    float dx = x - o.position.x;
+                    float dy = y - o.position.y;
+                    float range = (visionRadius + o.getObstacleSize()) * 1.25f;
+                    float distSq = dx * dx + dy * dy;
+                    if (distSq <= range * range) {
+                        float dist = (float) Math.sqrt(distSq);
+                        steerX = dx;
+                        steerY = dy;
+                        setMag(maxSpeed);
+                        float div = (dist + o.getObstacleSize()) * 1.2f;
+                        sumX += steerX / div;
+                        sumY += steerY / div;
+                    }
+                }
+            }
+        }
+        steerX = sumX;
+        steerY = sumY;
+    }
+
+    /**
+     * updates the velocity and position of the given vehicle and resets its
+     * acceleration
+     *
+     * @param flock - the flock holding the vehicle's current state
+     * @param i     - the id of the vehicle
+     * @param next  - the flock to write the vehicle's new state to, which
+     *              may be the same as flock
+     */
+    private void update(FlockArrays flock, int i, FlockArrays next) {
+        steerX = flock.velX[i] + flock.accX[i];
+        steerY = flock.velY[i] + flock.accY[i];
+        limit(maxSpeed);
+        next.velX[i] = steerX;
+        next.velY[i] = steerY;
+        next.posX[i] = flock.posX[i] + steerX;
+        next.posY[i] = flock.posY[i] + steerY;
+        flock.accX[i] *= 0;
+        flock.accY[i] *= 0;
+    }
+
+    /**
+     * wraps the given vehicle to the other side of the world if it exits it
+     */
+    private static void edges(FlockArrays flock, int i, int width, int height) {
+        if (flock.posX[i] < -Vehicle.RENDER_BUFFER)
+            flock.posX[i] = width + Vehicle.RENDER_BUFFER;
+        if (flock.posX[i] > width + Vehicle.RENDER_BUFFER)
+            flock.posX[i] = -Vehicle.RENDER_BUFFER;
+        if (flock.posY[i] < -Vehicle.RENDER_BUFFER)
+            flock.posY[i] = height + Vehicle.RENDER_BUFFER;
+        if (flock.posY[i] > height + Vehicle.RENDER_BUFFER)
+            flock.posY[i] = -Vehicle.RENDER_BUFFER;
+    }
+
+    /**
+     * sets the magnitude of the steering vector, as {@link
+     * processing.core.PVector#setMag} does
+     */
+    private void setMag(float mag) {
+        float m = (float) Math.sqrt(steerX * steerX + steerY * steerY);
+        if (m != 0 && m != 1) {
+            steerX /= m;
+            steerY /= m;
+        }
+        steerX *= mag;
+        steerY *= mag;
+    }
+
+    /**
+     * limits the magnitude of the steering vector, as {@link
+     * processing.core.PVector#limit} does
+     */
+    private void limit(float max) {
+        if (steerX * steerX + steerY * steerY > max * max) {
+            setMag(max);
+        }
+    }
+}
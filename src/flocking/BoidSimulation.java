@@ -0,0 +1,240 @@
+package flocking;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * BoidSimulation class - a Processing viewer that steps the flocking engine
+ * once per frame and draws its vehicles and obstacles
+ */
+public class BoidSimulation extends PApplet {
+    private static final PVector backgroundColor = new PVector(22, 0, 56);
+    private static final int NUM_OF_VEHICLES = 100;
+    private static final int NUM_OF_FLOCKS = 6;
+    // frame capture is configured at runtime with -Dcapture.format=png|raw_rgb|raw_video,
+    // -Dcapture.path, -Dcapture.frames and -Dcapture.encoders
+    private static final String CAPTURE_FORMAT = System.getProperty("capture.format");
+    private static final String CAPTURE_PATH = System.getProperty("capture.path", "output/boids1_####.png");
+    private static final int CAPTURE_FRAMES = Integer.getInteger("capture.frames", 45 * 90);
+    private static final int CAPTURE_ENCODERS = Integer.getInteger("capture.encoders", 4);
+    private static final int CAPTURE_BUFFERS = 8;
+    // a recording written by a TrajectoryRecorder is played back instead of
+    // running the simulation with -Dplayback.path
+    private static final String PLAYBACK_PATH = System.getProperty("playback.path");
+    // with -Dsim.rate=TICKS the engine is stepped on its own thread at TICKS
+    // ticks per second, and every frame draws the latest tick. without it
+    // the engine is stepped once per frame
+    private static final int SIMULATION_RATE = Integer.getInteger("sim.rate", 0);
+    // whether a frame drawn between two ticks of the simulation thread
+    // interpolates the vehicles' positions between them
+    private static final boolean INTERPOLATE = true;
+    private static final FlockEngine.StorageMode STORAGE_MODE = FlockEngine.StorageMode.OBJECTS;
+    private static final FlockEngine.NeighbourSearch NEIGHBOUR_SEARCH = FlockEngine.NeighbourSearch.BRUTE_FORCE;
+    // the number of nearest neighbours every vehicle reacts to, 0 for all in sight
+    private static final int TOPOLOGICAL_NEIGHBOURS = 0;
+    FlockEngine engine;
+    FlockRenderer renderer;
+    FrameCapture capture;
+    TrajectoryReader playback;
+    SimulationThread simulation;
+    // the metrics overlay is toggled with the 'm' key
+    boolean showMetrics = false;
+    static PVector[] colorArray = getFlockColors();
+
+    /**
+     * Method to get the flock colors
+     *
+     * @return - array of PVector objects representing the flock colors as RGB values
+     */
+    private static PVector[] getFlockColors() {
+        return new PVector[]{
+                new PVector(237, 174, 7),
+                new PVector(240, 41, 99),
+                new PVector(43, 90, 237),
+                new PVector(200, 200, 200),
+                new PVector(174, 8, 250),
+                new PVector(19, 92, 1)};
+    }
+
+    public static void main(String[] args) {
+        PApplet.main(BoidSimulation.class.getName(), args);
+    }
+
+    @Override
+    public void settings() {
+        fullScreen();
+    }
+
+
+    @Override
+    public void setup() {
+        background(backgroundColor.x, backgroundColor.y, backgroundColor.z);
+        engine = new FlockEngine(width, height, System.nanoTime(), STORAGE_MODE);
+        engine.setNeighbourSearch(NEIGHBOUR_SEARCH);
+        for (int f = 0; f < NUM_OF_FLOCKS; f++) {
+            engine.setTopologicalNeighbours(f, TOPOLOGICAL_NEIGHBOURS);
+        }
+        engine.populate(NUM_OF_FLOCKS, NUM_OF_VEHICLES);
+        // -Dadaptive=true picks the neighbour search at runtime, and
+        // -Dadaptive.budget=MILLIS also adjusts the population to it
+        engine.setController(AdaptiveController.fromSystemProperties(engine));
+        try {
+            engine.setMetrics(FrameMetrics.fromSystemProperties());
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot open the metrics sink", e);
+        }
+        // -Dstream.port=PORT streams every tick to external viewers
+        try {
+            engine.setStreamer(StateStreamer.fromSystemProperties(engine));
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot open the state stream", e);
+        }
+        renderer = new FlockRenderer(colorArray);
+        if (PLAYBACK_PATH != null) {
+            try {
+                playback = new TrajectoryReader(Paths.get(PLAYBACK_PATH));
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot open " + PLAYBACK_PATH, e);
+            }
+        }
+        if (SIMULATION_RATE > 0 && playback == null) {
+            simulation = new SimulationThread(engine, SIMULATION_RATE);
+            simulation.start();
+        }
+        if (CAPTURE_FORMAT != null) {
+            try {
+                capture = new FrameCapture(FrameCapture.Format.valueOf(CAPTURE_FORMAT.toUpperCase()), CAPTURE_PATH,
+                        width, height, CAPTURE_ENCODERS, CAPTURE_BUFFERS);
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot open " + CAPTURE_PATH, e);
+            }
+        }
+    }
+
+    @Override
+    public void draw() {
+
+        fill(backgroundColor.x, backgroundColor.y, backgroundColor.z, 30f);
+        rect(0, 0, width, height);
+        if (playback != null) {
+            playFrame();
+        } else if (simulation != null) {
+            RenderState state = simulation.latest();
+            renderer.render(g, state, INTERPOLATE ? simulation.alpha(state) : 1);
+            for (int k = 0; k < state.obstacleCount; k++) {
+                Obstacle.display(g, state.obstacleX[k], state.obstacleY[k]);
+            }
+        } else {
+            engine.step();
+            FrameMetrics metrics = engine.getMetrics();
+            long start = metrics == null ? 0 : System.nanoTime();
+            renderer.render(g, engine);
+            if (metrics != null) metrics.getCounters().lap(PhaseCounters.Phase.RENDERING, start);
+        }
+
+
+        int x = mouseX;
+        int y = mouseY;
+        if (mousePressed && mouseButton == LEFT) {
+            onEngine(e -> e.addObstacle(x, y));
+        }
+
+        if (mousePressed && mouseButton == RIGHT) {
+            onEngine(e -> e.removeObstacle(x, y));
+        }
+
+        if (simulation == null) {
+            for (Obstacle o : engine.getObstacles()) {
+                o.display(g);
+            }
+        }
+
+        if (showMetrics && engine.getMetrics() != null) {
+            fill(255);
+            textSize(14);
+            text(String.format("%.1f fps%n", frameRate) + engine.getMetrics().summary(), 10, 20);
+        }
+
+        if (capture != null) {
+            loadPixels();
+            capture.capture(pixels);
+            if (capture.getFrameCount() >= CAPTURE_FRAMES) {
+                capture.close();
+                capture = null;
+            }
+        }
+    }
+
+    @Override
+    public void keyPressed() {
+        if (key == 'm') {
+            showMetrics = !showMetrics;
+            // the overlay needs metrics, which are created on first use
+            if (showMetrics) {
+                onEngine(e -> {
+                    if (e.getMetrics() == null) e.setMetrics(new FrameMetrics());
+                });
+            }
+        }
+    }
+
+    /**
+     * makes a change to the engine, on the simulation thread if the engine
+     * runs on one
+     *
+     * @param change - the change to make
+     */
+    private void onEngine(Consumer<FlockEngine> change) {
+        if (simulation != null) {
+            simulation.post(() -> change.accept(engine));
+        } else {
+            change.accept(engine);
+        }
+    }
+
+    /**
+     * draws the next frame of the played back recording, stopping at its end
+     */
+    private void playFrame() {
+        try {
+            if (playback.next()) {
+                playback.display(g);
+            } else {
+                playback.close();
+                playback = null;
+                noLoop();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot read " + PLAYBACK_PATH, e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (simulation != null) {
+            simulation.stop();
+            simulation = null;
+        }
+        if (engine != null && engine.getMetrics() != null) {
+            try {
+                engine.getMetrics().close();
+            } catch (IOException e) {
+                System.err.println("cannot close the metrics sink: " + e);
+            }
+            engine.setMetrics(null);
+        }
+        if (engine != null && engine.getStreamer() != null) {
+            engine.getStreamer().close();
+            engine.setStreamer(null);
+        }
+        if (capture != null) {
+            capture.close();
+            capture = null;
+        }
+        super.dispose();
+    }
+}
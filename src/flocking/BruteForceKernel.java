@@ -0,0 +1,55 @@
+package flocking;
+
+/**
+ * a kernel gathering the steering sums of a vehicle over every other vehicle
+ * in a flock, for the brute force neighbour search of {@link ArrayStepper}.
+ * a vectorized kernel is loaded only when asked for, and when it is on the
+ * class path and the JVM can run it. the scalar loop of the stepper is used
+ * otherwise, so a seeded run does not depend on the CPU's vector width
+ */
+interface BruteForceKernel {
+    // the layout of the sums a kernel writes
+    int NEIGHBOURS = 0;
+    int FLOCKMATES = 1;
+    int ALIGNMENT_X = 2;
+    int ALIGNMENT_Y = 3;
+    int COHESION_X = 4;
+    int COHESION_Y = 5;
+    int SEPARATION_X = 6;
+    int SEPARATION_Y = 7;
+    int SUMS = 8;
+
+    // the class of the vectorized kernel, built only on JDK 17 and above
+    String VECTOR_KERNEL = "flocking.VectorBruteForceKernel";
+
+    /**
+     * gathers the steering sums of the given vehicle over every vehicle of
+     * the flock within its vision radius and vision angle, as {@link
+     * ArrayStepper} does for a brute force search
+     *
+     * @param flock          - the flock holding the vehicle
+     * @param i              - the id of the vehicle
+     * @param visionRadiusSq - the squared vision radius of the vehicles
+     * @param sums           - the array to write the sums to, with the
+     *                       counts as floats, in the layout of the
+     *                       constants above
+     */
+    void accumulate(FlockArrays flock, int i, float visionRadiusSq, float[] sums);
+
+    /**
+     * loads the vectorized kernel if -Dflocking.vector=true
+     *
+     * @return the vectorized kernel, or null if it is not enabled, not on the
+     * class path, or the jdk.incubator.vector module is not available
+     */
+    static BruteForceKernel loadVectorKernel() {
+        if (!Boolean.getBoolean("flocking.vector")) {
+            return null;
+        }
+        try {
+            return (BruteForceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
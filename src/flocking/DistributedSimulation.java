@@ -0,0 +1,262 @@
+package flocking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DistributedSimulation class - runs the flocking engine split over a grid
+ * of tiles, each stepped by its own {@link TileWorker} process, and
+ * coordinates them: it populates or loads the world, hands every worker
+ * the vehicles of its tile and the addresses of its neighbours, and gathers
+ * the vehicles of every worker into a single engine for recording and
+ * saving. the workers exchange halos and migrating vehicles directly with
+ * each other over sockets
+ * <p>
+ * usage: DistributedSimulation [ticks] [seed] [flocks] [vehiclesPerFlock] [width] [height] [columns] [rows]
+ * <p>
+ * the workers are started on this machine with the same class path, or
+ * with -Dworkers.spawn=false the coordinator waits on -Dcoordinator.port
+ * for columns * rows workers started elsewhere. the vehicles are gathered
+ * every -Dgather.interval ticks, every tick when recording or streaming,
+ * and after the last tick. -Dsnapshot.load, -Dsnapshot.save,
+ * -Dtrajectory.path, -Dtrajectory.step and the -Dstream properties are read
+ * as by {@link HeadlessSimulation}, and the gathered ticks are recorded and
+ * streamed, so a viewer can follow the run
+ */
+public class DistributedSimulation {
+    private static final int DEFAULT_TICKS = 1000;
+    private static final int DEFAULT_NUM_OF_FLOCKS = 6;
+    private static final int DEFAULT_NUM_OF_VEHICLES = 100;
+    private static final int DEFAULT_WIDTH = 1920;
+    private static final int DEFAULT_HEIGHT = 1080;
+    private static final int DEFAULT_COLUMNS = 2;
+    private static final int DEFAULT_ROWS = 2;
+    private static final float DEFAULT_TRAJECTORY_STEP = 1 / 8f;
+    private static final int TRAJECTORY_KEYFRAME_INTERVAL = 300;
+    private static final int SPAWN_TIMEOUT_MILLIS = 60_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int numOfFlocks = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_NUM_OF_FLOCKS;
+        int numOfVehicles = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_NUM_OF_VEHICLES;
+        int width = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_WIDTH;
+        int height = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_HEIGHT;
+        int columns = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_COLUMNS;
+        int rows = args.length > 7 ? Integer.parseInt(args[7]) : DEFAULT_ROWS;
+
+        String load = System.getProperty("snapshot.load");
+        String save = System.getProperty("snapshot.save");
+        String trajectory = System.getProperty("trajectory.path");
+        float trajectoryStep = Float.parseFloat(System.getProperty("trajectory.step",
+                Float.toString(DEFAULT_TRAJECTORY_STEP)));
+        boolean stream = System.getProperty("stream.port") != null;
+        int gatherInterval = Integer.getInteger("gather.interval", trajectory != null || stream ? 1 : 0);
+        boolean spawn = Boolean.parseBoolean(System.getProperty("workers.spawn", "true"));
+        int port = Integer.getInteger("coordinator.port", 0);
+
+        FlockEngine engine;
+        if (load != null) {
+            engine = Snapshot.load(Paths.get(load), FlockEngine.StorageMode.ARRAYS);
+        } else {
+            engine = new FlockEngine(width, height, seed, FlockEngine.StorageMode.ARRAYS);
+            engine.populate(numOfFlocks, numOfVehicles);
+        }
+        if (!engine.getObstacles().isEmpty()) {
+            throw new IllegalArgumentException("obstacles are not supported by the distributed simulation");
+        }
+        FlockParameters parameters = engine.getParameters();
+        TileLayout layout = new TileLayout(engine.getWidth(), engine.getHeight(), columns, rows,
+                parameters.gridCellSize());
+        if (trajectory != null) {
+            engine.setRecorder(new TrajectoryRecorder(Paths.get(trajectory), engine.getWidth(), engine.getHeight(),
+                    trajectoryStep, TRAJECTORY_KEYFRAME_INTERVAL));
+        }
+        engine.setStreamer(StateStreamer.fromSystemProperties(engine));
+
+        List<Process> processes = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            int tiles = layout.tileCount();
+            if (spawn) {
+                // a worker that fails to start never connects
+                server.setSoTimeout(SPAWN_TIMEOUT_MILLIS);
+                String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                for (int t = 0; t < tiles; t++) {
+                    processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            TileWorker.class.getName(), "localhost", Integer.toString(server.getLocalPort()))
+                            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                            .redirectError(ProcessBuilder.Redirect.INHERIT)
+                            .start());
+                }
+            } else {
+                System.out.println("waiting for " + tiles + " workers: java " + TileWorker.class.getName()
+                        + " HOST " + server.getLocalPort());
+            }
+            coordinate(engine, layout, server, ticks, gatherInterval);
+        } finally {
+            for (Process process : processes) {
+                if (process.waitFor() != 0) {
+                    System.err.println("a tile worker exited with " + process.exitValue());
+                }
+            }
+        }
+
+        if (engine.getRecorder() != null) {
+            engine.getRecorder().close();
+            engine.setRecorder(null);
+        }
+        if (engine.getStreamer() != null) {
+            engine.getStreamer().close();
+            engine.setStreamer(null);
+        }
+        if (save != null) {
+            Snapshot.save(engine, Paths.get(save));
+        }
+    }
+
+    /**
+     * accepts a worker for every tile, steps the engine's vehicles on them
+     * for the given number of ticks and gathers the vehicles back into the
+     * engine, recording and streaming every gathered tick
+     *
+     * @param engine         - the engine holding the vehicles to step, in
+     *                       array storage and without obstacles
+     * @param layout         - the tiles to split the world into
+     * @param server         - the socket the workers connect to
+     * @param ticks          - the number of ticks to step
+     * @param gatherInterval - the number of ticks between gathers, or 0 to
+     *                       gather only after the last tick
+     * @throws IOException if a worker fails
+     */
+    static void coordinate(FlockEngine engine, TileLayout layout, ServerSocket server, int ticks, int gatherInterval)
+            throws IOException {
+        List<Socket> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < layout.tileCount(); t++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                workers.add(socket);
+            }
+            run(engine, layout, workers, ticks, gatherInterval);
+        } finally {
+            for (Socket socket : workers) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * hands the workers their tiles, vehicles and neighbours, then gathers
+     * their vehicles into the engine until the last tick
+     */
+    private static void run(FlockEngine engine, TileLayout layout, List<Socket> workers,
+                            int ticks, int gatherInterval) throws IOException {
+        FlockArrays arrays = engine.getArrays();
+        FlockParameters parameters = engine.getParameters();
+        int n = engine.size();
+        int tiles = layout.tileCount();
+        int[] tileOf = new int[n];
+        int[] counts = new int[tiles];
+        for (int i = 0; i < n; i++) {
+            tileOf[i] = layout.tileOf(arrays.posX[i], arrays.posY[i]);
+            counts[tileOf[i]]++;
+        }
+
+        List<DataInputStream> ins = new ArrayList<>();
+        List<DataOutputStream> outs = new ArrayList<>();
+        for (int t = 0; t < tiles; t++) {
+            Socket socket = workers.get(t);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ins.add(in);
+            outs.add(out);
+            out.writeInt(t);
+            out.writeInt(engine.getWidth());
+            out.writeInt(engine.getHeight());
+            out.writeInt(layout.columns);
+            out.writeInt(layout.rows);
+            out.writeFloat(parameters.visionRadius);
+            out.writeFloat(parameters.maxSpeed);
+            out.writeFloat(parameters.maxForce);
+            out.writeLong(engine.getTick());
+            out.writeInt(ticks);
+            out.writeInt(gatherInterval);
+            out.writeInt(counts[t]);
+            for (int i = 0; i < n; i++) {
+                if (tileOf[i] == t) TileWorker.writeVehicle(out, arrays, i, i);
+            }
+            out.flush();
+        }
+
+        // every worker is told the address of every worker it may exchange vehicles with
+        int[] ports = new int[tiles];
+        for (int t = 0; t < tiles; t++) {
+            ports[t] = ins.get(t).readInt();
+        }
+        for (int t = 0; t < tiles; t++) {
+            List<Integer> peers = layout.peers(t);
+            DataOutputStream out = outs.get(t);
+            out.writeInt(peers.size());
+            for (int peer : peers) {
+                out.writeInt(peer);
+                out.writeUTF(workers.get(peer).getInetAddress().getHostAddress());
+                out.writeInt(ports[peer]);
+            }
+            out.flush();
+        }
+
+        long start = System.nanoTime();
+        for (int t = 1; t <= ticks; t++) {
+            if (t != ticks && (gatherInterval == 0 || t % gatherInterval != 0)) continue;
+            long tick = 0;
+            int gathered = 0;
+            for (DataInputStream in : ins) {
+                tick = in.readLong();
+                int count = in.readInt();
+                for (int k = 0; k < count; k++) {
+                    readGathered(in, arrays);
+                }
+                gathered += count;
+            }
+            if (gathered != n) {
+                throw new IllegalStateException("gathered " + gathered + " of " + n + " vehicles at tick " + tick);
+            }
+            engine.setTick(tick);
+            if (engine.getRecorder() != null) {
+                engine.getRecorder().record(engine);
+            }
+            if (engine.getStreamer() != null) {
+                engine.getStreamer().publish(engine);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("ticks: " + ticks + ", vehicles: " + n + ", tiles: " + tiles
+                + ", seconds: " + seconds + ", ticks/s: " + ticks / seconds);
+    }
+
+    /**
+     * reads a vehicle written by {@link TileWorker#writeVehicle} over the
+     * vehicle with its id, which the vehicles keep across the tiles
+     */
+    private static void readGathered(DataInputStream in, FlockArrays arrays) throws IOException {
+        int id = in.readInt();
+        arrays.posX[id] = in.readFloat();
+        arrays.posY[id] = in.readFloat();
+        arrays.velX[id] = in.readFloat();
+        arrays.velY[id] = in.readFloat();
+        arrays.accX[id] = 0;
+        arrays.accY[id] = 0;
+        arrays.flockNumber[id] = in.readInt();
+        arrays.alignmentCoefficient[id] = in.readFloat();
+        arrays.cohesionCoefficient[id] = in.readFloat();
+        arrays.separationCoefficient[id] = in.readFloat();
+    }
+}
@@ -0,0 +1,217 @@
+package flocking;
+
+import java.util.Arrays;
+
+/**
+ * FlockArrays class - structure-of-arrays storage of a flock. every vehicle
+ * is an index into flat primitive arrays, so stepping the flock chases no
+ * pointers and allocates no objects
+ */
+class FlockArrays {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // kinematic state, indexed by vehicle id
+    float[] posX;
+    float[] posY;
+    float[] velX;
+    float[] velY;
+    float[] accX;
+    float[] accY;
+
+    // flock fields, indexed by vehicle id
+    int[] flockNumber;
+    float[] alignmentCoefficient;
+    float[] cohesionCoefficient;
+    float[] separationCoefficient;
+
+    // the number of vehicles held
+    private int size = 0;
+
+    // the columns a reorder gathers into, swapped with the reordered ones
+    private float[] spare = new float[0];
+    private int[] spareInts = new int[0];
+
+    /**
+     * constructor. creates an empty storage with a default capacity
+     */
+    FlockArrays() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * constructor. creates an empty storage with the given capacity
+     *
+     * @param capacity - the initial number of vehicles the storage can hold
+     */
+    FlockArrays(int capacity) {
+        capacity = Math.max(1, capacity);
+        posX = new float[capacity];
+        posY = new float[capacity];
+        velX = new float[capacity];
+        velY = new float[capacity];
+        accX = new float[capacity];
+        accY = new float[capacity];
+        flockNumber = new int[capacity];
+        alignmentCoefficient = new float[capacity];
+        cohesionCoefficient = new float[capacity];
+        separationCoefficient = new float[capacity];
+    }
+
+    /**
+     * adds a vehicle with zero acceleration to the storage
+     *
+     * @param x                     - the vehicle's x coordinate
+     * @param y                     - the vehicle's y coordinate
+     * @param vx                    - the vehicle's x velocity
+     * @param vy                    - the vehicle's y velocity
+     * @param flock                 - the number of the flock of the vehicle
+     * @param alignment             - the vehicle's alignment coefficient
+     * @param cohesion              - the vehicle's cohesion coefficient
+     * @param separation            - the vehicle's separation coefficient
+     * @return the id of the new vehicle
+     */
+    int add(float x, float y, float vx, float vy, int flock,
+            float alignment, float cohesion, float separation) {
+        if (size == posX.length) {
+            grow(size * 2);
+        }
+        posX[size] = x;
+        posY[size] = y;
+        velX[size] = vx;
+        velY[size] = vy;
+        accX[size] = 0;
+        accY[size] = 0;
+        flockNumber[size] = flock;
+        alignmentCoefficient[size] = alignment;
+        cohesionCoefficient[size] = cohesion;
+        separationCoefficient[size] = separation;
+        return size++;
+    }
+
+    /**
+     * grows the storage, if needed, to hold at least the given number of
+     * vehicles
+     *
+     * @param capacity - the number of vehicles the storage must hold
+     */
+    void ensureCapacity(int capacity) {
+        if (posX.length < capacity) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * sets the number of vehicles held, growing the storage if needed. the
+     * state of vehicles added this way is whatever the arrays held before
+     *
+     * @param size - the new number of vehicles
+     */
+    void setSize(int size) {
+        ensureCapacity(size);
+        this.size = size;
+    }
+
+    /**
+     * swaps the positions and velocities of this storage with those of the
+     * other storage, which is used as a second state buffer
+     *
+     * @param other - the storage to swap with
+     */
+    void swapKinematics(FlockArrays other) {
+        float[] tmp = posX;
+        posX = other.posX;
+        other.posX = tmp;
+        tmp = posY;
+        posY = other.posY;
+        other.posY = tmp;
+        tmp = velX;
+        velX = other.velX;
+        other.velX = tmp;
+        tmp = velY;
+        velY = other.velY;
+        other.velY = tmp;
+    }
+
+    /**
+     * reorders the vehicles so that the vehicle at index k is the one that
+     * was at index order[k]. every column is gathered into a spare array
+     * that is then swapped in, so no column is allocated after the first
+     * reorder
+     *
+     * @param order - a permutation of the indices of the vehicles
+     */
+    void reorder(int[] order) {
+        if (spare.length < posX.length) {
+            spare = new float[posX.length];
+            spareInts = new int[posX.length];
+        }
+        posX = gather(posX, order);
+        posY = gather(posY, order);
+        velX = gather(velX, order);
+        velY = gather(velY, order);
+        accX = gather(accX, order);
+        accY = gather(accY, order);
+        alignmentCoefficient = gather(alignmentCoefficient, order);
+        cohesionCoefficient = gather(cohesionCoefficient, order);
+        separationCoefficient = gather(separationCoefficient, order);
+        int[] ints = spareInts;
+        for (int k = 0; k < size; k++) {
+            ints[k] = flockNumber[order[k]];
+        }
+        spareInts = flockNumber;
+        flockNumber = ints;
+    }
+
+    /**
+     * gathers the given column into the spare array in the given order,
+     * makes the column the spare array and returns the gathered one
+     */
+    private float[] gather(float[] column, int[] order) {
+        float[] gathered = spare;
+        for (int k = 0; k < size; k++) {
+            gathered[k] = column[order[k]];
+        }
+        spare = column;
+        return gathered;
+    }
+
+    /**
+     * copies the vehicle at one index over the vehicle at another
+     *
+     * @param from - the index of the vehicle to copy
+     * @param to   - the index to copy the vehicle to
+     */
+    void copy(int from, int to) {
+        posX[to] = posX[from];
+        posY[to] = posY[from];
+        velX[to] = velX[from];
+        velY[to] = velY[from];
+        accX[to] = accX[from];
+        accY[to] = accY[from];
+        flockNumber[to] = flockNumber[from];
+        alignmentCoefficient[to] = alignmentCoefficient[from];
+        cohesionCoefficient[to] = cohesionCoefficient[from];
+        separationCoefficient[to] = separationCoefficient[from];
+    }
+
+    int capacity() {
+        return posX.length;
+    }
+
+    private void grow(int capacity) {
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+        velX = Arrays.copyOf(velX, capacity);
+        velY = Arrays.copyOf(velY, capacity);
+        accX = Arrays.copyOf(accX, capacity);
+        accY = Arrays.copyOf(accY, capacity);
+        flockNumber = Arrays.copyOf(flockNumber, capacity);
+        alignmentCoefficient = Arrays.copyOf(alignmentCoefficient, capacity);
+        cohesionCoefficient = Arrays.copyOf(cohesionCoefficient, capacity);
+        separationCoefficient = Arrays.copyOf(separationCoefficient, capacity);
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,907 @@
+package flocking;
+
+import processing.core.PVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * FlockEngine class - the headless simulation core. holds the world bounds,
+ * the population, the obstacles and a seeded random number generator, and
+ * advances the simulation with no dependency on a Processing window
+ */
+class FlockEngine {
+
+    /**
+     * the ways the engine can hold its vehicles
+     */
+    enum StorageMode {
+        // a list of Vehicle objects, each owning its own vectors
+        OBJECTS,
+        // flat primitive arrays indexed by vehicle id, stepped without allocation
+        ARRAYS
+    }
+
+    /**
+     * the ways the engine can find the neighbours of a vehicle
+     */
+    enum NeighbourSearch {
+        // scan every other vehicle
+        BRUTE_FORCE,
+        // query a QuadTree updated every tick, object storage only
+        QUAD_TREE,
+        // look at the surrounding cells of a uniform grid rebuilt every tick
+        GRID,
+        // scan cached neighbour lists rebuilt once vehicles moved too far,
+        // array storage only
+        VERLET,
+        // the grid, gathering the candidates around every cell once for all
+        // the vehicles in it, array storage only. steps double buffered
+        // even on the calling thread
+        GRID_BATCHED
+    }
+
+    // the bounds the coefficients of every flock are drawn between by default
+    static final PVector DEFAULT_COEFFICIENTS_LOW = new PVector(0.8f, 0.8f, 1.1f);
+    static final PVector DEFAULT_COEFFICIENTS_HIGH = new PVector(1.5f, 1.5f, 1.6f);
+    // the distance beyond the vision radius the neighbour lists reach by
+    // default, in multiples of the max speed
+    static final float DEFAULT_VERLET_SKIN_SPEEDS = 10;
+    // reads the flock and velocity of a vehicle for the quad tree aggregates
+    private static final QuadTree.FlockAccessor<Vehicle> VEHICLE_ACCESSOR = new QuadTree.FlockAccessor<Vehicle>() {
+        @Override
+        public int flockOf(Vehicle v) {
+            return v.getFlockNumber();
+        }
+
+        @Override
+        public float velocityXOf(Vehicle v) {
+            return v.getVelocityX();
+        }
+
+        @Override
+        public float velocityYOf(Vehicle v) {
+            return v.getVelocityY();
+        }
+    };
+
+    // world bounds
+    private final int width;
+    private final int height;
+
+    // simulation state
+    private final FlockParameters parameters;
+    private final StorageMode storageMode;
+    private final ArrayList<Vehicle> vehicles;
+    private final FlockArrays arrays;
+    private final ArrayStepper arrayStepper;
+    // steps array storage double buffered on several threads, null when
+    // the flock is stepped in place on the calling thread
+    private ParallelStepper parallelStepper;
+    private final ObstacleIndex obstacles;
+    private NeighbourSearch neighbourSearch = NeighbourSearch.BRUTE_FORCE;
+    private QuadTree<Vehicle> quadTree;
+    // quad tree points moved every tick, one per vehicle, indexed by id
+    private final ArrayList<Point<Vehicle>> quadPoints = new ArrayList<>();
+    // the largest ratio of a quad tree node's width to its distance for the
+    // node's aggregates to stand in for its vehicles, 0 to look at every vehicle
+    private float openingAngle = 0;
+    private boolean farFieldSeparation = false;
+    private final SpatialGrid grid;
+    // vehicle coordinates the grid is built from in object storage
+    private float[] gridX = new float[0];
+    private float[] gridY = new float[0];
+    private NeighbourLists neighbourLists;
+    // the next state buffer of the cell batched search on the calling thread
+    private final FlockArrays batchNext = new FlockArrays();
+    private final RestorableRandom random;
+    private long tick = 0;
+    private TrajectoryRecorder recorder;
+    private StateStreamer streamer;
+    private FrameMetrics metrics;
+    private AdaptiveController controller;
+    // the number of nearest neighbours the vehicles of every flock react to,
+    // indexed by flock number, 0 or missing for every neighbour in sight
+    private int[] topologicalNeighbours = new int[0];
+    // the vehicles are reordered by the Morton codes of their positions
+    // every this many ticks, 0 to keep them in the order they were added
+    private int reorderInterval = 0;
+    // the Morton code and index of every vehicle, packed to sort together,
+    // and the order the sort puts the indices in
+    private long[] mortonKeys = new long[0];
+    private int[] order = new int[0];
+    private Vehicle[] reordered = new Vehicle[0];
+    // the index of every vehicle by id and the id of every index, for the
+    // first mapped vehicles. the vehicles added after the last reorder are
+    // appended, and their index is their id
+    private int[] indexById = new int[0];
+    private int[] idByIndex = new int[0];
+    private int mapped = 0;
+
+    /**
+     * constructor. creates an empty world of the given size, holding its
+     * vehicles as objects
+     *
+     * @param width  - the width of the world
+     * @param height - the height of the world
+     * @param seed   - the seed of the engine's random number generator
+     */
+    FlockEngine(int width, int height, long seed) {
+        this(width, height, seed, StorageMode.OBJECTS);
+    }
+
+    /**
+     * constructor. creates an empty world of the given size
+     *
+     * @param width       - the width of the world
+     * @param height      - the height of the world
+     * @param seed        - the seed of the engine's random number generator
+     * @param storageMode - the way the engine holds its vehicles
+     */
+    FlockEngine(int width, int height, long seed, StorageMode storageMode) {
+        this(width, height, seed, storageMode, FlockParameters.DEFAULT);
+    }
+
+    /**
+     * constructor. creates an empty world of the given size, whose vehicles
+     * see and move as the given parameters allow
+     *
+     * @param width       - the width of the world
+     * @param height      - the height of the world
+     * @param seed        - the seed of the engine's random number generator
+     * @param storageMode - the way the engine holds its vehicles
+     * @param parameters  - the awareness and motion limits of the vehicles
+     */
+    FlockEngine(int width, int height, long seed, StorageMode storageMode, FlockParameters parameters) {
+        this.width = width;
+        this.height = height;
+        this.random = new RestorableRandom(seed);
+        this.parameters = parameters;
+        this.storageMode = storageMode;
+        this.vehicles = new ArrayList<>();
+        this.arrays = new FlockArrays();
+        this.arrayStepper = new ArrayStepper(parameters);
+        this.obstacles = new ObstacleIndex(width, height, Vehicle.RENDER_BUFFER, parameters.avoidanceRange());
+        this.grid = new SpatialGrid(width, height, Vehicle.RENDER_BUFFER, parameters.gridCellSize());
+        setVerletSkin(DEFAULT_VERLET_SKIN_SPEEDS * parameters.maxSpeed);
+    }
+
+    /**
+     * populates the world with randomly placed vehicles, each group of
+     * vehicles sharing a randomly drawn coefficient vector
+     *
+     * @param numOfFlocks   - the number of flocks in the world
+     * @param numOfVehicles - the number of vehicles created per flock
+     */
+    void populate(int numOfFlocks, int numOfVehicles) {
+        populate(numOfFlocks, numOfVehicles, DEFAULT_COEFFICIENTS_LOW, DEFAULT_COEFFICIENTS_HIGH);
+    }
+
+    /**
+     * populates the world with randomly placed vehicles, each group of
+     * vehicles sharing a coefficient vector drawn between the given bounds
+     *
+     * @param numOfFlocks   - the number of flocks in the world
+     * @param numOfVehicles - the number of vehicles created per flock
+     * @param low           - the lowest alignment, cohesion and separation
+     *                      coefficients, in this order
+     * @param high          - the highest alignment, cohesion and separation
+     *                      coefficients, equal to low for fixed coefficients
+     */
+    void populate(int numOfFlocks, int numOfVehicles, PVector low, PVector high) {
+        for (int i = 0; i < numOfFlocks; i++) {
+            PVector coefficientsVector = new PVector(lerp(low.x, high.x, random(0, 1)), lerp(low.y, high.y, random(0, 1)), lerp(low.z, high.z, random(0, 1)));
+            for (int j = 0; j < numOfVehicles; j++) {
+                if (storageMode == StorageMode.ARRAYS) {
+                    float x = random(0, width);
+                    float y = random(0, height);
+                    float vx = random(-10, 10);
+                    float vy = random(-10, 10);
+                    arrays.add(x, y, vx, vy, j % numOfFlocks,
+                            coefficientsVector.x, coefficientsVector.y, coefficientsVector.z);
+                } else {
+                    vehicles.add(new Vehicle(this, random(0, width), random(0, height), j % numOfFlocks, coefficientsVector));
+                }
+            }
+        }
+    }
+
+    /**
+     * adds a single vehicle with the given state to the world
+     *
+     * @param x                 - the vehicle's x coordinate
+     * @param y                 - the vehicle's y coordinate
+     * @param vx                - the vehicle's x velocity
+     * @param vy                - the vehicle's y velocity
+     * @param ax                - the vehicle's x acceleration
+     * @param ay                - the vehicle's y acceleration
+     * @param flockNumber       - the number of the flock of the vehicle
+     * @param coefficientVector - the vehicle's alignment, cohesion and
+     *                          separation coefficients in this order
+     */
+    void addVehicle(float x, float y, float vx, float vy, float ax, float ay,
+                    int flockNumber, PVector coefficientVector) {
+        if (storageMode == StorageMode.ARRAYS) {
+            int id = arrays.add(x, y, vx, vy, flockNumber,
+                    coefficientVector.x, coefficientVector.y, coefficientVector.z);
+            arrays.accX[id] = ax;
+            arrays.accY[id] = ay;
+        } else {
+            Vehicle v = new Vehicle(this, x, y, vx, vy, flockNumber, coefficientVector);
+            v.applyForce(new PVector(ax, ay));
+            vehicles.add(v);
+        }
+    }
+
+    /**
+     * adds a vehicle with the given position and velocity to the flock of
+     * the vehicle at the given index, with the same coefficients
+     *
+     * @param index - the index of the vehicle whose flock to join
+     * @param x     - the new vehicle's x coordinate
+     * @param y     - the new vehicle's y coordinate
+     * @param vx    - the new vehicle's x velocity
+     * @param vy    - the new vehicle's y velocity
+     */
+    void spawnVehicle(int index, float x, float y, float vx, float vy) {
+        if (storageMode == StorageMode.ARRAYS) {
+            arrays.add(x, y, vx, vy, arrays.flockNumber[index], arrays.alignmentCoefficient[index],
+                    arrays.cohesionCoefficient[index], arrays.separationCoefficient[index]);
+        } else {
+            Vehicle v = vehicles.get(index);
+            vehicles.add(new Vehicle(this, x, y, vx, vy, v.getFlockNumber(), v.getCoefficientVector()));
+        }
+    }
+
+    /**
+     * removes the given number of vehicles, the most recently added first,
+     * so the ids of the remaining vehicles stay 0 .. size() - 1. the last
+     * vehicle in the storage takes the index of a removed one
+     *
+     * @param count - the number of vehicles to remove, at most size()
+     */
+    void removeVehicles(int count) {
+        if (count < 0 || count > size()) {
+            throw new IllegalArgumentException("cannot remove " + count + " of " + size() + " vehicles");
+        }
+        for (int k = 0; k < count; k++) {
+            int id = size() - 1;
+            int index = indexOf(id);
+            int last = id;
+            if (index != last) {
+                // only reordered vehicles are out of place
+                int lastId = idOf(last);
+                if (storageMode == StorageMode.ARRAYS) {
+                    arrays.copy(last, index);
+                } else {
+                    vehicles.set(index, vehicles.get(last));
+                }
+                indexById[lastId] = index;
+                idByIndex[index] = lastId;
+            }
+            if (storageMode == StorageMode.ARRAYS) {
+                arrays.setSize(last);
+            } else {
+                vehicles.remove(last);
+            }
+            mapped = Math.min(mapped, last);
+            if (id < quadPoints.size()) {
+                quadTree.remove(quadPoints.remove(id));
+            }
+        }
+    }
+
+    /**
+     * advances the simulation by a single tick
+     */
+    void step() {
+        long stepStart = controller != null ? System.nanoTime() : 0;
+        FrameMetrics metrics = this.metrics;
+        PhaseCounters counters = null;
+        long start = 0;
+        if (metrics != null) {
+            metrics.beginStep(this);
+            counters = metrics.getCounters();
+            start = System.nanoTime();
+        }
+        if (reorderInterval > 0 && tick % reorderInterval == 0) {
+            reorderByMortonCode();
+        }
+        rebuildNeighbourIndex();
+        if (counters != null) counters.lap(PhaseCounters.Phase.INDEX_REBUILD, start);
+        if (storageMode == StorageMode.ARRAYS) {
+            boolean verlet = neighbourSearch == NeighbourSearch.VERLET;
+            SpatialGrid index = neighbourSearch == NeighbourSearch.GRID || verlet ? grid : null;
+            NeighbourLists lists = verlet ? neighbourLists : null;
+            if (neighbourSearch == NeighbourSearch.GRID_BATCHED) {
+                if (parallelStepper != null) {
+                    parallelStepper.stepCells(arrays, grid, obstacles, topologicalNeighbours, width, height);
+                    if (counters != null) parallelStepper.drainCounters(counters);
+                } else {
+                    batchNext.ensureCapacity(arrays.capacity());
+                    arrayStepper.stepCells(arrays, grid, obstacles, topologicalNeighbours, width, height,
+                            batchNext, 0, grid.cellStart.length);
+                    arrays.swapKinematics(batchNext);
+                    if (counters != null) arrayStepper.getCounters().drainTo(counters);
+                }
+            } else if (parallelStepper != null) {
+                parallelStepper.step(arrays, index, lists, obstacles, topologicalNeighbours, width, height);
+                if (counters != null) parallelStepper.drainCounters(counters);
+            } else {
+                arrayStepper.step(arrays, index, lists, obstacles, topologicalNeighbours, width, height);
+                if (counters != null) arrayStepper.getCounters().drainTo(counters);
+            }
+        } else {
+            for (Vehicle v : vehicles) {
+                v.flock(vehicles);
+//                v.avoidEdges(); // uncomment to enable edge avoidance by vehicles
+                if (counters != null) start = System.nanoTime();
+                v.update();
+
+                v.edges(); // comment to disable infinite screen wrap
+                if (counters != null) counters.lap(PhaseCounters.Phase.INTEGRATION, start);
+            }
+        }
+        tick++;
+        if (metrics != null) {
+            metrics.endStep(this);
+        }
+        if (recorder != null) {
+            recorder.record(this);
+        }
+        if (streamer != null) {
+            streamer.publish(this);
+        }
+        if (controller != null) {
+            controller.afterStep(this, System.nanoTime() - stepStart);
+        }
+    }
+
+    /**
+     * advances the simulation by the given number of ticks
+     *
+     * @param ticks - the number of ticks to advance
+     */
+    void step(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            step();
+        }
+    }
+
+    /**
+     * rebuilds the index of the current neighbour search, if it has one,
+     * from the current positions of all the vehicles
+     */
+    void rebuildNeighbourIndex() {
+        if (neighbourSearch == NeighbourSearch.QUAD_TREE) {
+            updateQuad();
+        } else if (neighbourSearch == NeighbourSearch.GRID || neighbourSearch == NeighbourSearch.GRID_BATCHED) {
+            if (storageMode == StorageMode.ARRAYS) {
+                grid.rebuild(arrays.posX, arrays.posY, arrays.size());
+            } else {
+                restartGrid();
+            }
+        } else if (neighbourSearch == NeighbourSearch.VERLET) {
+            // the vehicles that moved too far for their lists search the grid
+            grid.rebuild(arrays.posX, arrays.posY, arrays.size());
+            neighbourLists.update(arrays);
+        }
+    }
+
+    /**
+     * reorders the vehicles by the Morton codes of their positions, so that
+     * vehicles close to each other in the world are mostly close to each
+     * other in memory too, and remaps their ids to their new indices. the
+     * code interleaves the bits of the coordinates quantized to 16 bits,
+     * over the world and the margin around it
+     */
+    void reorderByMortonCode() {
+        int n = size();
+        if (mortonKeys.length < n) {
+            mortonKeys = new long[n];
+            order = new int[n];
+        }
+        float margin = Vehicle.RENDER_BUFFER;
+        float scaleX = 0xFFFF / (width + 2 * margin);
+        float scaleY = 0xFFFF / (height + 2 * margin);
+        for (int i = 0; i < n; i++) {
+            float x = storageMode == StorageMode.ARRAYS ? arrays.posX[i] : vehicles.get(i).getX();
+            float y = storageMode == StorageMode.ARRAYS ? arrays.posY[i] : vehicles.get(i).getY();
+            int code = mortonCode(quantize((x + margin) * scaleX), quantize((y + margin) * scaleY));
+            // the code is compared unsigned, the index breaks ties in the old order
+            mortonKeys[i] = ((long) (code ^ Integer.MIN_VALUE) << 32) | i;
+        }
+        Arrays.sort(mortonKeys, 0, n);
+        for (int k = 0; k < n; k++) {
+            order[k] = (int) mortonKeys[k];
+        }
+
+        if (storageMode == StorageMode.ARRAYS) {
+            arrays.reorder(order);
+            neighbourLists.invalidate();
+        } else {
+            if (reordered.length < n) {
+                reordered = new Vehicle[n];
+            }
+            for (int k = 0; k < n; k++) {
+                reordered[k] = vehicles.get(order[k]);
+            }
+            for (int k = 0; k < n; k++) {
+                vehicles.set(k, reordered[k]);
+                reordered[k] = null;
+            }
+        }
+
+        if (idByIndex.length < n) {
+            idByIndex = Arrays.copyOf(idByIndex, n);
+            indexById = Arrays.copyOf(indexById, n);
+        }
+        // the ids in the new order, gathered into the keys, which are done with
+        for (int k = 0; k < n; k++) {
+            mortonKeys[k] = idOf(order[k]);
+        }
+        for (int k = 0; k < n; k++) {
+            int id = (int) mortonKeys[k];
+            idByIndex[k] = id;
+            indexById[id] = k;
+        }
+        mapped = n;
+    }
+
+    private static int quantize(float value) {
+        return value < 0 ? 0 : (value > 0xFFFF ? 0xFFFF : (int) value);
+    }
+
+    /**
+     * interleaves the bits of the given 16 bit coordinates, x in the even
+     * bits and y in the odd bits
+     */
+    private static int mortonCode(int x, int y) {
+        return spreadBits(x) | (spreadBits(y) << 1);
+    }
+
+    private static int spreadBits(int v) {
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    /**
+     * returns the current index of the vehicle with the given id. a
+     * vehicle's id is the index it was added at, and stays the same when
+     * the vehicles are reordered
+     *
+     * @param id - the id of the vehicle
+     * @return the index of the vehicle in the storage
+     */
+    int indexOf(int id) {
+        return id < mapped ? indexById[id] : id;
+    }
+
+    /**
+     * returns the id of the vehicle at the given index
+     *
+     * @param index - the index of the vehicle in the storage
+     * @return the id of the vehicle
+     */
+    int idOf(int index) {
+        return index < mapped ? idByIndex[index] : index;
+    }
+
+    /**
+     * returns whether the vehicles were reordered, so that their indices
+     * differ from their ids
+     *
+     * @return true if some vehicle's index may differ from its id
+     */
+    boolean isReordered() {
+        return mapped > 0;
+    }
+
+    /**
+     * Method to update the quad tree with the current positions of all the
+     * vehicles. a vehicle's point is only relocated when the vehicle leaves
+     * its node's loosened boundary, and new vehicles get new points
+     */
+    private void updateQuad() {
+        if (quadTree == null) {
+            // the vehicles wrap onto the far edges of the margin, which must
+            // be inside the root's half open boundary
+            float radius = Math.max(width, height) * 0.5f + Vehicle.RENDER_BUFFER + parameters.maxSpeed;
+            // a vehicle is relocated once it leaves its node by more than a tick's movement
+            quadTree = new QuadTree<>(new Square<>(width * 0.5f, height * 0.5f, radius), parameters.maxSpeed);
+        }
+        // the points are indexed by vehicle id, so they follow their
+        // vehicles when the vehicles are reordered
+        int flocks = 0;
+        for (int id = 0; id < vehicles.size(); id++) {
+            Vehicle v = vehicles.get(indexOf(id));
+            flocks = Math.max(flocks, v.getFlockNumber() + 1);
+            if (id == quadPoints.size()) {
+                Point<Vehicle> p = new Point<>(v.getX(), v.getY(), v);
+                quadPoints.add(p);
+                quadTree.insert(p);
+            } else {
+                quadTree.move(quadPoints.get(id), v.getX(), v.getY());
+            }
+        }
+        if (openingAngle > 0) {
+            quadTree.aggregate(flocks, VEHICLE_ACCESSOR);
+        }
+    }
+
+    /**
+     * Method to rebuild the grid from the current positions of all the vehicles
+     */
+    private void restartGrid() {
+        int n = vehicles.size();
+        if (gridX.length < n) {
+            gridX = new float[n];
+            gridY = new float[n];
+        }
+        for (int i = 0; i < n; i++) {
+            gridX[i] = vehicles.get(i).getX();
+            gridY[i] = vehicles.get(i).getY();
+        }
+        grid.rebuild(gridX, gridY, n);
+    }
+
+    /**
+     * Method to add an obstacle to the world
+     *
+     * @param posX - x position of the new obstacle
+     * @param posY - y position of the new obstacle
+     */
+    void addObstacle(float posX, float posY) {
+        obstacles.insert(new Obstacle(posX, posY));
+    }
+
+    /**
+     * Method to remove every obstacle under the given position
+     *
+     * @param posX - x position of the obstacle to remove
+     * @param posY - y position of the obstacle to remove
+     */
+    void removeObstacle(float posX, float posY) {
+        obstacles.removeWithin(posX, posY, Obstacle.OBSTACLE_SIZE);
+    }
+
+    /**
+     * returns a random float in the range [low, high), drawn from the
+     * engine's seeded generator
+     *
+     * @param low  - the lower bound of the range
+     * @param high - the upper bound of the range
+     * @return a random float in the given range
+     */
+    float random(float low, float high) {
+        if (low >= high) return low;
+        float diff = high - low;
+        float value;
+        do {
+            value = random.nextFloat() * diff + low;
+        } while (value == high);
+        return value;
+    }
+
+    private static float lerp(float start, float stop, float amt) {
+        return start + (stop - start) * amt;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    long getRandomState() {
+        return random.getState();
+    }
+
+    void setRandomState(long state) {
+        random.setState(state);
+    }
+
+    /**
+     * returns the number of vehicles in the world, regardless of storage
+     *
+     * @return the number of vehicles in the world
+     */
+    int size() {
+        return storageMode == StorageMode.ARRAYS ? arrays.size() : vehicles.size();
+    }
+
+    /**
+     * returns the number of flocks in the world, regardless of storage
+     *
+     * @return one more than the highest flock number of any vehicle, or 0
+     * if there are no vehicles
+     */
+    int getFlockCount() {
+        int flocks = 0;
+        for (int i = 0; i < size(); i++) {
+            int flockNumber = storageMode == StorageMode.ARRAYS
+                    ? arrays.flockNumber[i] : vehicles.get(i).getFlockNumber();
+            flocks = Math.max(flocks, flockNumber + 1);
+        }
+        return flocks;
+    }
+
+    FlockParameters getParameters() {
+        return parameters;
+    }
+
+    StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    FlockArrays getArrays() {
+        return arrays;
+    }
+
+    ArrayList<Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * returns all obstacles in the world. the list must not be modified,
+     * obstacles are added and removed through the engine
+     *
+     * @return all obstacles in the world, in no particular order
+     */
+    ArrayList<Obstacle> getObstacles() {
+        return obstacles.getObstacles();
+    }
+
+    ObstacleIndex getObstacleIndex() {
+        return obstacles;
+    }
+
+    NeighbourSearch getNeighbourSearch() {
+        return neighbourSearch;
+    }
+
+    /**
+     * sets the way the engine finds the neighbours of a vehicle, taking
+     * effect from the next tick
+     *
+     * @param neighbourSearch - the neighbour search to use
+     */
+    void setNeighbourSearch(NeighbourSearch neighbourSearch) {
+        if (neighbourSearch == NeighbourSearch.QUAD_TREE && storageMode == StorageMode.ARRAYS) {
+            throw new IllegalArgumentException("the quad tree search requires object storage");
+        }
+        if (neighbourSearch == NeighbourSearch.VERLET && storageMode != StorageMode.ARRAYS) {
+            throw new IllegalArgumentException("the neighbour list search requires array storage");
+        }
+        if (neighbourSearch == NeighbourSearch.GRID_BATCHED && storageMode != StorageMode.ARRAYS) {
+            throw new IllegalArgumentException("the cell batched search requires array storage");
+        }
+        this.neighbourSearch = neighbourSearch;
+    }
+
+    /**
+     * sets the number of threads the flock is stepped on. with one or more
+     * threads every vehicle reads the state of the previous tick and the
+     * result does not depend on the number of threads. with 0 the vehicles
+     * are stepped in place one after the other on the calling thread, as
+     * the object storage does
+     *
+     * @param threads - the number of threads, or 0 to step in place
+     */
+    void setThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("negative number of threads: " + threads);
+        }
+        if (threads > 0 && storageMode != StorageMode.ARRAYS) {
+            throw new IllegalArgumentException("stepping on threads requires array storage");
+        }
+        if (parallelStepper != null) {
+            parallelStepper.shutdown();
+        }
+        parallelStepper = threads > 0 ? new ParallelStepper(threads, parameters) : null;
+        if (parallelStepper != null) {
+            parallelStepper.setCounting(metrics != null);
+        }
+    }
+
+    /**
+     * sets how far beyond the vision radius the neighbour lists of the
+     * Verlet search reach. a larger skin rebuilds the lists less often but
+     * tests more candidates every tick
+     *
+     * @param skin - the skin, more than twice the max speed
+     */
+    void setVerletSkin(float skin) {
+        neighbourLists = new NeighbourLists(width, height, Vehicle.RENDER_BUFFER, parameters, skin);
+    }
+
+    float getVerletSkin() {
+        return neighbourLists.getSkin();
+    }
+
+    NeighbourLists getNeighbourLists() {
+        return neighbourLists;
+    }
+
+    /**
+     * sets the opening angle of the quad tree search. a divided node that
+     * lies within a vehicle's vision radius and is narrower, seen from the
+     * vehicle, than this ratio of its distance is taken by its per flock
+     * aggregates instead of vehicle by vehicle. larger angles aggregate
+     * more and nearer nodes, trading accuracy for speed at large vision
+     * radii. does not apply to flocks that interact topologically
+     *
+     * @param openingAngle - the opening angle, e.g. 0.5, or 0 to look at
+     *                     every neighbour
+     */
+    void setOpeningAngle(float openingAngle) {
+        if (!(openingAngle >= 0)) {
+            throw new IllegalArgumentException("negative opening angle: " + openingAngle);
+        }
+        this.openingAngle = openingAngle;
+    }
+
+    float getOpeningAngle() {
+        return openingAngle;
+    }
+
+    /**
+     * sets whether the vehicles steer away from the flock centroids of the
+     * nodes the quad tree search aggregates, as if every vehicle of a flock
+     * stood at its centroid. without it only the neighbours looked at one
+     * by one count for separation, which is cheaper but less accurate
+     *
+     * @param farFieldSeparation - true to separate from the centroids too
+     */
+    void setFarFieldSeparation(boolean farFieldSeparation) {
+        this.farFieldSeparation = farFieldSeparation;
+    }
+
+    boolean isFarFieldSeparation() {
+        return farFieldSeparation;
+    }
+
+    int getThreads() {
+        return parallelStepper == null ? 0 : parallelStepper.getThreads();
+    }
+
+    /**
+     * returns the ids of the pool threads that stepped the flock while
+     * metrics were set
+     *
+     * @return the thread ids, empty when stepping on the calling thread
+     */
+    long[] getWorkerIds() {
+        return parallelStepper == null ? new long[0] : parallelStepper.getWorkerIds();
+    }
+
+    /**
+     * makes the vehicles of the given flock react only to their k nearest
+     * neighbours in sight, instead of to every neighbour in sight. this
+     * bounds the work per vehicle by k however densely the flocks pack
+     *
+     * @param flockNumber - the number of the flock
+     * @param k           - the number of nearest neighbours to react to, or
+     *                    0 to react to every neighbour in sight
+     */
+    void setTopologicalNeighbours(int flockNumber, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("negative number of neighbours: " + k);
+        }
+        if (flockNumber >= topologicalNeighbours.length) {
+            topologicalNeighbours = Arrays.copyOf(topologicalNeighbours, flockNumber + 1);
+        }
+        topologicalNeighbours[flockNumber] = k;
+    }
+
+    /**
+     * returns the number of nearest neighbours the vehicles of the given
+     * flock react to
+     *
+     * @param flockNumber - the number of the flock
+     * @return the number of nearest neighbours, or 0 for every neighbour in sight
+     */
+    int getTopologicalNeighbours(int flockNumber) {
+        return flockNumber < topologicalNeighbours.length ? topologicalNeighbours[flockNumber] : 0;
+    }
+
+    /**
+     * sets the metrics the phases of every tick are timed and counted into
+     *
+     * @param metrics - the metrics, or null to step without timing
+     */
+    void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+        arrayStepper.setCounting(metrics != null);
+        if (parallelStepper != null) {
+            parallelStepper.setCounting(metrics != null);
+        }
+    }
+
+    /**
+     * sets how often the vehicles are reordered by the Morton codes of their
+     * positions. at large populations this keeps the neighbours of a
+     * vehicle mostly in the same cache lines, which pays off together with
+     * the grid search. the vehicles are stepped in a different order after
+     * a reorder, so in place stepping gives slightly different results
+     *
+     * @param ticks - the number of ticks between reorders, or 0 to never
+     *              reorder
+     */
+    void setReorderInterval(int ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("negative reorder interval: " + ticks);
+        }
+        this.reorderInterval = ticks;
+    }
+
+    int getReorderInterval() {
+        return reorderInterval;
+    }
+
+    FrameMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * sets the recorder every tick is recorded to after it is stepped
+     *
+     * @param recorder - the recorder, or null to stop recording
+     */
+    void setRecorder(TrajectoryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    TrajectoryRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * sets the streamer every tick is published to after it is stepped
+     *
+     * @param streamer - the streamer, or null to stop streaming
+     */
+    void setStreamer(StateStreamer streamer) {
+        this.streamer = streamer;
+    }
+
+    StateStreamer getStreamer() {
+        return streamer;
+    }
+
+    /**
+     * sets the controller told the time of every tick after it is stepped,
+     * which may change the neighbour search and the population between
+     * ticks
+     *
+     * @param controller - the controller, or null to keep the engine as set
+     */
+    void setController(AdaptiveController controller) {
+        this.controller = controller;
+    }
+
+    AdaptiveController getController() {
+        return controller;
+    }
+
+    SpatialGrid getGrid() {
+        return grid;
+    }
+
+    QuadTree<Vehicle> getQuadTree() {
+        return quadTree;
+    }
+}
@@ -0,0 +1,59 @@
+package flocking;
+
+/**
+ * FlockParameters class - the awareness and motion limits shared by every
+ * vehicle of an engine. an engine created without parameters uses the
+ * defaults of {@link Vehicle}, and different parameters let many engines,
+ * e.g. the runs of a parameter sweep, simulate differently in one process
+ */
+final class FlockParameters {
+    static final FlockParameters DEFAULT =
+            new FlockParameters(Vehicle.VISION_RADIUS, Vehicle.MAX_SPEED, Vehicle.MAX_FORCE);
+
+    final float visionRadius;
+    final float maxSpeed;
+    final float maxForce;
+
+    /**
+     * constructor
+     *
+     * @param visionRadius - the distance a vehicle sees its neighbours from
+     * @param maxSpeed     - the maximum speed of a vehicle
+     * @param maxForce     - the maximum steering force of every behaviour
+     * @throws IllegalArgumentException if a parameter is not positive
+     */
+    FlockParameters(float visionRadius, float maxSpeed, float maxForce) {
+        if (!(visionRadius > 0 && maxSpeed > 0 && maxForce > 0)) {
+            throw new IllegalArgumentException("parameters must be positive: vision radius " + visionRadius
+                    + ", max speed " + maxSpeed + ", max force " + maxForce);
+        }
+        this.visionRadius = visionRadius;
+        this.maxSpeed = maxSpeed;
+        this.maxForce = maxForce;
+    }
+
+    /**
+     * returns the range from which vehicles avoid an obstacle
+     *
+     * @return the avoidance range
+     */
+    float avoidanceRange() {
+        return (visionRadius + Obstacle.OBSTACLE_SIZE) * 1.25f;
+    }
+
+    /**
+     * returns the edge length of a neighbour grid cell. a vehicle's
+     * neighbours are never more than one cell away, even after moving
+     * during the tick
+     *
+     * @return the grid cell size
+     */
+    float gridCellSize() {
+        return visionRadius + maxSpeed;
+    }
+
+    @Override
+    public String toString() {
+        return "vision radius " + visionRadius + ", max speed " + maxSpeed + ", max force " + maxForce;
+    }
+}
@@ -0,0 +1,100 @@
+package flocking;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+
+/**
+ * FlockRenderer class - draws all the vehicles of an engine as one batch of
+ * triangles per flock color. the rotated vertices are calculated here from
+ * the normalized velocity, so no matrix is pushed, rotated or popped per
+ * vehicle, and the fill is set once per color. works with any PGraphics,
+ * including an offscreen one
+ */
+class FlockRenderer {
+    private final PVector[] colors;
+
+    /**
+     * constructor
+     *
+     * @param colors - the flock colors as RGB values, flock n is drawn in
+     *               colors[n % colors.length]
+     */
+    FlockRenderer(PVector[] colors) {
+        this.colors = colors;
+    }
+
+    /**
+     * draws every vehicle of the engine
+     *
+     * @param g      - the graphics to draw on
+     * @param engine - the engine holding the vehicles
+     */
+    void render(PGraphics g, FlockEngine engine) {
+        g.noStroke();
+        for (int c = 0; c < colors.length; c++) {
+            g.fill(colors[c].x, colors[c].y, colors[c].z);
+            g.beginShape(PConstants.TRIANGLES);
+            if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+                FlockArrays arrays = engine.getArrays();
+                for (int i = 0; i < arrays.size(); i++) {
+                    if (arrays.flockNumber[i] % colors.length == c) {
+                        triangle(g, arrays.posX[i], arrays.posY[i], arrays.velX[i], arrays.velY[i], arrays.flockNumber[i]);
+                    }
+                }
+            } else {
+                ArrayList<Vehicle> vehicles = engine.getVehicles();
+                for (int i = 0; i < vehicles.size(); i++) {
+                    Vehicle v = vehicles.get(i);
+                    if (v.getFlockNumber() % colors.length == c) {
+                        triangle(g, v.getX(), v.getY(), v.getVelocityX(), v.getVelocityY(), v.getFlockNumber());
+                    }
+                }
+            }
+            g.endShape();
+        }
+    }
+
+    /**
+     * draws every vehicle of a published state, between the tick before
+     * and the state's tick
+     *
+     * @param g     - the graphics to draw on
+     * @param state - the state holding the vehicles
+     * @param alpha - 0 to draw the tick before, 1 to draw the state's tick
+     */
+    void render(PGraphics g, RenderState state, float alpha) {
+        g.noStroke();
+        for (int c = 0; c < colors.length; c++) {
+            g.fill(colors[c].x, colors[c].y, colors[c].z);
+            g.beginShape(PConstants.TRIANGLES);
+            for (int i = 0; i < state.size; i++) {
+                if (state.flockNumber[i] % colors.length == c) {
+                    triangle(g, state.interpolatedX(i, alpha), state.interpolatedY(i, alpha),
+                            state.vx[i], state.vy[i], state.flockNumber[i]);
+                }
+            }
+            g.endShape();
+        }
+    }
+
+    /**
+     * adds the triangle of a single vehicle to the current shape. the
+     * triangle is the one {@link Vehicle#display} draws, rotated by the
+     * vehicle's heading without any trigonometry
+     */
+    private static void triangle(PGraphics g, float x, float y, float vx, float vy, int flockNumber) {
+        float r = 6 + flockNumber % 2;
+        float mag = (float) Math.sqrt(vx * vx + vy * vy);
+        // the cosine and sine of the heading, which is 0 for a standing vehicle
+        float ux = mag == 0 ? 1 : vx / mag;
+        float uy = mag == 0 ? 0 : vy / mag;
+        // the tip at (0, -2r) and the base at (-r, 2r) and (r, 2r), rotated
+        // by heading + PI / 2
+        g.vertex(x + 2 * r * ux, y + 2 * r * uy);
+        g.vertex(x + r * uy - 2 * r * ux, y - r * ux - 2 * r * uy);
+        g.vertex(x - r * uy - 2 * r * ux, y + r * ux - 2 * r * uy);
+    }
+}
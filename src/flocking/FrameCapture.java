@@ -0,0 +1,227 @@
+package flocking;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FrameCapture class - saves rendered frames on background encoder threads.
+ * the animation thread only copies the pixels into a pooled buffer and
+ * queues it. once all buffers are queued, capturing blocks until an encoder
+ * frees one, so a slow disk slows the capture down instead of filling the
+ * memory
+ */
+class FrameCapture {
+
+    /**
+     * the formats frames can be saved in
+     */
+    enum Format {
+        // a PNG file per frame
+        PNG,
+        // a file per frame of raw 8 bit RGB bytes, row by row
+        RAW_RGB,
+        // a single stream of raw 8 bit RGB frames, e.g. a pipe into ffmpeg
+        // with -f rawvideo -pix_fmt rgb24 -s WIDTHxHEIGHT -i PATH
+        RAW_VIDEO
+    }
+
+    // a frame queued to the encoders, the one with a null pixels buffer
+    // stops them
+    private static final class Frame {
+        final int number;
+        final int[] pixels;
+
+        Frame(int number, int[] pixels) {
+            this.number = number;
+            this.pixels = pixels;
+        }
+    }
+
+    private final Format format;
+    private final String path;
+    private final int width;
+    private final int height;
+    private final BlockingQueue<int[]> freeBuffers;
+    private final BlockingQueue<Frame> queue;
+    private final Thread[] encoders;
+    private final OutputStream video;
+    // the first error an encoder hit, after which no frame is saved
+    private volatile Exception failure;
+    private final AtomicInteger failedFrames = new AtomicInteger();
+    private int frameCount = 0;
+
+    /**
+     * constructor. starts the encoder threads
+     *
+     * @param format   - the format to save frames in
+     * @param path     - the path of the files, where a run of '#' is replaced
+     *                 by the zero padded frame number, or the path of the
+     *                 stream for {@link Format#RAW_VIDEO}
+     * @param width    - the width of the frames in pixels
+     * @param height   - the height of the frames in pixels
+     * @param encoders - the number of encoder threads, a raw video is always
+     *                 written by one thread to keep the frames in order
+     * @param buffers  - the number of frames that can be waiting for the
+     *                 encoders at once
+     * @throws IOException if the video stream cannot be opened
+     */
+    FrameCapture(Format format, String path, int width, int height, int encoders, int buffers) throws IOException {
+        this.format = format;
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        this.freeBuffers = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            freeBuffers.add(new int[width * height]);
+        }
+        this.queue = new ArrayBlockingQueue<>(buffers + encoders);
+        File parent = new File(path).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        this.video = format == Format.RAW_VIDEO ? new BufferedOutputStream(new FileOutputStream(path), 1 << 20) : null;
+        this.encoders = new Thread[format == Format.RAW_VIDEO ? 1 : Math.max(1, encoders)];
+        for (int i = 0; i < this.encoders.length; i++) {
+            this.encoders[i] = new Thread(this::encode, "frame-encoder-" + i);
+            this.encoders[i].setDaemon(true);
+            this.encoders[i].start();
+        }
+    }
+
+    /**
+     * queues a copy of the given pixels as the next frame, blocking while
+     * all buffers are waiting for the encoders
+     *
+     * @param pixels - the ARGB pixels of the frame, row by row
+     */
+    void capture(int[] pixels) {
+        checkFailure();
+        try {
+            int[] buffer = freeBuffers.take();
+            System.arraycopy(pixels, 0, buffer, 0, width * height);
+            queue.put(new Frame(++frameCount, buffer));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * waits for all queued frames to be saved and stops the encoders
+     */
+    void close() {
+        try {
+            for (int i = 0; i < encoders.length; i++) {
+                queue.put(new Frame(-1, null));
+            }
+            for (Thread encoder : encoders) {
+                encoder.join();
+            }
+            if (video != null) {
+                video.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        }
+        checkFailure();
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * returns the number of captured frames that were not saved, the one an
+     * encoder failed on and every frame after it
+     *
+     * @return the number of frames not saved
+     */
+    int getFailedFrames() {
+        return failedFrames.get();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("frame capture failed, " + failedFrames.get() + " frames not saved",
+                    failure);
+        }
+    }
+
+    /**
+     * the loop of an encoder thread
+     */
+    private void encode() {
+        byte[] rgb = format == Format.PNG ? null : new byte[width * height * 3];
+        BufferedImage image = format == Format.PNG ? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB) : null;
+        try {
+            while (true) {
+                Frame frame = queue.take();
+                if (frame.pixels == null) {
+                    return;
+                }
+                try {
+                    if (failure == null) {
+                        write(frame, rgb, image);
+                    } else {
+                        failedFrames.incrementAndGet();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // a runtime exception of the image writer must not end
+                    // the thread, or its buffer is never freed
+                    failure = e;
+                    failedFrames.incrementAndGet();
+                } finally {
+                    freeBuffers.put(frame.pixels);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Frame frame, byte[] rgb, BufferedImage image) throws IOException {
+        if (format == Format.PNG) {
+            image.setRGB(0, 0, width, height, frame.pixels, 0, width);
+            ImageIO.write(image, "png", new File(framePath(frame.number)));
+            return;
+        }
+        for (int i = 0, b = 0; i < width * height; i++) {
+            int p = frame.pixels[i];
+            rgb[b++] = (byte) (p >> 16);
+            rgb[b++] = (byte) (p >> 8);
+            rgb[b++] = (byte) p;
+        }
+        if (format == Format.RAW_VIDEO) {
+            video.write(rgb);
+        } else {
+            try (OutputStream out = new FileOutputStream(framePath(frame.number))) {
+                out.write(rgb);
+            }
+        }
+    }
+
+    /**
+     * returns the path of the given frame, replacing the first run of '#'
+     * in the path by the zero padded frame number, as PApplet.saveFrame does
+     */
+    private String framePath(int number) {
+        int start = path.indexOf('#');
+        if (start < 0) {
+            return path + number;
+        }
+        int end = start;
+        while (end < path.length() && path.charAt(end) == '#') end++;
+        StringBuilder digits = new StringBuilder(Integer.toString(number));
+        while (digits.length() < end - start) digits.insert(0, '0');
+        return path.substring(0, start) + digits + path.substring(end);
+    }
+}
@@ -0,0 +1,390 @@
+package flocking;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * FrameMetrics class - times every phase of the ticks of an engine and
+ * counts what the ticks did. a tick is complete once the next one starts or
+ * the metrics are flushed, so the rendering of a tick's vehicles after it is
+ * stepped is counted with it. the last complete tick is exposed through JMX
+ * and can be written to a CSV or JSON lines sink, a line per tick
+ * <p>
+ * an engine without metrics only checks a null field or a flag per phase,
+ * so disabled metrics cost next to nothing. with several stepping threads,
+ * the phase times and the allocated bytes are summed over the threads
+ */
+class FrameMetrics implements FrameMetricsMXBean {
+    static final String OBJECT_NAME = "flocking:type=FrameMetrics";
+
+    /**
+     * the formats of a metrics sink
+     */
+    enum SinkFormat {
+        // comma separated values, with a header line
+        CSV,
+        // a JSON object per line
+        JSON_LINES
+    }
+
+    // the metrics of a complete tick
+    private static final class Record {
+        final long tick;
+        final long stepNanos;
+        final long[] nanos;
+        final long[] histogram;
+        final int quadTreeDepth;
+        final int quadTreeNodes;
+        final long allocatedBytes;
+        final int vehicles;
+
+        Record(long tick, long stepNanos, long[] nanos, long[] histogram, int quadTreeDepth, int quadTreeNodes,
+               long allocatedBytes, int vehicles) {
+            this.tick = tick;
+            this.stepNanos = stepNanos;
+            this.nanos = nanos;
+            this.histogram = histogram;
+            this.quadTreeDepth = quadTreeDepth;
+            this.quadTreeNodes = quadTreeNodes;
+            this.allocatedBytes = allocatedBytes;
+            this.vehicles = vehicles;
+        }
+    }
+
+    private final PhaseCounters counters = new PhaseCounters();
+    private final com.sun.management.ThreadMXBean allocations;
+    private volatile Record last = new Record(0, 0, new long[PhaseCounters.PHASES.length],
+            new long[PhaseCounters.HISTOGRAM_BUCKETS], 0, 0, 0, 0);
+    private Writer sink;
+    private SinkFormat sinkFormat;
+    private ObjectName registeredName;
+
+    // the tick currently being counted
+    private boolean open = false;
+    private long tick;
+    private long stepStart;
+    private long stepNanos;
+    private long allocatedStart;
+    // the pool threads stepping the engine and their allocated bytes at the
+    // start of the tick, and what they allocated until the end of the step
+    private long[] workerIds = new long[0];
+    private long[] workerStart = new long[0];
+    private long workerAllocated;
+    private int quadTreeDepth;
+    private int quadTreeNodes;
+    private int vehicles;
+
+    /**
+     * constructor
+     */
+    FrameMetrics() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        this.allocations = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) threads : null;
+    }
+
+    /**
+     * creates metrics as configured by the system properties: with
+     * -Dmetrics.path=PATH every tick is written to PATH, as CSV if it ends
+     * with .csv and as JSON lines otherwise, and with -Dmetrics.jmx=true
+     * the metrics are registered with JMX
+     *
+     * @return the configured metrics, or null if neither property is set
+     * @throws IOException if the sink cannot be opened
+     */
+    static FrameMetrics fromSystemProperties() throws IOException {
+        String path = System.getProperty("metrics.path");
+        boolean jmx = Boolean.getBoolean("metrics.jmx");
+        if (path == null && !jmx) return null;
+        FrameMetrics metrics = new FrameMetrics();
+        if (path != null) {
+            metrics.setSink(new BufferedWriter(new FileWriter(path)),
+                    path.endsWith(".csv") ? SinkFormat.CSV : SinkFormat.JSON_LINES);
+        }
+        if (jmx) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                throw new IllegalStateException("cannot register metrics", e);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * completes the previous tick and starts counting the next one
+     *
+     * @param engine - the engine about to step
+     */
+    void beginStep(FlockEngine engine) {
+        flush();
+        open = true;
+        tick = engine.getTick() + 1;
+        allocatedStart = allocatedBytes();
+        if (allocatedStart >= 0) {
+            workerIds = engine.getWorkerIds();
+            workerStart = allocations.getThreadAllocatedBytes(workerIds);
+        }
+        stepStart = System.nanoTime();
+    }
+
+    /**
+     * ends the stepping of the current tick
+     *
+     * @param engine - the engine that stepped
+     */
+    void endStep(FlockEngine engine) {
+        stepNanos = System.nanoTime() - stepStart;
+        vehicles = engine.size();
+        workerAllocated = allocatedStart < 0 ? 0 : workerAllocatedBytes(engine.getWorkerIds());
+        QuadTree<Vehicle> quadTree = engine.getQuadTree();
+        boolean quad = engine.getNeighbourSearch() == FlockEngine.NeighbourSearch.QUAD_TREE && quadTree != null;
+        quadTreeDepth = quad ? quadTree.depth() : 0;
+        quadTreeNodes = quad ? quadTree.nodeCount() : 0;
+    }
+
+    /**
+     * completes the current tick, if one is being counted, publishing it
+     * and writing it to the sink
+     */
+    void flush() {
+        if (!open) return;
+        open = false;
+        long allocated = allocatedStart < 0 ? -1 : allocatedBytes() - allocatedStart + workerAllocated;
+        Record record = new Record(tick, stepNanos, counters.nanos.clone(), counters.histogram.clone(),
+                quadTreeDepth, quadTreeNodes, allocated, vehicles);
+        Arrays.fill(counters.nanos, 0);
+        Arrays.fill(counters.histogram, 0);
+        last = record;
+        if (sink != null) {
+            try {
+                sink.write(sinkFormat == SinkFormat.CSV ? csv(record) : json(record));
+                sink.write('\n');
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot write metrics", e);
+            }
+        }
+    }
+
+    /**
+     * returns the counters of the current tick, which the phases add to
+     *
+     * @return the counters of the current tick
+     */
+    PhaseCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * sets the sink a line is written to for every complete tick. a CSV
+     * sink gets its header line first
+     *
+     * @param sink   - the sink to write to, or null to stop writing
+     * @param format - the format of the lines
+     * @throws IOException if the header cannot be written
+     */
+    void setSink(Writer sink, SinkFormat format) throws IOException {
+        this.sink = sink;
+        this.sinkFormat = format;
+        if (sink != null && format == SinkFormat.CSV) {
+            StringBuilder header = new StringBuilder("tick,vehicles,step_ms");
+            for (PhaseCounters.Phase phase : PhaseCounters.PHASES) {
+                header.append(',').append(phase.name().toLowerCase()).append("_ms");
+            }
+            for (int b = 0; b < PhaseCounters.HISTOGRAM_BUCKETS; b++) {
+                header.append(",neighbours_").append(bucketName(b));
+            }
+            header.append(",quad_tree_depth,quad_tree_nodes,allocated_bytes\n");
+            sink.write(header.toString());
+        }
+    }
+
+    /**
+     * registers the metrics with the platform MBean server
+     *
+     * @throws JMException if the metrics cannot be registered, e.g. when
+     *                     other metrics are registered already
+     */
+    void register() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        registeredName = name;
+    }
+
+    /**
+     * flushes the current tick, unregisters the metrics from JMX and closes
+     * the sink
+     *
+     * @throws IOException if the sink cannot be closed
+     */
+    void close() throws IOException {
+        flush();
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException ignored) {
+                // already unregistered
+            }
+            registeredName = null;
+        }
+        if (sink != null) {
+            sink.close();
+            sink = null;
+        }
+    }
+
+    /**
+     * returns a few lines describing the last complete tick, for an
+     * on-screen overlay
+     *
+     * @return the description of the last tick
+     */
+    String summary() {
+        Record r = last;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("tick %d, %d vehicles, step %.2f ms%n", r.tick, r.vehicles, r.stepNanos / 1e6));
+        for (PhaseCounters.Phase phase : PhaseCounters.PHASES) {
+            text.append(String.format("%s %.2f ms%n", phase.name().toLowerCase(), r.nanos[phase.ordinal()] / 1e6));
+        }
+        text.append("neighbours");
+        for (int b = 0; b < r.histogram.length; b++) {
+            if (r.histogram[b] != 0) text.append(' ').append(bucketName(b)).append(':').append(r.histogram[b]);
+        }
+        text.append(String.format("%nquad tree depth %d, nodes %d%nallocated %d KB",
+                r.quadTreeDepth, r.quadTreeNodes, r.allocatedBytes / 1024));
+        return text.toString();
+    }
+
+    private long allocatedBytes() {
+        return allocations == null ? -1 : allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * returns the bytes the given pool threads allocated since the start of
+     * the tick. a thread that started during the tick allocated all of its
+     * bytes in it, and one that ended is left out
+     */
+    private long workerAllocatedBytes(long[] ids) {
+        long[] bytes = allocations.getThreadAllocatedBytes(ids);
+        long total = 0;
+        for (int k = 0; k < ids.length; k++) {
+            if (bytes[k] < 0) continue;
+            long start = 0;
+            for (int w = 0; w < workerIds.length; w++) {
+                if (workerIds[w] == ids[k]) {
+                    start = Math.max(0, workerStart[w]);
+                    break;
+                }
+            }
+            total += bytes[k] - start;
+        }
+        return total;
+    }
+
+    /**
+     * returns the lowest neighbour count of a histogram bucket, with a '+'
+     * for the last, unbounded bucket
+     */
+    private static String bucketName(int bucket) {
+        String low = Integer.toString(bucket == 0 ? 0 : 1 << (bucket - 1));
+        return bucket == PhaseCounters.HISTOGRAM_BUCKETS - 1 ? low + "+" : low;
+    }
+
+    private static String csv(Record r) {
+        StringBuilder line = new StringBuilder();
+        line.append(r.tick).append(',').append(r.vehicles).append(',').append(r.stepNanos / 1e6);
+        for (long n : r.nanos) line.append(',').append(n / 1e6);
+        for (long h : r.histogram) line.append(',').append(h);
+        line.append(',').append(r.quadTreeDepth).append(',').append(r.quadTreeNodes).append(',').append(r.allocatedBytes);
+        return line.toString();
+    }
+
+    private static String json(Record r) {
+        StringBuilder line = new StringBuilder();
+        line.append("{\"tick\":").append(r.tick).append(",\"vehicles\":").append(r.vehicles)
+                .append(",\"step_ms\":").append(r.stepNanos / 1e6);
+        for (PhaseCounters.Phase phase : PhaseCounters.PHASES) {
+            line.append(",\"").append(phase.name().toLowerCase()).append("_ms\":").append(r.nanos[phase.ordinal()] / 1e6);
+        }
+        line.append(",\"neighbours\":[");
+        for (int b = 0; b < r.histogram.length; b++) {
+            line.append(b == 0 ? "" : ",").append(r.histogram[b]);
+        }
+        line.append("],\"quad_tree_depth\":").append(r.quadTreeDepth).append(",\"quad_tree_nodes\":")
+                .append(r.quadTreeNodes).append(",\"allocated_bytes\":").append(r.allocatedBytes).append('}');
+        return line.toString();
+    }
+
+    @Override
+    public long getTick() {
+        return last.tick;
+    }
+
+    @Override
+    public double getTickMillis() {
+        return (last.stepNanos + last.nanos[PhaseCounters.Phase.RENDERING.ordinal()]) / 1e6;
+    }
+
+    @Override
+    public double getIndexRebuildMillis() {
+        return last.nanos[PhaseCounters.Phase.INDEX_REBUILD.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getNeighbourSearchMillis() {
+        return last.nanos[PhaseCounters.Phase.NEIGHBOUR_SEARCH.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getSteeringMillis() {
+        return last.nanos[PhaseCounters.Phase.STEERING.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getObstaclesMillis() {
+        return last.nanos[PhaseCounters.Phase.OBSTACLES.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getIntegrationMillis() {
+        return last.nanos[PhaseCounters.Phase.INTEGRATION.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getRenderingMillis() {
+        return last.nanos[PhaseCounters.Phase.RENDERING.ordinal()] / 1e6;
+    }
+
+    @Override
+    public long[] getNeighbourHistogram() {
+        return last.histogram.clone();
+    }
+
+    @Override
+    public int getQuadTreeDepth() {
+        return last.quadTreeDepth;
+    }
+
+    @Override
+    public int getQuadTreeNodes() {
+        return last.quadTreeNodes;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return last.allocatedBytes;
+    }
+
+    @Override
+    public int getVehicles() {
+        return last.vehicles;
+    }
+}
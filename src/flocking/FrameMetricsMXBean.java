@@ -0,0 +1,33 @@
+package flocking;
+
+/**
+ * the metrics of the last complete tick of an engine, as exposed through
+ * JMX. the times are in milliseconds
+ */
+public interface FrameMetricsMXBean {
+    long getTick();
+
+    double getTickMillis();
+
+    double getIndexRebuildMillis();
+
+    double getNeighbourSearchMillis();
+
+    double getSteeringMillis();
+
+    double getObstaclesMillis();
+
+    double getIntegrationMillis();
+
+    double getRenderingMillis();
+
+    long[] getNeighbourHistogram();
+
+    int getQuadTreeDepth();
+
+    int getQuadTreeNodes();
+
+    long getAllocatedBytes();
+
+    int getVehicles();
+}
@@ -0,0 +1,117 @@
+package flocking;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * HeadlessSimulation class - runs the flocking engine with no Processing
+ * window, stepping as fast as the CPU allows
+ * <p>
+ * usage: HeadlessSimulation [ticks] [seed] [flocks] [vehiclesPerFlock] [width] [height] [objects|arrays]
+ *        [brute_force|quad_tree|grid|verlet|grid_batched] [threads]
+ * <p>
+ * with -Dsnapshot.load=PATH the run starts from a saved snapshot instead of
+ * a populated world, and with -Dsnapshot.save=PATH the final state is saved.
+ * with -Dtrajectory.path=PATH every tick is recorded by a
+ * {@link TrajectoryRecorder}, quantized to -Dtrajectory.step pixels. with
+ * -Dtopological.k=K every vehicle reacts only to its K nearest neighbours.
+ * with -Dreorder.interval=TICKS the vehicles are reordered by the Morton
+ * codes of their positions every TICKS ticks. with -Dverlet.skin=PIXELS the
+ * neighbour lists of the verlet search reach PIXELS beyond the vision radius.
+ * with -Dopening.angle=THETA the quad tree search takes distant nodes by
+ * their per flock aggregates, and with -Dopening.separation=true the
+ * vehicles steer away from the aggregated centroids too. with
+ * -Dadaptive=true an {@link AdaptiveController} picks the neighbour search,
+ * and with
+ * -Dadaptive.budget=MILLIS adjusts the population to the budget. with
+ * -Dstream.port=PORT every tick is streamed to clients by a {@link
+ * StateStreamer}.
+ * -Dmetrics.path and -Dmetrics.jmx enable the {@link FrameMetrics}
+ */
+public class HeadlessSimulation {
+    private static final int DEFAULT_TICKS = 1000;
+    private static final int DEFAULT_NUM_OF_FLOCKS = 6;
+    private static final int DEFAULT_NUM_OF_VEHICLES = 100;
+    private static final int DEFAULT_WIDTH = 1920;
+    private static final int DEFAULT_HEIGHT = 1080;
+    private static final float DEFAULT_TRAJECTORY_STEP = 1 / 8f;
+    private static final int TRAJECTORY_KEYFRAME_INTERVAL = 300;
+
+    public static void main(String[] args) throws IOException {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int numOfFlocks = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_NUM_OF_FLOCKS;
+        int numOfVehicles = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_NUM_OF_VEHICLES;
+        int width = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_WIDTH;
+        int height = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_HEIGHT;
+        FlockEngine.StorageMode storageMode = args.length > 6
+                ? FlockEngine.StorageMode.valueOf(args[6].toUpperCase()) : FlockEngine.StorageMode.OBJECTS;
+        FlockEngine.NeighbourSearch neighbourSearch = args.length > 7
+                ? FlockEngine.NeighbourSearch.valueOf(args[7].toUpperCase()) : FlockEngine.NeighbourSearch.BRUTE_FORCE;
+        int threads = args.length > 8 ? Integer.parseInt(args[8]) : 0;
+
+        String load = System.getProperty("snapshot.load");
+        String save = System.getProperty("snapshot.save");
+        String trajectory = System.getProperty("trajectory.path");
+        int topologicalNeighbours = Integer.getInteger("topological.k", 0);
+        int reorderInterval = Integer.getInteger("reorder.interval", 0);
+        String verletSkin = System.getProperty("verlet.skin");
+        float openingAngle = Float.parseFloat(System.getProperty("opening.angle", "0"));
+        float trajectoryStep = Float.parseFloat(System.getProperty("trajectory.step",
+                Float.toString(DEFAULT_TRAJECTORY_STEP)));
+
+        FlockEngine engine;
+        if (load != null) {
+            engine = Snapshot.load(Paths.get(load), storageMode);
+        } else {
+            engine = new FlockEngine(width, height, seed, storageMode);
+            engine.populate(numOfFlocks, numOfVehicles);
+        }
+        engine.setNeighbourSearch(neighbourSearch);
+        engine.setThreads(threads);
+        // the flocks of a loaded snapshot may differ from the arguments
+        for (int f = 0; f < engine.getFlockCount(); f++) {
+            engine.setTopologicalNeighbours(f, topologicalNeighbours);
+        }
+        engine.setReorderInterval(reorderInterval);
+        engine.setOpeningAngle(openingAngle);
+        engine.setFarFieldSeparation(Boolean.getBoolean("opening.separation"));
+        if (verletSkin != null) {
+            engine.setVerletSkin(Float.parseFloat(verletSkin));
+        }
+        engine.setMetrics(FrameMetrics.fromSystemProperties());
+        engine.setController(AdaptiveController.fromSystemProperties(engine));
+        engine.setStreamer(StateStreamer.fromSystemProperties(engine));
+        if (trajectory != null) {
+            engine.setRecorder(new TrajectoryRecorder(Paths.get(trajectory), engine.getWidth(), engine.getHeight(),
+                    trajectoryStep, TRAJECTORY_KEYFRAME_INTERVAL));
+        }
+
+        long start = System.nanoTime();
+        engine.step(ticks);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("ticks: " + ticks + ", vehicles: " + engine.size()
+                + ", seconds: " + seconds + ", ticks/s: " + ticks / seconds);
+        AdaptiveController controller = engine.getController();
+        if (controller != null) {
+            System.out.println("search: " + engine.getNeighbourSearch() + ", chosen at "
+                    + controller.getChosenMillis() + " ms/tick, switches: " + controller.getSwitches());
+        }
+        engine.setThreads(0);
+        if (engine.getMetrics() != null) {
+            engine.getMetrics().close();
+            engine.setMetrics(null);
+        }
+        if (engine.getRecorder() != null) {
+            engine.getRecorder().close();
+            engine.setRecorder(null);
+        }
+        if (engine.getStreamer() != null) {
+            engine.getStreamer().close();
+            engine.setStreamer(null);
+        }
+        if (save != null) {
+            Snapshot.save(engine, Paths.get(save));
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package flocking;
+
 public interface Locatable {
     float getX();
     float getY();
@@ -0,0 +1,76 @@
+package flocking;
+
+/**
+ * a bounded max-heap of the k nearest candidates offered so far, by squared
+ * distance. offering a candidate costs O(log k), and the farthest kept
+ * candidate bounds which further candidates, or cells of candidates, are
+ * worth looking at. once all candidates are offered, ids[0] .. ids[size - 1]
+ * are the k nearest in heap order
+ */
+class NearestNeighbours {
+    int[] ids = new int[0];
+    private float[] distSq = new float[0];
+    int size;
+    private int k;
+
+    /**
+     * empties the heap and sets the number of candidates it keeps
+     *
+     * @param k - the number of nearest candidates to keep
+     */
+    void reset(int k) {
+        if (ids.length < k) {
+            ids = new int[k];
+            distSq = new float[k];
+        }
+        this.k = k;
+        this.size = 0;
+    }
+
+    /**
+     * offers a candidate, keeping it if it is among the k nearest so far
+     *
+     * @param id - the id of the candidate
+     * @param d  - the squared distance to the candidate
+     */
+    void offer(int id, float d) {
+        if (size < k) {
+            // sift the new candidate up from the bottom
+            int c = size++;
+            while (c > 0) {
+                int parent = (c - 1) >>> 1;
+                if (distSq[parent] >= d) break;
+                ids[c] = ids[parent];
+                distSq[c] = distSq[parent];
+                c = parent;
+            }
+            ids[c] = id;
+            distSq[c] = d;
+        } else if (k > 0 && d < distSq[0]) {
+            // replace the farthest candidate and sift it down
+            int c = 0;
+            while (true) {
+                int child = 2 * c + 1;
+                if (child >= size) break;
+                if (child + 1 < size && distSq[child + 1] > distSq[child]) child++;
+                if (distSq[child] <= d) break;
+                ids[c] = ids[child];
+                distSq[c] = distSq[child];
+                c = child;
+            }
+            ids[c] = id;
+            distSq[c] = d;
+        }
+    }
+
+    /**
+     * returns the squared distance a candidate has to be nearer than to be
+     * kept
+     *
+     * @return the squared distance of the farthest kept candidate once k are
+     * kept, infinity before that
+     */
+    float bound() {
+        return size < k ? Float.POSITIVE_INFINITY : distSq[0];
+    }
+}
@@ -0,0 +1,197 @@
+package flocking;
+
+import java.util.Arrays;
+
+/**
+ * NeighbourLists class - Verlet style cached neighbour lists over a flock
+ * held in {@link FlockArrays}. the list of a vehicle holds every vehicle
+ * within the vision radius plus a skin of it when the lists were built, and
+ * stays a superset of its neighbours until a vehicle moves more than half
+ * the skin, so most ticks apply the exact radius and vision angle tests to
+ * a list instead of searching the surrounding grid cells.
+ * <p>
+ * the lists are rebuilt only once many vehicles moved too far. the few that
+ * did, among them every vehicle that wrapped around the world, are movers
+ * until the next rebuild: they search their neighbours on the engine's
+ * grid, are skipped in the lists of the others and are found by the others
+ * in a small grid of the movers only
+ */
+class NeighbourLists {
+    // the lists are rebuilt once more than this fraction of the vehicles moved
+    private static final float REBUILD_FRACTION = 1 / 4f;
+
+    private final float skin;
+    private final float listRadiusSq;
+    // the displacement since the last build that makes a vehicle a mover.
+    // stepping in place, a vehicle may move up to the max speed more
+    // before a neighbour is stepped
+    private final float moverDistanceSq;
+
+    // the list of vehicle i is ids[start[i]] .. ids[start[i + 1] - 1]
+    int[] start = new int[1];
+    int[] ids = new int[0];
+    // the number of vehicles the lists were built for, -1 before the first build
+    private int size = -1;
+    // the positions the lists were built from, indexed by id
+    private float[] refX = new float[0];
+    private float[] refY = new float[0];
+    // the grid the lists are built on, with cells half the list radius, so
+    // the 5 by 5 cells around a vehicle cover its list radius closely
+    private final SpatialGrid listGrid;
+
+    // whether every vehicle is a mover, indexed by id
+    boolean[] moved = new boolean[0];
+    private int moverCount = 0;
+    // the ids and positions of the movers, and the grid built over them
+    private int[] moverIds = new int[0];
+    private float[] moverX = new float[0];
+    private float[] moverY = new float[0];
+    final SpatialGrid moverGrid;
+    // the ids of the movers sorted by their cell in the mover grid
+    int[] moverCellIds = new int[0];
+
+    // the number of times the lists were built
+    private long builds = 0;
+
+    /**
+     * constructor
+     *
+     * @param width      - the width of the world
+     * @param height     - the height of the world
+     * @param margin     - the margin vehicles may lie outside the world by
+     * @param parameters - the awareness and motion limits of the vehicles
+     * @param skin       - the distance beyond the vision radius the lists
+     *                   reach, more than twice the max speed
+     * @throws IllegalArgumentException if the skin is not more than twice
+     *                                  the max speed
+     */
+    NeighbourLists(float width, float height, float margin, FlockParameters parameters, float skin) {
+        if (!(skin > 2 * parameters.maxSpeed)) {
+            throw new IllegalArgumentException("the skin must be more than twice the max speed "
+                    + parameters.maxSpeed + ": " + skin);
+        }
+        this.skin = skin;
+        float listRadius = parameters.visionRadius + skin;
+        this.listRadiusSq = listRadius * listRadius;
+        float moverDistance = skin / 2 - parameters.maxSpeed;
+        this.moverDistanceSq = moverDistance * moverDistance;
+        this.listGrid = new SpatialGrid(width, height, margin, listRadius / 2);
+        this.moverGrid = new SpatialGrid(width, height, margin, parameters.gridCellSize());
+    }
+
+    /**
+     * finds the vehicles that moved too far since the lists were built, and
+     * rebuilds the lists if there are too many of them, the number of
+     * vehicles changed or the lists were invalidated
+     *
+     * @param flock - the flock at the start of the tick
+     */
+    void update(FlockArrays flock) {
+        int n = flock.size();
+        if (n != size) {
+            build(flock);
+            return;
+        }
+        float[] posX = flock.posX;
+        float[] posY = flock.posY;
+        int movers = 0;
+        int limit = (int) (n * REBUILD_FRACTION);
+        for (int i = 0; i < n; i++) {
+            float dx = posX[i] - refX[i];
+            float dy = posY[i] - refY[i];
+            boolean mover = dx * dx + dy * dy > moverDistanceSq;
+            moved[i] = mover;
+            if (mover) {
+                if (++movers > limit) {
+                    build(flock);
+                    return;
+                }
+                moverIds[movers - 1] = i;
+                moverX[movers - 1] = posX[i];
+                moverY[movers - 1] = posY[i];
+            }
+        }
+        moverCount = movers;
+        moverGrid.rebuild(moverX, moverY, movers);
+        for (int k = 0; k < movers; k++) {
+            moverCellIds[k] = moverIds[moverGrid.ids[k]];
+        }
+    }
+
+    /**
+     * builds the list of every vehicle from the current positions, leaving
+     * no movers
+     */
+    private void build(FlockArrays flock) {
+        int n = flock.size();
+        float[] posX = flock.posX;
+        float[] posY = flock.posY;
+        if (refX.length < n) {
+            refX = new float[n];
+            refY = new float[n];
+            moved = new boolean[n];
+            moverIds = new int[n];
+            moverX = new float[n];
+            moverY = new float[n];
+            moverCellIds = new int[n];
+        }
+        if (start.length < n + 1) {
+            start = new int[n + 1];
+        }
+        System.arraycopy(posX, 0, refX, 0, n);
+        System.arraycopy(posY, 0, refY, 0, n);
+        Arrays.fill(moved, 0, n, false);
+        moverCount = 0;
+        moverGrid.rebuild(moverX, moverY, 0);
+
+        listGrid.rebuild(posX, posY, n);
+        int[] gridIds = listGrid.ids;
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            start[i] = length;
+            float x = posX[i];
+            float y = posY[i];
+            int cx = listGrid.cellX(x);
+            int cy = listGrid.cellY(y);
+            for (int row = Math.max(0, cy - 2); row <= Math.min(listGrid.rows - 1, cy + 2); row++) {
+                for (int col = Math.max(0, cx - 2); col <= Math.min(listGrid.columns - 1, cx + 2); col++) {
+                    int cell = row * listGrid.columns + col;
+                    int end = listGrid.cellStart[cell] + listGrid.cellCount[cell];
+                    for (int k = listGrid.cellStart[cell]; k < end; k++) {
+                        int j = gridIds[k];
+                        float dx = posX[j] - x;
+                        float dy = posY[j] - y;
+                        if (j == i || dx * dx + dy * dy > listRadiusSq) continue;
+                        if (length == ids.length) {
+                            ids = Arrays.copyOf(ids, Math.max(16, length * 2));
+                        }
+                        ids[length++] = j;
+                    }
+                }
+            }
+        }
+        start[n] = length;
+        size = n;
+        builds++;
+    }
+
+    /**
+     * forces the lists to be rebuilt on the next update, after the vehicles
+     * were reordered or moved other than by stepping
+     */
+    void invalidate() {
+        size = -1;
+    }
+
+    float getSkin() {
+        return skin;
+    }
+
+    int getMoverCount() {
+        return moverCount;
+    }
+
+    long getBuilds() {
+        return builds;
+    }
+}
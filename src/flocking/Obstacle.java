@@ -0,0 +1,61 @@
+package flocking;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PVector;
+
+/***
+ * Obstacle class - represents an obstacle in the simulation for flocks to avoid
+ */
+class Obstacle implements Locatable {
+    static final int OBSTACLE_SIZE = 11;
+    private static final PVector obstacleColor = new PVector(23, 128, 237);
+    private final int obstacleSize = OBSTACLE_SIZE;
+    PVector position;
+    // the position of the obstacle in its ObstacleIndex list, -1 if not indexed
+    int slot = -1;
+
+    /***
+     * Constructor for the obstacle class
+     * @param x - x position of the obstacle
+     * @param y - y position of the obstacle
+     */
+    Obstacle(float x, float y) {
+        this.position = new PVector(x, y);
+    }
+
+    /***
+     * Method to display the obstacle
+     * @param g - the graphics to draw the obstacle on
+     */
+    void display(PGraphics g) {
+        display(g, position.x, position.y);
+    }
+
+    /***
+     * Method to display an obstacle at the given position
+     * @param g - the graphics to draw the obstacle on
+     * @param x - x position of the obstacle
+     * @param y - y position of the obstacle
+     */
+    static void display(PGraphics g, float x, float y) {
+        g.noStroke();
+        g.fill(obstacleColor.x, obstacleColor.y, obstacleColor.z);
+        g.ellipseMode(PConstants.RADIUS);
+        g.ellipse(x, y, OBSTACLE_SIZE, OBSTACLE_SIZE);
+    }
+
+    @Override
+    public float getX() {
+        return position.x;
+    }
+
+    @Override
+    public float getY() {
+        return position.y;
+    }
+
+    public int getObstacleSize() {
+        return obstacleSize;
+    }
+}
@@ -0,0 +1,164 @@
+package flocking;
+
+import java.util.ArrayList;
+
+/**
+ * a uniform grid index of the obstacles in the world. obstacles are
+ * inserted and removed incrementally, and the cells are as large as the
+ * range a vehicle avoids obstacles from, so every obstacle a vehicle reacts
+ * to is in one of the 3x3 cells around it
+ */
+class ObstacleIndex {
+    // the world is padded by this margin on every side
+    private final float margin;
+    private final float cellSize;
+    final int columns;
+    final int rows;
+
+    // the obstacles of every cell, created on first insertion
+    private final ArrayList<ArrayList<Obstacle>> cells;
+    // all obstacles, in no particular order
+    private final ArrayList<Obstacle> obstacles = new ArrayList<>();
+    // the number of times obstacles were inserted or removed
+    private long version = 0;
+
+    /**
+     * constructor
+     *
+     * @param width  - the width of the world
+     * @param height - the height of the world
+     * @param margin - the margin obstacles may lie outside the world by
+     * @param range  - the range from which vehicles avoid an obstacle
+     */
+    ObstacleIndex(float width, float height, float margin, float range) {
+        this.margin = margin;
+        this.cellSize = range;
+        this.columns = Math.max(1, (int) Math.ceil((width + 2 * margin) / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((height + 2 * margin) / cellSize));
+        this.cells = new ArrayList<>(columns * rows);
+        for (int c = 0; c < columns * rows; c++) {
+            cells.add(null);
+        }
+    }
+
+    /**
+     * inserts an obstacle into the index
+     *
+     * @param o - the obstacle to insert
+     */
+    void insert(Obstacle o) {
+        o.slot = obstacles.size();
+        obstacles.add(o);
+        int c = cellY(o.position.y) * columns + cellX(o.position.x);
+        ArrayList<Obstacle> cell = cells.get(c);
+        if (cell == null) {
+            cell = new ArrayList<>();
+            cells.set(c, cell);
+        }
+        cell.add(o);
+        version++;
+    }
+
+    /**
+     * removes every obstacle whose center is closer than the given radius
+     * to the given point
+     *
+     * @param x      - the x coordinate of the point
+     * @param y      - the y coordinate of the point
+     * @param radius - the radius to remove obstacles in
+     * @return the number of obstacles removed
+     */
+    int removeWithin(float x, float y, float radius) {
+        int removed = 0;
+        for (int row = cellY(y - radius); row <= cellY(y + radius); row++) {
+            for (int col = cellX(x - radius); col <= cellX(x + radius); col++) {
+                ArrayList<Obstacle> cell = cells.get(row * columns + col);
+                if (cell == null) continue;
+                // walk backwards, so removing does not skip the next obstacle
+                for (int k = cell.size() - 1; k >= 0; k--) {
+                    Obstacle o = cell.get(k);
+                    float dx = x - o.position.x;
+                    float dy = y - o.position.y;
+                    if (dx * dx + dy * dy < radius * radius) {
+                        swapRemove(cell, k);
+                        removeFromAll(o);
+                        removed++;
+                    }
+                }
+            }
+        }
+        if (removed > 0) version++;
+        return removed;
+    }
+
+    private void removeFromAll(Obstacle o) {
+        Obstacle last = obstacles.get(obstacles.size() - 1);
+        obstacles.set(o.slot, last);
+        last.slot = o.slot;
+        obstacles.remove(obstacles.size() - 1);
+        o.slot = -1;
+    }
+
+    private static void swapRemove(ArrayList<Obstacle> list, int k) {
+        list.set(k, list.get(list.size() - 1));
+        list.remove(list.size() - 1);
+    }
+
+    /**
+     * returns the obstacles of the given cell
+     *
+     * @param col - the column of the cell
+     * @param row - the row of the cell
+     * @return the obstacles of the cell, or null if none were ever inserted into it
+     */
+    ArrayList<Obstacle> cell(int col, int row) {
+        return cells.get(row * columns + col);
+    }
+
+    /**
+     * returns the column of the cell holding the given x coordinate, clamped
+     * to the grid
+     *
+     * @param x - the x coordinate
+     * @return the column of the cell
+     */
+    int cellX(float x) {
+        int cx = (int) ((x + margin) / cellSize);
+        return cx < 0 ? 0 : (cx >= columns ? columns - 1 : cx);
+    }
+
+    /**
+     * returns the row of the cell holding the given y coordinate, clamped to
+     * the grid
+     *
+     * @param y - the y coordinate
+     * @return the row of the cell
+     */
+    int cellY(float y) {
+        int cy = (int) ((y + margin) / cellSize);
+        return cy < 0 ? 0 : (cy >= rows ? rows - 1 : cy);
+    }
+
+    /**
+     * returns all obstacles in the index. the list must not be modified
+     *
+     * @return all obstacles, in no particular order
+     */
+    ArrayList<Obstacle> getObstacles() {
+        return obstacles;
+    }
+
+    /**
+     * returns a number that changes whenever an obstacle is inserted or
+     * removed, so the obstacles need only be compared when it changed
+     *
+     * @return the number of changes so far
+     */
+    long getVersion() {
+        return version;
+    }
+
+    int size() {
+        return obstacles.size();
+    }
+}
@@ -0,0 +1,234 @@
+package flocking;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelStepper class - steps a flock held in {@link FlockArrays} on a
+ * fork-join pool. every vehicle reads the current state buffer and writes
+ * the next one, and the buffers are swapped once the whole flock has been
+ * stepped, so the result is the same for any number of threads
+ */
+class ParallelStepper {
+    // the minimal number of vehicles a single task steps
+    private static final int MIN_CHUNK = 64;
+    // the number of tasks each thread gets, for load balancing
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final int threads;
+    private final FlockParameters parameters;
+    private final ForkJoinPool pool;
+    // the stepper of every worker, keyed by its index in the pool, which a
+    // worker spawned after another retired reuses
+    private final ConcurrentHashMap<Integer, ArrayStepper> steppers = new ConcurrentHashMap<>();
+    // the workers that stepped vehicles while counting
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    private volatile boolean counting = false;
+
+    // the next state buffer, swapped with the flock's kinematics every tick
+    private final FlockArrays next = new FlockArrays();
+
+    /**
+     * constructor
+     *
+     * @param threads    - the number of threads to step the flock on
+     * @param parameters - the awareness and motion limits of the vehicles
+     */
+    ParallelStepper(int threads, FlockParameters parameters) {
+        this.threads = threads;
+        this.parameters = parameters;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * advances every vehicle in the flock by a single tick
+     *
+     * @param flock     - the flock to step
+     * @param grid      - a grid index built over the flock at the start of
+     *                  the tick, or null to search neighbours by brute force
+     * @param lists     - neighbour lists updated at the start of the tick,
+     *                  or null to search the grid
+     * @param obstacles - the obstacles in the world
+     * @param nearest   - the number of nearest neighbours the vehicles of
+     *                  every flock react to, indexed by flock number
+     * @param width     - the width of the world
+     * @param height    - the height of the world
+     */
+    void step(FlockArrays flock, SpatialGrid grid, NeighbourLists lists, ObstacleIndex obstacles, int[] nearest,
+              int width, int height) {
+        next.ensureCapacity(flock.capacity());
+        int chunk = Math.max(MIN_CHUNK, flock.size() / (threads * CHUNKS_PER_THREAD));
+        pool.invoke(new StepTask(flock, grid, lists, obstacles, nearest, width, height, 0, flock.size(), chunk));
+        flock.swapKinematics(next);
+    }
+
+    /**
+     * advances every vehicle in the flock by a single tick in grid cell
+     * batches, see {@link ArrayStepper#stepCells}
+     *
+     * @param flock     - the flock to step
+     * @param grid      - a grid index built over the flock at the start of
+     *                  the tick
+     * @param obstacles - the obstacles in the world
+     * @param nearest   - the number of nearest neighbours the vehicles of
+     *                  every flock react to, indexed by flock number
+     * @param width     - the width of the world
+     * @param height    - the height of the world
+     */
+    void stepCells(FlockArrays flock, SpatialGrid grid, ObstacleIndex obstacles, int[] nearest,
+                   int width, int height) {
+        next.ensureCapacity(flock.capacity());
+        int chunk = Math.max(MIN_CHUNK, flock.size() / (threads * CHUNKS_PER_THREAD));
+        pool.invoke(new CellTask(flock, grid, obstacles, nearest, width, height, 0, grid.cellStart.length, chunk));
+        flock.swapKinematics(next);
+    }
+
+    /**
+     * returns the stepper of the current worker, or of the thread that
+     * invoked the pool if it runs a task itself
+     */
+    private ArrayStepper stepper() {
+        Thread thread = Thread.currentThread();
+        int index = thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool
+                ? ((ForkJoinWorkerThread) thread).getPoolIndex() : -1;
+        ArrayStepper stepper = steppers.computeIfAbsent(index, i -> new ArrayStepper(parameters));
+        stepper.setCounting(counting);
+        if (counting && index >= 0) {
+            workers.add(thread);
+        }
+        return stepper;
+    }
+
+    /**
+     * returns the ids of the live pool threads that stepped vehicles while
+     * counting
+     *
+     * @return the thread ids
+     */
+    long[] getWorkerIds() {
+        workers.removeIf(thread -> !thread.isAlive());
+        return workers.stream().mapToLong(Thread::getId).toArray();
+    }
+
+    /**
+     * sets whether the steppers gather the time of every phase and the
+     * neighbour counts
+     *
+     * @param counting - true to gather, false to step without timing
+     */
+    void setCounting(boolean counting) {
+        this.counting = counting;
+    }
+
+    /**
+     * adds the counters of all the threads since the last call to the
+     * given counters. the phase times are summed over the threads
+     *
+     * @param total - the counters to add to
+     */
+    void drainCounters(PhaseCounters total) {
+        for (ArrayStepper stepper : steppers.values()) {
+            stepper.getCounters().drainTo(total);
+        }
+    }
+
+    /**
+     * shuts down the pool's threads
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * a task stepping a range of vehicle ids, split in halves until it is
+     * no larger than a chunk
+     */
+    @SuppressWarnings("serial")
+    private class StepTask extends RecursiveAction {
+        private final FlockArrays flock;
+        private final SpatialGrid grid;
+        private final NeighbourLists lists;
+        private final ObstacleIndex obstacles;
+        private final int[] nearest;
+        private final int width;
+        private final int height;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        StepTask(FlockArrays flock, SpatialGrid grid, NeighbourLists lists, ObstacleIndex obstacles, int[] nearest,
+                 int width, int height, int from, int to, int chunk) {
+            this.flock = flock;
+            this.grid = grid;
+            this.lists = lists;
+            this.obstacles = obstacles;
+            this.nearest = nearest;
+            this.width = width;
+            this.height = height;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                stepper().step(flock, grid, lists, obstacles, nearest, width, height, next, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepTask(flock, grid, lists, obstacles, nearest, width, height, from, mid, chunk),
+                    new StepTask(flock, grid, lists, obstacles, nearest, width, height, mid, to, chunk));
+        }
+    }
+
+    /**
+     * a task stepping the vehicles of a range of grid cells, split in
+     * halves until it holds no more vehicles than a chunk or a single cell
+     */
+    @SuppressWarnings("serial")
+    private class CellTask extends RecursiveAction {
+        private final FlockArrays flock;
+        private final SpatialGrid grid;
+        private final ObstacleIndex obstacles;
+        private final int[] nearest;
+        private final int width;
+        private final int height;
+        private final int fromCell;
+        private final int toCell;
+        private final int chunk;
+
+        CellTask(FlockArrays flock, SpatialGrid grid, ObstacleIndex obstacles, int[] nearest,
+                 int width, int height, int fromCell, int toCell, int chunk) {
+            this.flock = flock;
+            this.grid = grid;
+            this.obstacles = obstacles;
+            this.nearest = nearest;
+            this.width = width;
+            this.height = height;
+            this.fromCell = fromCell;
+            this.toCell = toCell;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            // the vehicles are sorted by cell, so a range of cells holds a range of them
+            int vehicles = grid.cellStart[toCell - 1] + grid.cellCount[toCell - 1] - grid.cellStart[fromCell];
+            if (vehicles <= chunk || toCell - fromCell == 1) {
+                stepper().stepCells(flock, grid, obstacles, nearest, width, height, next, fromCell, toCell);
+                return;
+            }
+            int mid = (fromCell + toCell) >>> 1;
+            invokeAll(new CellTask(flock, grid, obstacles, nearest, width, height, fromCell, mid, chunk),
+                    new CellTask(flock, grid, obstacles, nearest, width, height, mid, toCell, chunk));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package flocking;
+
+/**
+ * the time spent in every phase of a tick and the histogram of neighbour
+ * counts, gathered by a single thread. steppers running on several threads
+ * each gather into their own counters, which are added up once the tick is
+ * stepped
+ */
+class PhaseCounters {
+
+    /**
+     * the phases of a tick
+     */
+    enum Phase {
+        // rebuilding the neighbour index from the positions
+        INDEX_REBUILD,
+        // finding the neighbours of every vehicle
+        NEIGHBOUR_SEARCH,
+        // the alignment, cohesion and separation steering
+        STEERING,
+        // the obstacle avoidance steering
+        OBSTACLES,
+        // updating the velocities and positions and wrapping at the edges
+        INTEGRATION,
+        // drawing the vehicles
+        RENDERING
+    }
+
+    static final Phase[] PHASES = Phase.values();
+    // bucket 0 counts vehicles with no neighbours, bucket b > 0 the ones with
+    // [2^(b - 1), 2^b) neighbours, and the last bucket everything above
+    static final int HISTOGRAM_BUCKETS = 12;
+
+    final long[] nanos = new long[PHASES.length];
+    final long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+    /**
+     * adds the time since the given start to the given phase
+     *
+     * @param phase - the phase that just ended
+     * @param start - the {@link System#nanoTime()} the phase started at
+     * @return the current {@link System#nanoTime()}, the start of the next phase
+     */
+    long lap(Phase phase, long start) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - start;
+        return now;
+    }
+
+    /**
+     * counts a vehicle with the given number of neighbours in the histogram
+     *
+     * @param neighbours - the number of neighbours
+     */
+    void neighbours(int neighbours) {
+        int bucket = 32 - Integer.numberOfLeadingZeros(neighbours);
+        histogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+    }
+
+    /**
+     * adds these counters to the given ones and clears them
+     *
+     * @param total - the counters to add to
+     */
+    void drainTo(PhaseCounters total) {
+        for (int p = 0; p < nanos.length; p++) {
+            total.nanos[p] += nanos[p];
+            nanos[p] = 0;
+        }
+        for (int b = 0; b < histogram.length; b++) {
+            total.histogram[b] += histogram[b];
+            histogram[b] = 0;
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package flocking;
+
 /**
  * a generic point class
  * @param <T>
@@ -5,9 +7,11 @@
 class Point<T> {
     private static final int SIZE = 2;
     // instance fields
-    private final float x;
-    private final float y;
+    private float x;
+    private float y;
     private final T userData;
+    // the QuadTree node holding the point, null if no tree holds it
+    QuadTree<T> node;
 
     /**
      * constructor
@@ -22,6 +26,17 @@ class Point<T> {
         this.userData = userData;
     }
 
+    /**
+     * moves the point, for the QuadTree holding it
+     *
+     * @param x - the new x coordinate of the point
+     * @param y - the new y coordinate of the point
+     */
+    void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
     public float getX() {
         return x;
     }
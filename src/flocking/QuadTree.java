@@ -0,0 +1,465 @@
+package flocking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * a generic QuadTree implementation. nodes are kept after {@link #clear()},
+ * so a tree that is cleared and refilled every frame reuses its nodes
+ * instead of reallocating them
+ * <p>
+ * points can also be moved and removed in place. a moved point stays in its
+ * node while it is within the node's boundary grown by the tree's
+ * looseness, so a point that moves a little every frame is only relocated
+ * when it leaves its node. a node splits when a point is inserted into it
+ * while it is full, and merges its children back in when they hold few
+ * enough points
+ * <p>
+ * the tree can also keep per flock aggregates in every node, the number of
+ * points of each flock with the sums of their positions and velocities,
+ * so a query can take a distant node's aggregates instead of visiting its
+ * points one by one, as a Barnes-Hut tree does
+ *
+ * @param <T> the type of data for the QuadTree points to hold
+ */
+public class QuadTree<T> {
+
+    //max capacity of points that each QuadTree node can hold
+    public static final int QT_NODE_CAPACITY = 4;
+    //a divided node whose subtree holds at most this many points merges its children
+    public static final int QT_MERGE_THRESHOLD = QT_NODE_CAPACITY / 2;
+
+    //the layout of the aggregates of one flock in a node's aggregates
+    static final int AGG_COUNT = 0;
+    static final int AGG_X = 1;
+    static final int AGG_Y = 2;
+    static final int AGG_VX = 3;
+    static final int AGG_VY = 4;
+    static final int AGG_STRIDE = 5;
+
+    //the boundary of this QuadTree node
+    private final Square<T> boundary;
+
+    //how far a point may move out of the boundary of its node before it is relocated
+    private final float looseness;
+
+    //the parent of this node, null for the root
+    private final QuadTree<T> parent;
+
+    //the number of points held by this node and its descendants
+    private int count = 0;
+
+    //a flag for weather the node is subdivided
+    private boolean isDivided = false;
+
+    //children
+    private QuadTree<T> tr;
+    private QuadTree<T> tl;
+    private QuadTree<T> br;
+    private QuadTree<T> bl;
+
+    //the array of points held by this node
+    private final ArrayList<Point<T>> points;
+
+    //the aggregates of every flock in this subtree, AGG_STRIDE floats per
+    //flock, as of the last call to aggregate
+    private float[] aggregates = new float[0];
+
+
+    /**
+     * constructor
+     *
+     * @param boundary - the boundary square of this node
+     */
+    public QuadTree(Square<T> boundary) {
+        this(boundary, 0);
+    }
+
+    /**
+     * constructor
+     *
+     * @param boundary  - the boundary square of this node
+     * @param looseness - how far a moved point may leave the boundary of
+     *                  its node before it is relocated
+     */
+    public QuadTree(Square<T> boundary, float looseness) {
+        this(boundary, looseness, null);
+    }
+
+    private QuadTree(Square<T> boundary, float looseness, QuadTree<T> parent) {
+        this.boundary = boundary;
+        this.looseness = looseness;
+        this.parent = parent;
+        this.points = new ArrayList<>();
+    }
+
+    /**
+     * insert a new point into the node, subdivide if needed
+     *
+     * @param p - the point to be inserted
+     * @return true if the point was inserted into this node, false otherwise
+     */
+    public boolean insert(Point<T> p) {
+        //if the point does not intersect this node
+        if (!boundary.containsPoint(p)) {
+            return false;
+        }
+        place(p);
+        for (QuadTree<T> node = parent; node != null; node = node.parent) node.count++;
+        return true;
+    }
+
+    /**
+     * places a point within the boundary of this node into this node or
+     * the child it falls in, subdividing if needed
+     */
+    private void place(Point<T> p) {
+        count++;
+        // if there is enough space for another point and the node is not
+        // divided
+        if (this.points.size() < QT_NODE_CAPACITY && !isDivided) {
+            this.points.add(p);
+            p.node = this;
+            return;
+        }
+
+        // if not already subdivided
+        if (!isDivided) subDivide();
+
+        // the children split the boundary at its center
+        boolean right = p.getX() >= boundary.getX();
+        boolean bottom = p.getY() >= boundary.getY();
+        if (bottom) (right ? br : bl).place(p);
+        else (right ? tr : tl).place(p);
+    }
+
+    /**
+     * moves a point held by this tree to the given position. the point stays
+     * in its node if it is within the node's boundary grown by the
+     * looseness, and is otherwise removed and inserted again through the
+     * nearest node containing it
+     *
+     * @param p - the point to move
+     * @param x - the new x coordinate of the point
+     * @param y - the new y coordinate of the point
+     * @return true if the point is held by the tree after the move, false
+     * if it moved out of the tree's boundary and was removed
+     */
+    public boolean move(Point<T> p, float x, float y) {
+        QuadTree<T> node = p.node;
+        p.setPosition(x, y);
+        if (node == null) return insert(p);
+        if (node.boundary.containsPoint(p, node.looseness)) return true;
+
+        node.detach(p);
+        QuadTree<T> ancestor = node;
+        while (ancestor != null && !ancestor.boundary.containsPoint(p)) ancestor = ancestor.parent;
+        if (ancestor != null) {
+            ancestor.place(p);
+            for (QuadTree<T> n = ancestor.parent; n != null; n = n.parent) n.count++;
+        }
+        node.mergeUpwards();
+        return ancestor != null;
+    }
+
+    /**
+     * removes a point held by this tree
+     *
+     * @param p - the point to remove
+     * @return true if the point was removed, false if no tree held it
+     */
+    public boolean remove(Point<T> p) {
+        QuadTree<T> node = p.node;
+        if (node == null) return false;
+        node.detach(p);
+        node.mergeUpwards();
+        return true;
+    }
+
+    /**
+     * returns the number of points held by the tree
+     *
+     * @return the number of points in this node and its descendants
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * removes a point held by this node, without merging
+     */
+    private void detach(Point<T> p) {
+        this.points.remove(p);
+        p.node = null;
+        for (QuadTree<T> n = this; n != null; n = n.parent) n.count--;
+    }
+
+    /**
+     * merges this node and every ancestor whose subtree underflowed back
+     * into a single node
+     */
+    private void mergeUpwards() {
+        for (QuadTree<T> n = this; n != null; n = n.parent) {
+            if (n.isDivided && n.count <= QT_MERGE_THRESHOLD) {
+                n.tr.moveAllTo(n);
+                n.br.moveAllTo(n);
+                n.bl.moveAllTo(n);
+                n.tl.moveAllTo(n);
+                n.isDivided = false;
+            }
+        }
+    }
+
+    /**
+     * moves every point of this subtree into the given node and leaves the
+     * subtree empty, keeping its nodes for reuse
+     */
+    private void moveAllTo(QuadTree<T> target) {
+        for (int i = 0; i < this.points.size(); i++) {
+            Point<T> p = this.points.get(i);
+            target.points.add(p);
+            p.node = target;
+        }
+        this.points.clear();
+        this.count = 0;
+        if (!isDivided) return;
+        tr.moveAllTo(target);
+        br.moveAllTo(target);
+        bl.moveAllTo(target);
+        tl.moveAllTo(target);
+        this.isDivided = false;
+    }
+
+    private void subDivide() {
+        //children kept from before the last clear already have the right boundaries
+        if (tr == null) {
+            //create local variables for readability
+            float x = this.boundary.getX();
+            float y = this.boundary.getY();
+            float r = this.boundary.getR();
+
+            //subdivide this node into 4 new, equally sized nodes
+            tr = new QuadTree<>(new Square<>(x + r / 2, y - r / 2, r / 2), looseness, this);
+            tl = new QuadTree<>(new Square<>(x - r / 2, y - r / 2, r / 2), looseness, this);
+            br = new QuadTree<>(new Square<>(x + r / 2, y + r / 2, r / 2), looseness, this);
+            bl = new QuadTree<>(new Square<>(x - r / 2, y + r / 2, r / 2), looseness, this);
+        }
+
+        //set isDivided to true
+        this.isDivided = true;
+    }
+
+    /**
+     * removes all points from the tree, keeping its nodes for reuse
+     */
+    public void clear() {
+        for (int i = 0; i < this.points.size(); i++) {
+            this.points.get(i).node = null;
+        }
+        this.points.clear();
+        this.count = 0;
+        if (!isDivided) return;
+        tr.clear();
+        br.clear();
+        bl.clear();
+        tl.clear();
+        this.isDivided = false;
+    }
+
+    /**
+     * returns all points in this node that are in the given range
+     *
+     * @param range - a Square that is the range to look for points in
+     * @return an ArrayList of the points from this node that are in the range
+     */
+    ArrayList<Point<T>> queryRange(Square<T> range) {
+        ArrayList<Point<T>> result = new ArrayList<>();
+        queryRange(range, result::add);
+        return result;
+    }
+
+    /**
+     * passes every point in this node that is in the given range to the
+     * visitor, without collecting them
+     *
+     * @param range   - a Square that is the range to look for points in
+     * @param visitor - the consumer of the points in the range
+     */
+    void queryRange(Square<T> range, Consumer<Point<T>> visitor) {
+        if (!boundary.intersects(range, looseness)) {
+            return;
+        }
+
+        for (int i = 0; i < this.points.size(); i++) {
+            Point<T> point = this.points.get(i);
+            if (range.containsPoint(point)) visitor.accept(point);
+        }
+
+        if (!isDivided) return;
+
+        tr.queryRange(range, visitor);
+        br.queryRange(range, visitor);
+        bl.queryRange(range, visitor);
+        tl.queryRange(range, visitor);
+    }
+
+    /**
+     * passes every point in this node that is within the given radius of
+     * the given center to the visitor, without collecting them
+     *
+     * @param x       - the x coordinate of the center
+     * @param y       - the y coordinate of the center
+     * @param radius  - the radius to look for points in
+     * @param visitor - the consumer of the points in the radius
+     */
+    void queryRadius(float x, float y, float radius, Consumer<Point<T>> visitor) {
+        if (!boundary.intersectsCircle(x, y, radius, looseness)) {
+            return;
+        }
+
+        float radiusSq = radius * radius;
+        for (int i = 0; i < this.points.size(); i++) {
+            Point<T> point = this.points.get(i);
+            float dx = point.getX() - x;
+            float dy = point.getY() - y;
+            if (dx * dx + dy * dy <= radiusSq) visitor.accept(point);
+        }
+
+        if (!isDivided) return;
+
+        tr.queryRadius(x, y, radius, visitor);
+        br.queryRadius(x, y, radius, visitor);
+        bl.queryRadius(x, y, radius, visitor);
+        tl.queryRadius(x, y, radius, visitor);
+    }
+
+    /**
+     * recalculates the per flock aggregates of every node in use from the
+     * current positions of the points and the velocities of their data.
+     * the velocities change every tick, so the aggregates are recalculated
+     * bottom up rather than kept up to date as points move
+     *
+     * @param flocks   - the number of flocks, above every flock number
+     * @param accessor - reads the flock and velocity of a point's data
+     */
+    void aggregate(int flocks, FlockAccessor<? super T> accessor) {
+        int length = flocks * AGG_STRIDE;
+        if (aggregates.length != length) {
+            aggregates = new float[length];
+        } else {
+            Arrays.fill(aggregates, 0);
+        }
+        for (int i = 0; i < this.points.size(); i++) {
+            Point<T> point = this.points.get(i);
+            T data = point.getUserData();
+            int at = accessor.flockOf(data) * AGG_STRIDE;
+            aggregates[at + AGG_COUNT]++;
+            aggregates[at + AGG_X] += point.getX();
+            aggregates[at + AGG_Y] += point.getY();
+            aggregates[at + AGG_VX] += accessor.velocityXOf(data);
+            aggregates[at + AGG_VY] += accessor.velocityYOf(data);
+        }
+
+        if (!isDivided) return;
+
+        tr.aggregate(flocks, accessor);
+        br.aggregate(flocks, accessor);
+        bl.aggregate(flocks, accessor);
+        tl.aggregate(flocks, accessor);
+        for (int k = 0; k < length; k++) {
+            aggregates[k] += tr.aggregates[k] + br.aggregates[k] + bl.aggregates[k] + tl.aggregates[k];
+        }
+    }
+
+    /**
+     * passes every point within the given radius of the given center to the
+     * near visitor, except that a divided node lying entirely within the
+     * radius whose width, seen from the center, is below the opening angle
+     * is passed whole to the far visitor instead. the far visitor gets the
+     * node's aggregates as of the last call to {@link #aggregate}. a node
+     * that may hold the point the query is made for is never aggregated, so
+     * that point is not counted as its own neighbour at large opening angles
+     *
+     * @param x            - the x coordinate of the center
+     * @param y            - the y coordinate of the center
+     * @param radius       - the radius to look for points in
+     * @param openingAngle - the largest ratio of a node's width to its
+     *                     distance for the node to be aggregated, 0 to
+     *                     visit every point
+     * @param slack        - how far the point the query is made for may be
+     *                     from the center, having moved since the tree was
+     *                     updated
+     * @param near         - the consumer of the points visited one by one
+     * @param far          - the consumer of the aggregates of the far nodes,
+     *                     which must not modify them
+     */
+    void queryFarField(float x, float y, float radius, float openingAngle, float slack,
+                       Consumer<Point<T>> near, Consumer<float[]> far) {
+        if (!boundary.intersectsCircle(x, y, radius, looseness)) {
+            return;
+        }
+
+        if (isDivided && boundary.insideCircle(x, y, radius, looseness)) {
+            float width = 2 * (boundary.getR() + looseness);
+            float dx = boundary.getX() - x;
+            float dy = boundary.getY() - y;
+            float reach = width / 2 + slack;
+            boolean holdsCenter = Math.abs(dx) <= reach && Math.abs(dy) <= reach;
+            if (!holdsCenter && width * width < openingAngle * openingAngle * (dx * dx + dy * dy)) {
+                far.accept(aggregates);
+                return;
+            }
+        }
+
+        float radiusSq = radius * radius;
+        for (int i = 0; i < this.points.size(); i++) {
+            Point<T> point = this.points.get(i);
+            float dx = point.getX() - x;
+            float dy = point.getY() - y;
+            if (dx * dx + dy * dy <= radiusSq) near.accept(point);
+        }
+
+        if (!isDivided) return;
+
+        tr.queryFarField(x, y, radius, openingAngle, slack, near, far);
+        br.queryFarField(x, y, radius, openingAngle, slack, near, far);
+        bl.queryFarField(x, y, radius, openingAngle, slack, near, far);
+        tl.queryFarField(x, y, radius, openingAngle, slack, near, far);
+    }
+
+    /**
+     * reads the flock and velocity of the data of a point, for the
+     * aggregates of the nodes
+     *
+     * @param <T> the type of data of the points
+     */
+    interface FlockAccessor<T> {
+        int flockOf(T data);
+
+        float velocityXOf(T data);
+
+        float velocityYOf(T data);
+    }
+
+    /**
+     * returns the depth of the tree in use, counting only divided nodes
+     *
+     * @return 1 for an undivided node, 1 + the deepest child's depth otherwise
+     */
+    int depth() {
+        if (!isDivided) return 1;
+        return 1 + Math.max(Math.max(tr.depth(), br.depth()), Math.max(bl.depth(), tl.depth()));
+    }
+
+    /**
+     * returns the number of nodes in use, not counting the nodes kept after
+     * a {@link #clear()} that the current points did not need
+     *
+     * @return the number of nodes in this tree
+     */
+    int nodeCount() {
+        if (!isDivided) return 1;
+        return 1 + tr.nodeCount() + br.nodeCount() + bl.nodeCount() + tl.nodeCount();
+    }
+}
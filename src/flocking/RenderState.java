@@ -0,0 +1,122 @@
+package flocking;
+
+import java.util.ArrayList;
+
+/**
+ * RenderState class - a copy of everything the viewer draws of a single
+ * tick: the positions and velocities of the vehicles, their positions on the
+ * tick before for interpolation, and the obstacles. the vehicles are
+ * copied in the order of their ids, which does not change when the engine
+ * reorders them. filled by the simulation thread and not modified once
+ * published
+ */
+class RenderState {
+    long tick;
+    // the System.nanoTime() the state was published at
+    long publishedNanos;
+    int size;
+    float[] x = new float[0];
+    float[] y = new float[0];
+    float[] previousX = new float[0];
+    float[] previousY = new float[0];
+    float[] vx = new float[0];
+    float[] vy = new float[0];
+    int[] flockNumber = new int[0];
+    int obstacleCount;
+    float[] obstacleX = new float[0];
+    float[] obstacleY = new float[0];
+
+    /**
+     * copies the current state of the engine
+     *
+     * @param engine    - the engine to copy
+     * @param previousX - the x coordinates of the vehicles on the tick
+     *                  before, shorter than the vehicles if some were added
+     * @param previousY - the y coordinates of the vehicles on the tick before
+     */
+    void copyFrom(FlockEngine engine, float[] previousX, float[] previousY) {
+        int n = engine.size();
+        if (x.length < n) {
+            x = new float[n];
+            y = new float[n];
+            this.previousX = new float[n];
+            this.previousY = new float[n];
+            vx = new float[n];
+            vy = new float[n];
+            flockNumber = new int[n];
+        }
+        tick = engine.getTick();
+        size = n;
+        if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS && !engine.isReordered()) {
+            FlockArrays arrays = engine.getArrays();
+            System.arraycopy(arrays.posX, 0, x, 0, n);
+            System.arraycopy(arrays.posY, 0, y, 0, n);
+            System.arraycopy(arrays.velX, 0, vx, 0, n);
+            System.arraycopy(arrays.velY, 0, vy, 0, n);
+            System.arraycopy(arrays.flockNumber, 0, flockNumber, 0, n);
+        } else if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+            FlockArrays arrays = engine.getArrays();
+            for (int id = 0; id < n; id++) {
+                int i = engine.indexOf(id);
+                x[id] = arrays.posX[i];
+                y[id] = arrays.posY[i];
+                vx[id] = arrays.velX[i];
+                vy[id] = arrays.velY[i];
+                flockNumber[id] = arrays.flockNumber[i];
+            }
+        } else {
+            ArrayList<Vehicle> vehicles = engine.getVehicles();
+            for (int id = 0; id < n; id++) {
+                Vehicle v = vehicles.get(engine.indexOf(id));
+                x[id] = v.getX();
+                y[id] = v.getY();
+                vx[id] = v.getVelocityX();
+                vy[id] = v.getVelocityY();
+                flockNumber[id] = v.getFlockNumber();
+            }
+        }
+        // vehicles added since the tick before have no earlier position
+        int known = Math.min(n, previousX.length);
+        System.arraycopy(previousX, 0, this.previousX, 0, known);
+        System.arraycopy(previousY, 0, this.previousY, 0, known);
+        System.arraycopy(x, known, this.previousX, known, n - known);
+        System.arraycopy(y, known, this.previousY, known, n - known);
+
+        ArrayList<Obstacle> obstacles = engine.getObstacles();
+        obstacleCount = obstacles.size();
+        if (obstacleX.length < obstacleCount) {
+            obstacleX = new float[obstacleCount * 2];
+            obstacleY = new float[obstacleCount * 2];
+        }
+        for (int k = 0; k < obstacleCount; k++) {
+            obstacleX[k] = obstacles.get(k).getX();
+            obstacleY[k] = obstacles.get(k).getY();
+        }
+    }
+
+    /**
+     * returns the x coordinate of a vehicle between the tick before and
+     * this one. a vehicle that wrapped around the edges is not interpolated
+     *
+     * @param i     - the index of the vehicle
+     * @param alpha - 0 for the tick before, 1 for this tick
+     * @return the interpolated x coordinate
+     */
+    float interpolatedX(int i, float alpha) {
+        return interpolate(previousX[i], x[i], alpha);
+    }
+
+    /**
+     * returns the y coordinate of a vehicle between the tick before and
+     * this one, as {@link #interpolatedX}
+     */
+    float interpolatedY(int i, float alpha) {
+        return interpolate(previousY[i], y[i], alpha);
+    }
+
+    private static float interpolate(float from, float to, float alpha) {
+        // a vehicle moves at most the max speed in a tick, farther is a wrap
+        if (Math.abs(to - from) > 2 * Vehicle.MAX_SPEED) return to;
+        return from + (to - from) * alpha;
+    }
+}
@@ -0,0 +1,47 @@
+package flocking;
+
+import java.util.Random;
+
+/**
+ * a Random whose state can be read and restored, so a checkpointed engine
+ * continues with the same random numbers. generates exactly the sequence
+ * {@link Random} generates for the same seed
+ */
+class RestorableRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    /**
+     * constructor
+     *
+     * @param seed - the initial seed
+     */
+    RestorableRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        // called by the Random constructor
+        state = (seed ^ MULTIPLIER) & MASK;
+        super.setSeed(seed);
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+}
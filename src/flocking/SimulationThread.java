@@ -0,0 +1,156 @@
+package flocking;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SimulationThread class - steps an engine on its own thread at a fixed
+ * number of ticks per second, independently of how fast the frames are
+ * drawn. after every tick a {@link RenderState} is published through a
+ * {@link TripleBuffer}, so the viewer always draws the latest tick without
+ * locking, and a slow frame never holds the simulation back
+ * <p>
+ * the engine belongs to this thread once it is started. other threads
+ * change it only through {@link #post}, which runs the change between ticks
+ */
+class SimulationThread {
+    // ticks missed by more than this are skipped instead of caught up with
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final FlockEngine engine;
+    private final long tickNanos;
+    private final TripleBuffer<RenderState> states = new TripleBuffer<>(RenderState::new);
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = false;
+    private volatile RuntimeException failure;
+
+    // the positions of the last published tick, owned by the thread
+    private float[] lastX = new float[0];
+    private float[] lastY = new float[0];
+
+    /**
+     * constructor
+     *
+     * @param engine         - the engine to step
+     * @param ticksPerSecond - the number of ticks to step every second
+     */
+    SimulationThread(FlockEngine engine, int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("ticks per second must be positive: " + ticksPerSecond);
+        }
+        this.engine = engine;
+        this.tickNanos = 1_000_000_000L / ticksPerSecond;
+        this.thread = new Thread(this::run, "simulation");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * publishes the current state of the engine and starts stepping it
+     */
+    void start() {
+        publish();
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * stops stepping and waits for the current tick to finish, after which
+     * the engine may be used by the calling thread again
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * runs the given change to the engine on the simulation thread, before
+     * the next tick
+     *
+     * @param command - the change to run
+     */
+    void post(Runnable command) {
+        commands.add(command);
+    }
+
+    /**
+     * returns the state of the latest published tick. called by a single
+     * reader thread only
+     *
+     * @return the latest state, which the simulation thread does not modify
+     * until a newer one has been returned
+     */
+    RenderState latest() {
+        if (failure != null) {
+            throw new IllegalStateException("the simulation thread failed", failure);
+        }
+        return states.latest();
+    }
+
+    /**
+     * returns how far the time is between the tick of the given state and
+     * the next one, for interpolating between the tick before and the state
+     *
+     * @param state - a state returned by {@link #latest()}
+     * @return the fraction of the tick passed since the state was
+     * published, in [0, 1]
+     */
+    float alpha(RenderState state) {
+        float alpha = (float) (System.nanoTime() - state.publishedNanos) / tickNanos;
+        return alpha < 0 ? 0 : (alpha > 1 ? 1 : alpha);
+    }
+
+    long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * the loop of the simulation thread, a fixed timestep loop that sleeps
+     * until the next tick is due
+     */
+    private void run() {
+        try {
+            long next = System.nanoTime();
+            while (running) {
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    command.run();
+                }
+                long now = System.nanoTime();
+                if (now < next) {
+                    LockSupport.parkNanos(next - now);
+                    continue;
+                }
+                if (now - next > MAX_CATCH_UP_TICKS * tickNanos) {
+                    // too far behind, e.g. after a pause, drop the missed ticks
+                    next = now;
+                }
+                engine.step();
+                publish();
+                next += tickNanos;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    private void publish() {
+        RenderState state = states.back();
+        state.copyFrom(engine, lastX, lastY);
+        state.publishedNanos = System.nanoTime();
+        int n = state.size;
+        if (lastX.length < n) {
+            lastX = Arrays.copyOf(lastX, n);
+            lastY = Arrays.copyOf(lastY, n);
+        }
+        System.arraycopy(state.x, 0, lastX, 0, n);
+        System.arraycopy(state.y, 0, lastY, 0, n);
+        states.publish();
+    }
+}
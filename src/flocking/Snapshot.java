@@ -0,0 +1,174 @@
+package flocking;
+
+import processing.core.PVector;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Snapshot class - saves and restores the full state of an engine in a
+ * compact binary file, written and read through a memory-mapped buffer.
+ * <p>
+ * the file is little endian: a header of magic, version, width, height,
+ * vision radius, max speed, max force, tick, random state, vehicle count
+ * and obstacle count, then one column per
+ * vehicle field (x, y, vx, vy, ax, ay, flock number, alignment, cohesion and
+ * separation coefficients) and one column per obstacle coordinate (x, y).
+ * the vehicles are saved in the order they are stepped in, not in the
+ * order of their ids, so a restored run steps exactly as the saved one
+ * would have, and the restored vehicles' ids are their saved indices
+ */
+final class Snapshot {
+    static final int MAGIC = 0x464C4B53;
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 * 4 + 4 * 3 + 8 * 2 + 4 * 2;
+    private static final int VEHICLE_BYTES = 10 * 4;
+    private static final int OBSTACLE_BYTES = 2 * 4;
+
+    private Snapshot() {
+    }
+
+    /**
+     * saves the state of the engine to the given file, replacing it
+     *
+     * @param engine - the engine to save
+     * @param path   - the file to save to
+     * @throws IOException if the file cannot be written
+     */
+    static void save(FlockEngine engine, Path path) throws IOException {
+        int n = engine.size();
+        ArrayList<Obstacle> obstacles = engine.getObstacles();
+        int m = obstacles.size();
+        long bytes = HEADER_BYTES + (long) n * VEHICLE_BYTES + (long) m * OBSTACLE_BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("snapshot of " + n + " vehicles is too large to map");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(engine.getWidth()).putInt(engine.getHeight());
+            FlockParameters parameters = engine.getParameters();
+            buffer.putFloat(parameters.visionRadius).putFloat(parameters.maxSpeed).putFloat(parameters.maxForce);
+            buffer.putLong(engine.getTick()).putLong(engine.getRandomState());
+            buffer.putInt(n).putInt(m);
+            if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+                FlockArrays arrays = engine.getArrays();
+                putColumn(buffer, arrays.posX, n);
+                putColumn(buffer, arrays.posY, n);
+                putColumn(buffer, arrays.velX, n);
+                putColumn(buffer, arrays.velY, n);
+                putColumn(buffer, arrays.accX, n);
+                putColumn(buffer, arrays.accY, n);
+                buffer.asIntBuffer().put(arrays.flockNumber, 0, n);
+                buffer.position(buffer.position() + n * 4);
+                putColumn(buffer, arrays.alignmentCoefficient, n);
+                putColumn(buffer, arrays.cohesionCoefficient, n);
+                putColumn(buffer, arrays.separationCoefficient, n);
+            } else {
+                ArrayList<Vehicle> vehicles = engine.getVehicles();
+                for (Vehicle v : vehicles) buffer.putFloat(v.getX());
+                for (Vehicle v : vehicles) buffer.putFloat(v.getY());
+                for (Vehicle v : vehicles) buffer.putFloat(v.getVelocityX());
+                for (Vehicle v : vehicles) buffer.putFloat(v.getVelocityY());
+                for (Vehicle v : vehicles) buffer.putFloat(v.getAccelerationX());
+                for (Vehicle v : vehicles) buffer.putFloat(v.getAccelerationY());
+                for (Vehicle v : vehicles) buffer.putInt(v.getFlockNumber());
+                for (Vehicle v : vehicles) buffer.putFloat(v.getCoefficientVector().x);
+                for (Vehicle v : vehicles) buffer.putFloat(v.getCoefficientVector().y);
+                for (Vehicle v : vehicles) buffer.putFloat(v.getCoefficientVector().z);
+            }
+            for (Obstacle o : obstacles) buffer.putFloat(o.getX());
+            for (Obstacle o : obstacles) buffer.putFloat(o.getY());
+        }
+    }
+
+    /**
+     * restores an engine from the given file
+     *
+     * @param path        - the file to restore from
+     * @param storageMode - the way the restored engine holds its vehicles,
+     *                    which does not have to match the saved engine
+     * @return a new engine in the saved state
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    static FlockEngine load(Path path, FlockEngine.StorageMode storageMode) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(path + " is not a flock snapshot");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a flock snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version + " in " + path);
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            FlockParameters parameters = new FlockParameters(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+            long tick = buffer.getLong();
+            long randomState = buffer.getLong();
+            int n = buffer.getInt();
+            int m = buffer.getInt();
+            if (channel.size() != HEADER_BYTES + (long) n * VEHICLE_BYTES + (long) m * OBSTACLE_BYTES) {
+                throw new IOException("truncated snapshot " + path);
+            }
+
+            FlockEngine engine = new FlockEngine(width, height, 0, storageMode, parameters);
+            engine.setTick(tick);
+            engine.setRandomState(randomState);
+            int base = buffer.position();
+            if (storageMode == FlockEngine.StorageMode.ARRAYS) {
+                FlockArrays arrays = engine.getArrays();
+                arrays.setSize(n);
+                getColumn(buffer, base, 0, arrays.posX, n);
+                getColumn(buffer, base, 1, arrays.posY, n);
+                getColumn(buffer, base, 2, arrays.velX, n);
+                getColumn(buffer, base, 3, arrays.velY, n);
+                getColumn(buffer, base, 4, arrays.accX, n);
+                getColumn(buffer, base, 5, arrays.accY, n);
+                buffer.position(base + 6 * n * 4);
+                buffer.asIntBuffer().get(arrays.flockNumber, 0, n);
+                getColumn(buffer, base, 7, arrays.alignmentCoefficient, n);
+                getColumn(buffer, base, 8, arrays.cohesionCoefficient, n);
+                getColumn(buffer, base, 9, arrays.separationCoefficient, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    PVector coefficients = new PVector(column(buffer, base, 7, n, i),
+                            column(buffer, base, 8, n, i), column(buffer, base, 9, n, i));
+                    engine.addVehicle(column(buffer, base, 0, n, i), column(buffer, base, 1, n, i),
+                            column(buffer, base, 2, n, i), column(buffer, base, 3, n, i),
+                            column(buffer, base, 4, n, i), column(buffer, base, 5, n, i),
+                            buffer.getInt(base + (6 * n + i) * 4), coefficients);
+                }
+            }
+            int obstacles = base + n * VEHICLE_BYTES;
+            for (int k = 0; k < m; k++) {
+                engine.addObstacle(buffer.getFloat(obstacles + k * 4), buffer.getFloat(obstacles + (m + k) * 4));
+            }
+            return engine;
+        }
+    }
+
+    private static void putColumn(MappedByteBuffer buffer, float[] values, int n) {
+        buffer.asFloatBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + n * 4);
+    }
+
+    private static void getColumn(MappedByteBuffer buffer, int base, int column, float[] values, int n) {
+        buffer.position(base + column * n * 4);
+        buffer.asFloatBuffer().get(values, 0, n);
+    }
+
+    private static float column(MappedByteBuffer buffer, int base, int column, int n, int i) {
+        return buffer.getFloat(base + (column * n + i) * 4);
+    }
+}
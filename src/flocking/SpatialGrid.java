@@ -0,0 +1,125 @@
+package flocking;
+
+import java.util.Arrays;
+
+/**
+ * a uniform grid neighbour index. the world is split into square cells and
+ * every rebuild counting-sorts the point ids by cell into flat arrays, so
+ * the points of cell c are ids[cellStart[c]] .. ids[cellStart[c] + cellCount[c] - 1]
+ * in ascending id order
+ */
+class SpatialGrid {
+    // the world is padded by this margin on every side
+    private final float margin;
+    private final float cellSize;
+    final int columns;
+    final int rows;
+
+    // flat per-cell arrays, indexed by cell
+    final int[] cellStart;
+    final int[] cellCount;
+
+    // point ids sorted by cell, and the cell of every point id
+    int[] ids = new int[0];
+    private int[] cellOf = new int[0];
+
+    /**
+     * constructor
+     *
+     * @param width    - the width of the world
+     * @param height   - the height of the world
+     * @param margin   - the margin points may lie outside the world by
+     * @param cellSize - the edge length of each cell
+     */
+    SpatialGrid(float width, float height, float margin, float cellSize) {
+        this.margin = margin;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil((width + 2 * margin) / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((height + 2 * margin) / cellSize));
+        this.cellStart = new int[columns * rows];
+        this.cellCount = new int[columns * rows];
+    }
+
+    /**
+     * rebuilds the index in linear time from the given coordinates
+     *
+     * @param xs - the x coordinates of the points, indexed by id
+     * @param ys - the y coordinates of the points, indexed by id
+     * @param n  - the number of points
+     */
+    void rebuild(float[] xs, float[] ys, int n) {
+        if (ids.length < n) {
+            ids = new int[n];
+            cellOf = new int[n];
+        }
+        Arrays.fill(cellCount, 0);
+        for (int i = 0; i < n; i++) {
+            int c = cellY(ys[i]) * columns + cellX(xs[i]);
+            cellOf[i] = c;
+            cellCount[c]++;
+        }
+        int start = 0;
+        for (int c = 0; c < cellStart.length; c++) {
+            cellStart[c] = start;
+            start += cellCount[c];
+        }
+        // reuse cellStart as a write cursor, then restore it
+        for (int i = 0; i < n; i++) {
+            ids[cellStart[cellOf[i]]++] = i;
+        }
+        for (int c = 0; c < cellStart.length; c++) {
+            cellStart[c] -= cellCount[c];
+        }
+    }
+
+    /**
+     * returns the column of the cell holding the given x coordinate, clamped
+     * to the grid
+     *
+     * @param x - the x coordinate
+     * @return the column of the cell
+     */
+    int cellX(float x) {
+        int cx = (int) ((x + margin) / cellSize);
+        return cx < 0 ? 0 : (cx >= columns ? columns - 1 : cx);
+    }
+
+    /**
+     * returns the row of the cell holding the given y coordinate, clamped to
+     * the grid
+     *
+     * @param y - the y coordinate
+     * @return the row of the cell
+     */
+    int cellY(float y) {
+        int cy = (int) ((y + margin) / cellSize);
+        return cy < 0 ? 0 : (cy >= rows ? rows - 1 : cy);
+    }
+
+    /**
+     * returns the squared distance from the given point to the nearest
+     * point of the given cell. the outer cells hold the points clamped into
+     * them, so they are taken to extend beyond the grid
+     *
+     * @param col - the column of the cell
+     * @param row - the row of the cell
+     * @param x   - the x coordinate of the point
+     * @param y   - the y coordinate of the point
+     * @return the squared distance from the point to the cell, 0 inside it
+     */
+    float distanceSq(int col, int row, float x, float y) {
+        float dx = 0;
+        float dy = 0;
+        float left = col * cellSize - margin;
+        float top = row * cellSize - margin;
+        if (col > 0 && x < left) dx = left - x;
+        else if (col < columns - 1 && x > left + cellSize) dx = x - left - cellSize;
+        if (row > 0 && y < top) dy = top - y;
+        else if (row < rows - 1 && y > top + cellSize) dy = y - top - cellSize;
+        return dx * dx + dy * dy;
+    }
+
+    float getCellSize() {
+        return cellSize;
+    }
+}
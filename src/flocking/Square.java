@@ -0,0 +1,136 @@
+package flocking;
+
+/**
+ * represents a square with a center and radius
+ */
+class Square<T> {
+
+    // instance fields
+    private final float x;
+    private final float y;
+    private final float r;
+
+
+    /**
+     * constructor
+     *
+     * @param x - the x coordinate of the center of the square
+     * @param y - the y coordinate of the center of the square
+     * @param r - the half-length of each edge of the Square
+     */
+    Square(float x, float y, float r) {
+        this.x = x;
+        this.y = y;
+        this.r = r;
+    }
+
+
+    public float getY() {
+        return y;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getR() {
+        return r;
+    }
+
+    /**
+     * checks if a given point is inside the square. the left and top edges
+     * are inside and the right and bottom edges are not, so a point on the
+     * edge shared by two adjacent squares is inside exactly one of them
+     *
+     * @param p - the point to be checks
+     * @return true if the point is inside the square, false otherwise
+     */
+    boolean containsPoint(Point<T> p) {
+        return containsPoint(p, 0);
+    }
+
+    /**
+     * checks if a given point is inside the square grown by the given
+     * margin on every side
+     *
+     * @param p      - the point to be checked
+     * @param margin - the distance to grow the square by
+     * @return true if the point is inside the grown square, false otherwise
+     */
+    boolean containsPoint(Point<T> p, float margin) {
+        float r = this.r + margin;
+        return p.getX() >= this.x - r && p.getX() < this.x + r &&
+                p.getY() >= this.y - r && p.getY() < this.y + r;
+    }
+
+    /**
+     * checks if another square is intersecting (overlapping) with this one
+     *
+     * @param other - the other square
+     * @return true if the squares intersect, false otherwise
+     */
+    boolean intersects(Square<T> other) {
+        return intersects(other, 0);
+    }
+
+    /**
+     * checks if another square is intersecting (overlapping) with this one
+     * grown by the given margin on every side
+     *
+     * @param other  - the other square
+     * @param margin - the distance to grow this square by
+     * @return true if the squares intersect, false otherwise
+     */
+    boolean intersects(Square<T> other, float margin) {
+        float r = this.r + margin;
+        return !(this.x + r < other.x - other.r ||
+                this.x - r > other.x + other.r ||
+                this.y + r < other.y - other.r ||
+                this.y - r > other.y + other.r);
+    }
+
+    /**
+     * checks if a circle is intersecting (overlapping) with this square
+     *
+     * @param cx     - the x coordinate of the center of the circle
+     * @param cy     - the y coordinate of the center of the circle
+     * @param radius - the radius of the circle
+     * @return true if the circle and the square intersect, false otherwise
+     */
+    boolean intersectsCircle(float cx, float cy, float radius) {
+        return intersectsCircle(cx, cy, radius, 0);
+    }
+
+    /**
+     * checks if a circle is intersecting (overlapping) with this square
+     * grown by the given margin on every side
+     *
+     * @param cx     - the x coordinate of the center of the circle
+     * @param cy     - the y coordinate of the center of the circle
+     * @param radius - the radius of the circle
+     * @param margin - the distance to grow this square by
+     * @return true if the circle and the grown square intersect, false otherwise
+     */
+    boolean intersectsCircle(float cx, float cy, float radius, float margin) {
+        float dx = Math.max(Math.abs(cx - this.x) - this.r - margin, 0);
+        float dy = Math.max(Math.abs(cy - this.y) - this.r - margin, 0);
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * checks if this square grown by the given margin on every side lies
+     * entirely within a circle
+     *
+     * @param cx     - the x coordinate of the center of the circle
+     * @param cy     - the y coordinate of the center of the circle
+     * @param radius - the radius of the circle
+     * @param margin - the distance to grow this square by
+     * @return true if every corner of the grown square is in the circle, false otherwise
+     */
+    boolean insideCircle(float cx, float cy, float radius, float margin) {
+        float dx = Math.abs(cx - this.x) + this.r + margin;
+        float dy = Math.abs(cy - this.y) + this.r + margin;
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+}
@@ -0,0 +1,572 @@
+package flocking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * StateStreamer class - publishes the state of an engine on every tick to
+ * any number of clients over TCP, e.g. a {@link StreamClient}. the
+ * simulation thread only copies the raw state into one of two buffers, and
+ * drops the tick if both are still waiting. a background thread encodes
+ * every tick once and serves the clients from a non-blocking selector, so
+ * neither a slow nor a stalled client ever holds up the simulation
+ * <p>
+ * a client is sent a header of magic, version, width, height and position
+ * step, then messages of a type, a length and a body. a keyframe is the
+ * tick, the vehicle count and the flock number, x, y and heading columns
+ * as absolute values. a delta frame is the tick, the tick of the latest
+ * keyframe, the vehicle count and the x, y and heading columns as the
+ * difference from that keyframe, so any delta frame can be dropped without
+ * breaking the ones after it. positions and headings are quantized and
+ * written as zigzag varints as by {@link TrajectoryRecorder}, but not
+ * compressed, to keep the latency low. an obstacles message is the tick,
+ * the obstacle count and the x and y of every obstacle, sent whenever they
+ * change
+ * <p>
+ * every client has a bounded queue: a delta frame that finds it full is
+ * dropped, and a keyframe or obstacles message replaces the queued
+ * messages it supersedes. a client that connects is sent the obstacles and
+ * the latest keyframe first. the socket buffers are kept small, and a
+ * client should keep its receive buffer small too, or frames wait there
+ * instead of being dropped
+ */
+class StateStreamer implements Closeable {
+    static final int MAGIC = 0x464C4B4C;
+    static final int VERSION = 1;
+    static final byte KEYFRAME = TrajectoryRecorder.KEYFRAME;
+    static final byte DELTA_FRAME = TrajectoryRecorder.DELTA_FRAME;
+    static final byte OBSTACLES = 2;
+    static final float DEFAULT_POSITION_STEP = 1 / 8f;
+    static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+    static final int DEFAULT_QUEUE_LENGTH = 8;
+    private static final int BUFFERS = 2;
+    static final int SOCKET_BUFFER_BYTES = 1 << 16;
+
+    // the raw state of the engine on a single tick
+    private static final class Frame {
+        long tick;
+        int size;
+        float[] x = new float[0];
+        float[] y = new float[0];
+        float[] vx = new float[0];
+        float[] vy = new float[0];
+        int[] flockNumber = new int[0];
+        // the obstacles, copied only when they changed since the last frame
+        boolean obstaclesChanged;
+        int obstacleCount;
+        float[] obstacleX = new float[0];
+        float[] obstacleY = new float[0];
+
+        void ensureCapacity(int n, int m) {
+            if (x.length < n) {
+                x = new float[n];
+                y = new float[n];
+                vx = new float[n];
+                vy = new float[n];
+                flockNumber = new int[n];
+            }
+            if (obstacleX.length < m) {
+                obstacleX = new float[m];
+                obstacleY = new float[m];
+            }
+        }
+    }
+
+    // an encoded message, shared by every client it is queued for
+    private static final class Message {
+        final byte type;
+        final ByteBuffer data;
+
+        Message(byte type, ByteBuffer data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    // a connected client, with the message being written and the queued ones
+    private final class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        ByteBuffer writing;
+        final ArrayDeque<Message> queue = new ArrayDeque<>();
+
+        Client(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * queues the given message, dropping it or the ones it supersedes as
+         * the queue's bound requires
+         */
+        void offer(Message message) {
+            if (message.type == DELTA_FRAME) {
+                if (queue.size() >= queueLength) {
+                    droppedFrames++;
+                    return;
+                }
+            } else {
+                // a keyframe makes every queued frame stale, and obstacles the queued obstacles
+                boolean keyframe = message.type == KEYFRAME;
+                Iterator<Message> it = queue.iterator();
+                while (it.hasNext()) {
+                    byte type = it.next().type;
+                    if (type == message.type || keyframe && type == DELTA_FRAME) {
+                        if (type == DELTA_FRAME) droppedFrames++;
+                        it.remove();
+                    }
+                }
+            }
+            queue.add(message);
+        }
+
+        /**
+         * writes as much of the queued messages as the socket takes without
+         * blocking, and waits to be writable again if it took not all
+         */
+        void flush() throws IOException {
+            while (true) {
+                if (writing == null) {
+                    Message next = queue.poll();
+                    if (next == null) break;
+                    writing = next.data.duplicate();
+                }
+                channel.write(writing);
+                if (writing.hasRemaining()) break;
+                writing = null;
+            }
+            int ops = writing != null ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (key.interestOps() != ops) key.interestOps(ops);
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // the client is gone either way
+            }
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final float positionStep;
+    private final int keyframeInterval;
+    private final int queueLength;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // the simulation thread's state
+    private final BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(BUFFERS);
+    private long obstacleVersion = -1;
+    private volatile long droppedTicks = 0;
+
+    // the streaming thread's state: the clients, the quantized latest
+    // keyframe and the latest messages a new client starts from
+    private final ArrayList<Client> clients = new ArrayList<>();
+    private volatile int clientCount = 0;
+    private volatile long droppedFrames = 0;
+    private long keyframeTick = -1;
+    private int keyframeSize = -1;
+    private int sinceKeyframe = 0;
+    private int[] keyX = new int[0];
+    private int[] keyY = new int[0];
+    private int[] keyHeading = new int[0];
+    private Message latestKeyframe;
+    private Message latestObstacles;
+    private byte[] raw = new byte[1 << 16];
+    private int rawLength;
+
+    /**
+     * constructor. binds the server socket and starts the streaming thread
+     *
+     * @param address          - the address to listen on, port 0 for any
+     *                         free port
+     * @param width            - the width of the streamed world
+     * @param height           - the height of the streamed world
+     * @param positionStep     - the step positions are quantized to, in pixels
+     * @param keyframeInterval - the number of frames between keyframes
+     * @param queueLength      - the number of messages queued per client
+     *                         before delta frames are dropped
+     * @throws IOException if the address cannot be bound
+     */
+    StateStreamer(InetSocketAddress address, int width, int height, float positionStep, int keyframeInterval,
+                  int queueLength) throws IOException {
+        if (positionStep <= 0 || keyframeInterval <= 0 || queueLength <= 0) {
+            throw new IllegalArgumentException("position step, keyframe interval and queue length must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.positionStep = positionStep;
+        this.keyframeInterval = keyframeInterval;
+        this.queueLength = queueLength;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        for (int i = 0; i < BUFFERS; i++) {
+            freeFrames.add(new Frame());
+        }
+        this.thread = new Thread(this::serve, "state-streamer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * creates a streamer as configured by the system properties: with
+     * -Dstream.port=PORT the state is streamed on PORT of -Dstream.host,
+     * the loopback address by default, quantized to -Dstream.step pixels,
+     * with a keyframe every -Dstream.keyframe ticks and -Dstream.queue
+     * messages queued per client
+     *
+     * @param engine - the engine to stream
+     * @return the configured streamer, or null if -Dstream.port is not set
+     * @throws IOException if the address cannot be bound
+     */
+    static StateStreamer fromSystemProperties(FlockEngine engine) throws IOException {
+        Integer port = Integer.getInteger("stream.port");
+        if (port == null) return null;
+        String host = System.getProperty("stream.host", "127.0.0.1");
+        float step = Float.parseFloat(System.getProperty("stream.step", Float.toString(DEFAULT_POSITION_STEP)));
+        return new StateStreamer(new InetSocketAddress(host, port), engine.getWidth(), engine.getHeight(), step,
+                Integer.getInteger("stream.keyframe", DEFAULT_KEYFRAME_INTERVAL),
+                Integer.getInteger("stream.queue", DEFAULT_QUEUE_LENGTH));
+    }
+
+    /**
+     * copies the current state of the engine for the streaming thread, or
+     * drops the tick if it is still busy with the last two
+     *
+     * @param engine - the engine to stream
+     */
+    void publish(FlockEngine engine) {
+        Frame frame = freeFrames.poll();
+        if (frame == null) {
+            droppedTicks++;
+            return;
+        }
+        int n = engine.size();
+        ObstacleIndex obstacleIndex = engine.getObstacleIndex();
+        ArrayList<Obstacle> obstacles = obstacleIndex.getObstacles();
+        frame.tick = engine.getTick();
+        frame.size = n;
+        frame.obstaclesChanged = obstacleIndex.getVersion() != obstacleVersion;
+        frame.ensureCapacity(n, frame.obstaclesChanged ? obstacles.size() : 0);
+        if (frame.obstaclesChanged) {
+            obstacleVersion = obstacleIndex.getVersion();
+            frame.obstacleCount = obstacles.size();
+            for (int k = 0; k < obstacles.size(); k++) {
+                frame.obstacleX[k] = obstacles.get(k).getX();
+                frame.obstacleY[k] = obstacles.get(k).getY();
+            }
+        }
+        if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS && !engine.isReordered()) {
+            FlockArrays arrays = engine.getArrays();
+            System.arraycopy(arrays.posX, 0, frame.x, 0, n);
+            System.arraycopy(arrays.posY, 0, frame.y, 0, n);
+            System.arraycopy(arrays.velX, 0, frame.vx, 0, n);
+            System.arraycopy(arrays.velY, 0, frame.vy, 0, n);
+            System.arraycopy(arrays.flockNumber, 0, frame.flockNumber, 0, n);
+        } else if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+            FlockArrays arrays = engine.getArrays();
+            for (int id = 0; id < n; id++) {
+                int i = engine.indexOf(id);
+                frame.x[id] = arrays.posX[i];
+                frame.y[id] = arrays.posY[i];
+                frame.vx[id] = arrays.velX[i];
+                frame.vy[id] = arrays.velY[i];
+                frame.flockNumber[id] = arrays.flockNumber[i];
+            }
+        } else {
+            ArrayList<Vehicle> vehicles = engine.getVehicles();
+            for (int id = 0; id < n; id++) {
+                Vehicle v = vehicles.get(engine.indexOf(id));
+                frame.x[id] = v.getX();
+                frame.y[id] = v.getY();
+                frame.vx[id] = v.getVelocityX();
+                frame.vy[id] = v.getVelocityY();
+                frame.flockNumber[id] = v.getFlockNumber();
+            }
+        }
+        frames.add(frame);
+        selector.wakeup();
+    }
+
+    /**
+     * stops the streaming thread and disconnects every client
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * returns the number of ticks not streamed because the streaming thread
+     * was busy
+     *
+     * @return the number of ticks dropped
+     */
+    long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * returns the number of delta frames not sent to a client because its
+     * queue was full, added up over the clients
+     *
+     * @return the number of frames dropped
+     */
+    long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * the loop of the streaming thread
+     */
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                Frame frame;
+                while ((frame = frames.poll()) != null) {
+                    broadcast(frame);
+                    freeFrames.add(frame);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable() && client.channel.read(ByteBuffer.allocate(256)) < 0) {
+                                disconnect(client);
+                            } else if (key.isValid() && key.isWritable()) {
+                                client.flush();
+                            }
+                        } catch (IOException e) {
+                            disconnect(client);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("state streaming failed: " + e);
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            clients.clear();
+            clientCount = 0;
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * accepts a client, sending it the header, the obstacles and the latest
+     * keyframe
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        // frames waiting in a large send buffer are as late as queued ones,
+        // and unlike those are never dropped
+        channel.socket().setSendBufferSize(SOCKET_BUFFER_BYTES);
+        Client client = new Client(channel);
+        ByteBuffer header = ByteBuffer.allocate(4 * 5);
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putFloat(positionStep);
+        header.flip();
+        client.writing = header;
+        if (latestObstacles != null) client.offer(latestObstacles);
+        if (latestKeyframe != null) client.offer(latestKeyframe);
+        clients.add(client);
+        clientCount = clients.size();
+        try {
+            client.flush();
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void disconnect(Client client) {
+        client.close();
+        clients.remove(client);
+        clientCount = clients.size();
+    }
+
+    /**
+     * encodes the frame and queues it, and its obstacles if they changed,
+     * for every client
+     */
+    private void broadcast(Frame frame) {
+        if (frame.obstaclesChanged) {
+            latestObstacles = encodeObstacles(frame);
+            for (Client client : clients) {
+                client.offer(latestObstacles);
+            }
+        }
+        Message message = encode(frame);
+        if (message.type == KEYFRAME) {
+            latestKeyframe = message;
+        }
+        for (int k = clients.size() - 1; k >= 0; k--) {
+            Client client = clients.get(k);
+            client.offer(message);
+            try {
+                client.flush();
+            } catch (IOException e) {
+                disconnect(client);
+            }
+        }
+    }
+
+    /**
+     * encodes the frame as a keyframe when due or the population changed,
+     * and as a delta frame against the latest keyframe otherwise
+     */
+    private Message encode(Frame frame) {
+        int n = frame.size;
+        boolean keyframe = n != keyframeSize || sinceKeyframe >= keyframeInterval;
+        rawLength = 0;
+        if (keyframe) {
+            if (keyX.length < n) {
+                keyX = new int[n];
+                keyY = new int[n];
+                keyHeading = new int[n];
+            }
+            writeLong(frame.tick);
+            writeInt(n);
+            for (int i = 0; i < n; i++) {
+                writeVarInt(frame.flockNumber[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                keyX[i] = quantize(frame.x[i]);
+                writeVarInt(keyX[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                keyY[i] = quantize(frame.y[i]);
+                writeVarInt(keyY[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                keyHeading[i] = TrajectoryRecorder.heading(frame.vx[i], frame.vy[i]);
+                writeVarInt(keyHeading[i]);
+            }
+            keyframeTick = frame.tick;
+            keyframeSize = n;
+            sinceKeyframe = 0;
+        } else {
+            writeLong(frame.tick);
+            writeLong(keyframeTick);
+            writeInt(n);
+            for (int i = 0; i < n; i++) {
+                writeVarInt(quantize(frame.x[i]) - keyX[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                writeVarInt(quantize(frame.y[i]) - keyY[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                // the shortest way around the circle, in [-128, 127]
+                writeVarInt((byte) (TrajectoryRecorder.heading(frame.vx[i], frame.vy[i]) - keyHeading[i]));
+            }
+        }
+        sinceKeyframe++;
+        return message(keyframe ? KEYFRAME : DELTA_FRAME);
+    }
+
+    private Message encodeObstacles(Frame frame) {
+        rawLength = 0;
+        writeLong(frame.tick);
+        writeInt(frame.obstacleCount);
+        for (int k = 0; k < frame.obstacleCount; k++) {
+            writeInt(Float.floatToIntBits(frame.obstacleX[k]));
+            writeInt(Float.floatToIntBits(frame.obstacleY[k]));
+        }
+        return message(OBSTACLES);
+    }
+
+    /**
+     * wraps the raw body in a message of the given type
+     */
+    private Message message(byte type) {
+        ByteBuffer data = ByteBuffer.allocate(1 + 4 + rawLength);
+        data.put(type).putInt(rawLength).put(raw, 0, rawLength);
+        data.flip();
+        return new Message(type, data.asReadOnlyBuffer());
+    }
+
+    private int quantize(float position) {
+        return Math.round(position / positionStep);
+    }
+
+    private void ensureRaw(int bytes) {
+        if (raw.length - rawLength < bytes) {
+            raw = Arrays.copyOf(raw, Math.max(raw.length * 2, rawLength + bytes));
+        }
+    }
+
+    private void writeInt(int value) {
+        ensureRaw(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            raw[rawLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    /**
+     * appends the given value to the raw body as a zigzag varint
+     */
+    private void writeVarInt(int value) {
+        ensureRaw(5);
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7F) != 0) {
+            raw[rawLength++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        raw[rawLength++] = (byte) v;
+    }
+}
@@ -0,0 +1,258 @@
+package flocking;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * StreamClient class - a reference client of a {@link StateStreamer}. it
+ * decodes the streamed frames into the quantized positions, headings and
+ * flock numbers of the vehicles and the obstacles, and as a program prints
+ * what it received once a second
+ * <p>
+ * usage: StreamClient host port [seconds] [delayMillis]
+ * <p>
+ * where a delay after every frame makes it a slow client, which the
+ * streamer drops frames for
+ */
+public class StreamClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final float positionStep;
+
+    // the latest keyframe and the state decoded from the latest frame
+    private long keyframeTick = -1;
+    private int[] keyX = new int[0];
+    private int[] keyY = new int[0];
+    private int[] keyHeading = new int[0];
+    private long tick = -1;
+    private int size = 0;
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] heading = new int[0];
+    private int[] flockNumber = new int[0];
+    private float[] obstacleX = new float[0];
+    private float[] obstacleY = new float[0];
+    private int obstacleCount = 0;
+    private byte[] body = new byte[1 << 16];
+    private ByteBuffer message;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: StreamClient host port [seconds] [delayMillis]");
+            System.exit(1);
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        long delay = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        try (StreamClient client = new StreamClient(host, port)) {
+            System.out.println("world " + client.width + "x" + client.height + ", position step " + client.positionStep);
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            long report = System.nanoTime() + 1_000_000_000L;
+            int frames = 0;
+            long skipped = 0;
+            long lastTick = -1;
+            while (System.nanoTime() < end && client.next()) {
+                frames++;
+                if (lastTick >= 0 && client.tick > lastTick + 1) skipped += client.tick - lastTick - 1;
+                lastTick = client.tick;
+                if (System.nanoTime() >= report) {
+                    System.out.println("tick " + client.tick + ", vehicles " + client.size + ", obstacles "
+                            + client.obstacleCount + ", frames " + frames + ", ticks skipped " + skipped);
+                    frames = 0;
+                    skipped = 0;
+                    report += 1_000_000_000L;
+                }
+                if (delay > 0) Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * constructor. connects to the streamer and reads the header
+     *
+     * @param host - the host of the streamer
+     * @param port - the port of the streamer
+     * @throws IOException if the connection fails or is not a state stream
+     */
+    StreamClient(String host, int port) throws IOException {
+        this.socket = new Socket();
+        try {
+            // a small receive buffer makes the streamer drop frames for a
+            // slow client instead of queueing them in the socket
+            socket.setReceiveBufferSize(StateStreamer.SOCKET_BUFFER_BYTES);
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            if (in.readInt() != StateStreamer.MAGIC) {
+                throw new IOException(host + ":" + port + " is not a state stream");
+            }
+            int version = in.readInt();
+            if (version != StateStreamer.VERSION) {
+                throw new IOException("unsupported state stream version " + version);
+            }
+            this.width = in.readInt();
+            this.height = in.readInt();
+            this.positionStep = in.readFloat();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * reads messages until the next frame is decoded, applying obstacle
+     * changes on the way
+     *
+     * @return true if a frame was decoded, false once the stream ended
+     * @throws IOException if the connection fails or the stream is corrupt
+     */
+    boolean next() throws IOException {
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                return false;
+            }
+            int length = in.readInt();
+            if (body.length < length) {
+                body = new byte[length];
+            }
+            in.readFully(body, 0, length);
+            message = ByteBuffer.wrap(body, 0, length);
+            long frameTick = message.getLong();
+            if (type == StateStreamer.OBSTACLES) {
+                obstacleCount = message.getInt();
+                if (obstacleX.length < obstacleCount) {
+                    obstacleX = new float[obstacleCount];
+                    obstacleY = new float[obstacleCount];
+                }
+                for (int k = 0; k < obstacleCount; k++) {
+                    obstacleX[k] = message.getFloat();
+                    obstacleY[k] = message.getFloat();
+                }
+            } else if (type == StateStreamer.KEYFRAME) {
+                int n = message.getInt();
+                ensureCapacity(n);
+                for (int i = 0; i < n; i++) flockNumber[i] = readVarInt();
+                for (int i = 0; i < n; i++) keyX[i] = readVarInt();
+                for (int i = 0; i < n; i++) keyY[i] = readVarInt();
+                for (int i = 0; i < n; i++) keyHeading[i] = readVarInt();
+                System.arraycopy(keyX, 0, x, 0, n);
+                System.arraycopy(keyY, 0, y, 0, n);
+                System.arraycopy(keyHeading, 0, heading, 0, n);
+                keyframeTick = frameTick;
+                tick = frameTick;
+                size = n;
+                return true;
+            } else if (type == StateStreamer.DELTA_FRAME) {
+                long against = message.getLong();
+                int n = message.getInt();
+                if (against != keyframeTick || n != size) {
+                    throw new IOException("delta frame at tick " + frameTick + " does not match keyframe "
+                            + keyframeTick);
+                }
+                for (int i = 0; i < n; i++) x[i] = keyX[i] + readVarInt();
+                for (int i = 0; i < n; i++) y[i] = keyY[i] + readVarInt();
+                for (int i = 0; i < n; i++) {
+                    heading[i] = (keyHeading[i] + readVarInt()) & (TrajectoryRecorder.HEADING_STEPS - 1);
+                }
+                tick = frameTick;
+                return true;
+            } else {
+                throw new IOException("unknown state stream message " + type);
+            }
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (x.length < n) {
+            keyX = new int[n];
+            keyY = new int[n];
+            keyHeading = new int[n];
+            x = new int[n];
+            y = new int[n];
+            heading = new int[n];
+            flockNumber = new int[n];
+        }
+    }
+
+    private int readVarInt() {
+        int v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = message.get();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    /**
+     * returns the tick of the keyframe the current frame was decoded
+     * against
+     *
+     * @return the tick of the latest keyframe, which is the current tick if
+     * the current frame is a keyframe
+     */
+    long getKeyframeTick() {
+        return keyframeTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    float getX(int i) {
+        return x[i] * positionStep;
+    }
+
+    float getY(int i) {
+        return y[i] * positionStep;
+    }
+
+    /**
+     * returns the heading of the given vehicle
+     *
+     * @param i - the index of the vehicle
+     * @return the heading in radians
+     */
+    float getHeading(int i) {
+        return heading[i] * (float) (2 * Math.PI) / TrajectoryRecorder.HEADING_STEPS;
+    }
+
+    int getFlockNumber(int i) {
+        return flockNumber[i];
+    }
+
+    int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    float getObstacleX(int k) {
+        return obstacleX[k];
+    }
+
+    float getObstacleY(int k) {
+        return obstacleY[k];
+    }
+}
@@ -0,0 +1,334 @@
+package flocking;
+
+import processing.core.PVector;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SweepRunner class - runs many independent headless simulations at once,
+ * one per combination of parameters read from a sweep file, and writes a
+ * line of summary statistics per run to a single CSV results file
+ * <p>
+ * usage: SweepRunner sweepFile
+ * <p>
+ * the sweep file is a properties file. the swept parameters are flocks,
+ * vehicles (per flock), visionRadius, maxSpeed, maxForce, alignment,
+ * cohesion and separation, each a comma separated list of values or, for a
+ * random sweep, a range low..high. the coefficients of a flock are drawn as
+ * {@link FlockEngine#populate(int, int)} draws them unless they are swept.
+ * with mode=grid every combination of the lists is run, with mode=random
+ * samples=N runs draw every parameter uniformly from its list or range.
+ * every combination is run repeats times, each run with its own seed drawn
+ * from seed. the other settings are ticks, warmup (the ticks before the
+ * polarization is averaged), width, height, storage, search, threads (the
+ * number of runs at once) and output (the results file)
+ */
+public class SweepRunner {
+    // the swept parameters, in the order of the results columns
+    private static final String[] SWEPT = {"flocks", "vehicles", "visionRadius", "maxSpeed", "maxForce",
+            "alignment", "cohesion", "separation"};
+    private static final String[] DEFAULTS = {"6", "100", Float.toString(Vehicle.VISION_RADIUS),
+            Float.toString(Vehicle.MAX_SPEED), Float.toString(Vehicle.MAX_FORCE), null, null, null};
+    private static final int FLOCKS = 0;
+    private static final int VEHICLES = 1;
+    private static final int VISION_RADIUS = 2;
+    private static final int MAX_SPEED = 3;
+    private static final int MAX_FORCE = 4;
+    private static final int ALIGNMENT = 5;
+    private static final int COHESION = 6;
+    private static final int SEPARATION = 7;
+    // the polarization is sampled every this many ticks after the warmup
+    private static final int SAMPLE_INTERVAL = 10;
+    private static final String HEADER = "run,repeat,seed,flocks,vehicles,vision_radius,max_speed,max_force,"
+            + "alignment,cohesion,separation,ms_per_tick,polarization,mean_polarization,flock_polarization,mean_speed";
+
+    /**
+     * the values a swept parameter takes, a list of values or a range
+     */
+    private static final class Axis {
+        // the listed values, or null for a range
+        final double[] values;
+        final double low;
+        final double high;
+
+        Axis(double[] values, double low, double high) {
+            this.values = values;
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * parses a comma separated list of values or a range low..high
+         */
+        static Axis parse(String key, String text) {
+            try {
+                int range = text.indexOf("..");
+                if (range >= 0) {
+                    double low = Double.parseDouble(text.substring(0, range).trim());
+                    double high = Double.parseDouble(text.substring(range + 2).trim());
+                    if (!(low <= high)) throw new IllegalArgumentException("empty range of " + key + ": " + text);
+                    return new Axis(null, low, high);
+                }
+                String[] parts = text.split(",");
+                double[] values = new double[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    values[i] = Double.parseDouble(parts[i].trim());
+                }
+                return new Axis(values, 0, 0);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad value of " + key + ": " + text, e);
+            }
+        }
+
+        double draw(SplittableRandom random) {
+            return values != null ? values[random.nextInt(values.length)] : low + (high - low) * random.nextDouble();
+        }
+    }
+
+    /**
+     * the settings of a sweep that are the same for every run
+     */
+    private static final class Settings {
+        final int ticks;
+        final int warmup;
+        final int width;
+        final int height;
+        final FlockEngine.StorageMode storageMode;
+        final FlockEngine.NeighbourSearch neighbourSearch;
+
+        Settings(Properties sweep) {
+            this.ticks = Integer.parseInt(sweep.getProperty("ticks", "1000").trim());
+            this.warmup = Integer.parseInt(sweep.getProperty("warmup", Integer.toString(ticks / 2)).trim());
+            this.width = Integer.parseInt(sweep.getProperty("width", "1920").trim());
+            this.height = Integer.parseInt(sweep.getProperty("height", "1080").trim());
+            this.storageMode = FlockEngine.StorageMode.valueOf(sweep.getProperty("storage", "arrays").trim().toUpperCase());
+            this.neighbourSearch = FlockEngine.NeighbourSearch.valueOf(sweep.getProperty("search", "grid").trim().toUpperCase());
+            if (neighbourSearch == FlockEngine.NeighbourSearch.QUAD_TREE && storageMode == FlockEngine.StorageMode.ARRAYS) {
+                throw new IllegalArgumentException("the quad tree search requires object storage");
+            }
+            if (neighbourSearch == FlockEngine.NeighbourSearch.VERLET && storageMode != FlockEngine.StorageMode.ARRAYS) {
+                throw new IllegalArgumentException("the neighbour list search requires array storage");
+            }
+            if (neighbourSearch == FlockEngine.NeighbourSearch.GRID_BATCHED
+                    && storageMode != FlockEngine.StorageMode.ARRAYS) {
+                throw new IllegalArgumentException("the cell batched search requires array storage");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("usage: SweepRunner sweepFile");
+            System.exit(2);
+        }
+        Properties sweep = new Properties();
+        try (Reader in = new FileReader(args[0])) {
+            sweep.load(in);
+        }
+        Settings settings = new Settings(sweep);
+        Axis[] axes = new Axis[SWEPT.length];
+        for (int a = 0; a < SWEPT.length; a++) {
+            String text = sweep.getProperty(SWEPT[a], DEFAULTS[a]);
+            axes[a] = text == null ? null : Axis.parse(SWEPT[a], text);
+        }
+        boolean random = sweep.getProperty("mode", "grid").trim().equalsIgnoreCase("random");
+        int repeats = Integer.parseInt(sweep.getProperty("repeats", "1").trim());
+        int threads = Integer.parseInt(sweep.getProperty("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+        SplittableRandom seeds = new SplittableRandom(Long.parseLong(sweep.getProperty("seed", "0").trim()));
+
+        int combinations;
+        if (random) {
+            combinations = Integer.parseInt(sweep.getProperty("samples", "100").trim());
+        } else {
+            combinations = 1;
+            for (int a = 0; a < axes.length; a++) {
+                if (axes[a] == null) continue;
+                if (axes[a].values == null) {
+                    throw new IllegalArgumentException("a grid sweep needs a list of values of " + SWEPT[a]);
+                }
+                combinations = Math.multiplyExact(combinations, axes[a].values.length);
+            }
+        }
+
+        // a full queue makes the submitting thread run the next run itself,
+        // so the runs waiting are bounded by the number of threads
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        try (Writer results = new BufferedWriter(new FileWriter(sweep.getProperty("output", "sweep-results.csv").trim()))) {
+            results.write(HEADER);
+            results.write('\n');
+            int run = 0;
+            for (int c = 0; c < combinations; c++) {
+                double[] values = random ? sample(axes, seeds) : combination(axes, c);
+                for (int r = 0; r < repeats; r++) {
+                    int index = run++;
+                    int repeat = r;
+                    long seed = seeds.nextLong();
+                    executor.execute(() -> {
+                        try {
+                            String line = run(settings, values, seed);
+                            synchronized (results) {
+                                results.write(index + "," + repeat + "," + seed + "," + line + "\n");
+                                results.flush();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            failures.incrementAndGet();
+                            System.err.println("run " + index + " failed: " + e);
+                        }
+                    });
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            System.out.println("runs: " + run + ", failed: " + failures.get() + ", threads: " + threads
+                    + ", seconds: " + (System.nanoTime() - start) / 1e9);
+        }
+        if (failures.get() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * returns the values of the given combination of a grid sweep, the last
+     * parameter changing fastest
+     */
+    private static double[] combination(Axis[] axes, int combination) {
+        double[] values = new double[axes.length];
+        for (int a = axes.length - 1; a >= 0; a--) {
+            if (axes[a] == null) {
+                values[a] = Double.NaN;
+                continue;
+            }
+            int n = axes[a].values.length;
+            values[a] = axes[a].values[combination % n];
+            combination /= n;
+        }
+        return values;
+    }
+
+    /**
+     * draws the values of a random sweep's run
+     */
+    private static double[] sample(Axis[] axes, SplittableRandom random) {
+        double[] values = new double[axes.length];
+        for (int a = 0; a < axes.length; a++) {
+            values[a] = axes[a] == null ? Double.NaN : axes[a].draw(random);
+        }
+        return values;
+    }
+
+    /**
+     * runs a single simulation and returns its parameters and statistics as
+     * the rest of its results line
+     *
+     * @param settings - the settings of the sweep
+     * @param values   - the values of the swept parameters, NaN for
+     *                 coefficients drawn per flock
+     * @param seed     - the seed of the run
+     * @return the parameters and statistics of the run, comma separated
+     */
+    private static String run(Settings settings, double[] values, long seed) {
+        int flocks = (int) Math.round(values[FLOCKS]);
+        int vehicles = (int) Math.round(values[VEHICLES]);
+        FlockParameters parameters = new FlockParameters((float) values[VISION_RADIUS], (float) values[MAX_SPEED],
+                (float) values[MAX_FORCE]);
+        FlockEngine engine = new FlockEngine(settings.width, settings.height, seed, settings.storageMode, parameters);
+        engine.setNeighbourSearch(settings.neighbourSearch);
+        PVector low = FlockEngine.DEFAULT_COEFFICIENTS_LOW.copy();
+        PVector high = FlockEngine.DEFAULT_COEFFICIENTS_HIGH.copy();
+        if (!Double.isNaN(values[ALIGNMENT])) low.x = high.x = (float) values[ALIGNMENT];
+        if (!Double.isNaN(values[COHESION])) low.y = high.y = (float) values[COHESION];
+        if (!Double.isNaN(values[SEPARATION])) low.z = high.z = (float) values[SEPARATION];
+        engine.populate(flocks, vehicles, low, high);
+
+        double polarizationSum = 0;
+        int samples = 0;
+        long start = System.nanoTime();
+        for (int t = 1; t <= settings.ticks; t++) {
+            engine.step();
+            if (t > settings.warmup && (t - settings.warmup) % SAMPLE_INTERVAL == 0) {
+                polarizationSum += polarization(engine, -1);
+                samples++;
+            }
+        }
+        double msPerTick = (System.nanoTime() - start) / 1e6 / Math.max(1, settings.ticks);
+        double flockPolarization = 0;
+        for (int f = 0; f < flocks; f++) {
+            flockPolarization += polarization(engine, f);
+        }
+
+        StringBuilder line = new StringBuilder();
+        line.append(flocks).append(',').append(vehicles);
+        for (int a = VISION_RADIUS; a < values.length; a++) {
+            line.append(',');
+            if (!Double.isNaN(values[a])) line.append((float) values[a]);
+        }
+        line.append(String.format(Locale.ROOT, ",%.4f,%.5f,%s,%.5f,%.5f", msPerTick, polarization(engine, -1),
+                samples == 0 ? "" : String.format(Locale.ROOT, "%.5f", polarizationSum / samples),
+                flocks == 0 ? 0 : flockPolarization / flocks, meanSpeed(engine)));
+        return line.toString();
+    }
+
+    /**
+     * returns the polarization of the given flock, or of all vehicles: the
+     * length of the mean of their headings, 1 when they all head the same
+     * way and near 0 when their headings are random
+     *
+     * @param engine - the engine holding the vehicles
+     * @param flock  - the number of the flock, or -1 for all vehicles
+     * @return the polarization, 0 for no vehicles
+     */
+    private static double polarization(FlockEngine engine, int flock) {
+        boolean objects = engine.getStorageMode() == FlockEngine.StorageMode.OBJECTS;
+        ArrayList<Vehicle> vehicles = engine.getVehicles();
+        FlockArrays arrays = engine.getArrays();
+        double sumX = 0;
+        double sumY = 0;
+        int count = 0;
+        for (int i = 0; i < engine.size(); i++) {
+            int f = objects ? vehicles.get(i).getFlockNumber() : arrays.flockNumber[i];
+            if (flock >= 0 && f != flock) continue;
+            float vx = objects ? vehicles.get(i).getVelocityX() : arrays.velX[i];
+            float vy = objects ? vehicles.get(i).getVelocityY() : arrays.velY[i];
+            double speed = Math.sqrt(vx * vx + vy * vy);
+            if (speed > 0) {
+                sumX += vx / speed;
+                sumY += vy / speed;
+            }
+            count++;
+        }
+        return count == 0 ? 0 : Math.sqrt(sumX * sumX + sumY * sumY) / count;
+    }
+
+    /**
+     * returns the mean speed of all vehicles
+     */
+    private static double meanSpeed(FlockEngine engine) {
+        boolean objects = engine.getStorageMode() == FlockEngine.StorageMode.OBJECTS;
+        ArrayList<Vehicle> vehicles = engine.getVehicles();
+        FlockArrays arrays = engine.getArrays();
+        double sum = 0;
+        for (int i = 0; i < engine.size(); i++) {
+            float vx = objects ? vehicles.get(i).getVelocityX() : arrays.velX[i];
+            float vy = objects ? vehicles.get(i).getVelocityY() : arrays.velY[i];
+            sum += Math.sqrt(vx * vx + vy * vy);
+        }
+        return engine.size() == 0 ? 0 : sum / engine.size();
+    }
+}
@@ -0,0 +1,144 @@
+package flocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TileLayout class - splits the world, including the margin the vehicles
+ * wrap around in, into a grid of equal tiles, each owned by a {@link
+ * TileWorker}. tiles are numbered row by row
+ * <p>
+ * vehicles only see each other within the world, not across the wrapped
+ * edges, so a tile shares its halo only with the tiles adjacent to it in
+ * the grid. a vehicle that wraps around moves to the tile on the other
+ * side, so vehicles migrate between tiles adjacent on the torus
+ */
+class TileLayout {
+    final int width;
+    final int height;
+    final int columns;
+    final int rows;
+    // the edge lengths of a tile, and the top left corner of the first one
+    private final float tileWidth;
+    private final float tileHeight;
+    private final float left;
+    private final float top;
+
+    /**
+     * constructor
+     *
+     * @param width      - the width of the world
+     * @param height     - the height of the world
+     * @param columns    - the number of tile columns
+     * @param rows       - the number of tile rows
+     * @param haloRadius - the width of the halo band, which a tile must be
+     *                   wider and taller than
+     * @throws IllegalArgumentException if a tile is not larger than the halo
+     */
+    TileLayout(int width, int height, int columns, int rows, float haloRadius) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("invalid tile grid " + columns + "x" + rows);
+        }
+        this.width = width;
+        this.height = height;
+        this.columns = columns;
+        this.rows = rows;
+        this.left = -Vehicle.RENDER_BUFFER;
+        this.top = -Vehicle.RENDER_BUFFER;
+        this.tileWidth = (width + 2f * Vehicle.RENDER_BUFFER) / columns;
+        this.tileHeight = (height + 2f * Vehicle.RENDER_BUFFER) / rows;
+        if ((columns > 1 && tileWidth <= haloRadius) || (rows > 1 && tileHeight <= haloRadius)) {
+            throw new IllegalArgumentException("tiles of " + tileWidth + "x" + tileHeight
+                    + " must be larger than the halo radius " + haloRadius);
+        }
+    }
+
+    int tileCount() {
+        return columns * rows;
+    }
+
+    /**
+     * returns the tile owning the given position, clamped to the grid
+     *
+     * @param x - the x coordinate
+     * @param y - the y coordinate
+     * @return the number of the tile
+     */
+    int tileOf(float x, float y) {
+        int col = (int) Math.floor((x - left) / tileWidth);
+        int row = (int) Math.floor((y - top) / tileHeight);
+        col = col < 0 ? 0 : (col >= columns ? columns - 1 : col);
+        row = row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+        return row * columns + col;
+    }
+
+    /**
+     * returns the squared distance from the given position to the nearest
+     * point of the given tile. the outer tiles hold the positions clamped
+     * into them, so they are taken to extend beyond the grid
+     *
+     * @param tile - the number of the tile
+     * @param x    - the x coordinate
+     * @param y    - the y coordinate
+     * @return the squared distance, 0 inside the tile
+     */
+    float distanceSq(int tile, float x, float y) {
+        int col = tile % columns;
+        int row = tile / columns;
+        float x0 = left + col * tileWidth;
+        float y0 = top + row * tileHeight;
+        float dx = 0;
+        float dy = 0;
+        if (col > 0 && x < x0) dx = x0 - x;
+        else if (col < columns - 1 && x > x0 + tileWidth) dx = x - x0 - tileWidth;
+        if (row > 0 && y < y0) dy = y0 - y;
+        else if (row < rows - 1 && y > y0 + tileHeight) dy = y - y0 - tileHeight;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * returns the tiles adjacent to the given one in the grid, which share
+     * halos with it
+     *
+     * @param tile - the number of the tile
+     * @return the adjacent tiles, without the tile itself
+     */
+    List<Integer> haloNeighbours(int tile) {
+        return neighbours(tile, false);
+    }
+
+    /**
+     * returns the tiles adjacent to the given one on the torus, which
+     * vehicles may migrate to from it in a tick, including the ones
+     * adjacent in the grid
+     *
+     * @param tile - the number of the tile
+     * @return the adjacent tiles, without the tile itself
+     */
+    List<Integer> peers(int tile) {
+        return neighbours(tile, true);
+    }
+
+    private List<Integer> neighbours(int tile, boolean wrap) {
+        int col = tile % columns;
+        int row = tile / columns;
+        List<Integer> neighbours = new ArrayList<>();
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int c = col + dc;
+                int r = row + dr;
+                if (wrap) {
+                    c = Math.floorMod(c, columns);
+                    r = Math.floorMod(r, rows);
+                } else if (c < 0 || c >= columns || r < 0 || r >= rows) {
+                    continue;
+                }
+                int neighbour = r * columns + c;
+                if (neighbour != tile && !neighbours.contains(neighbour)) {
+                    neighbours.add(neighbour);
+                }
+            }
+        }
+        return neighbours;
+    }
+}
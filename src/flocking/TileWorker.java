@@ -0,0 +1,433 @@
+package flocking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * TileWorker class - a process stepping the vehicles of one tile of a
+ * {@link TileLayout} for a {@link DistributedSimulation}. it is handed its
+ * vehicles and the addresses of the workers of the adjacent tiles by the
+ * coordinator, and then exchanges one message with each of them per tick
+ * over a socket: the vehicles migrating to the neighbour's tile, and the
+ * halo of vehicles within the vision radius of it, which the neighbour
+ * steps its own vehicles against as read-only ghosts
+ * <p>
+ * the vehicles are stepped double buffered from the state at the start of
+ * the tick, as {@link ParallelStepper} does, so the result does not depend
+ * on the order the tiles step in. obstacles and topological neighbours are
+ * not supported
+ * <p>
+ * usage: TileWorker [coordinatorHost] [coordinatorPort]
+ */
+public class TileWorker {
+    private static final int[] NO_NEAREST = new int[0];
+
+    private final int tile;
+    private final TileLayout layout;
+    private final FlockParameters parameters;
+    private final int ticks;
+    private final int gatherInterval;
+    private long tick;
+
+    // the owned vehicles in [0, owned), followed by the ghosts during a tick
+    private final FlockArrays flock = new FlockArrays();
+    private final FlockArrays next = new FlockArrays();
+    private int[] ids = new int[64];
+    private int owned = 0;
+    // the vehicles that left the tile in the last tick, the tiles they left
+    // for and their ids
+    private final FlockArrays departed = new FlockArrays();
+    private int[] departedTiles = new int[16];
+    private int[] departedIds = new int[16];
+
+    private final SpatialGrid grid;
+    private final ObstacleIndex obstacles;
+    private final ArrayStepper stepper;
+
+    private final DataInputStream coordinatorIn;
+    private final DataOutputStream coordinatorOut;
+    private final List<Peer> peers = new ArrayList<>();
+    private final List<Integer> haloNeighbours;
+
+    /**
+     * a connection to the worker of a tile vehicles may move to, with a
+     * thread sending to it, so no worker blocks on a full socket while the
+     * others wait to read from it
+     */
+    private static final class Peer {
+        final int tile;
+        final boolean halo;
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final ExecutorService sender;
+        Future<?> sending;
+
+        Peer(int tile, boolean halo, Socket socket) throws IOException {
+            this.tile = tile;
+            this.halo = halo;
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.sender = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "tile-sender-" + tile);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: TileWorker [coordinatorHost] [coordinatorPort]");
+            System.exit(1);
+        }
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            new TileWorker(socket).run();
+        }
+    }
+
+    /**
+     * constructor. reads the tile, the layout, the parameters and the
+     * vehicles of the tile from the coordinator
+     *
+     * @param coordinator - the connection to the coordinator
+     * @throws IOException if the connection fails
+     */
+    private TileWorker(Socket coordinator) throws IOException {
+        coordinatorIn = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+        coordinatorOut = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+        DataInputStream in = coordinatorIn;
+        tile = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        int columns = in.readInt();
+        int rows = in.readInt();
+        parameters = new FlockParameters(in.readFloat(), in.readFloat(), in.readFloat());
+        tick = in.readLong();
+        ticks = in.readInt();
+        gatherInterval = in.readInt();
+        layout = new TileLayout(width, height, columns, rows, parameters.gridCellSize());
+        haloNeighbours = layout.haloNeighbours(tile);
+        int n = in.readInt();
+        for (int k = 0; k < n; k++) {
+            addOwned(in);
+        }
+        grid = new SpatialGrid(width, height, Vehicle.RENDER_BUFFER, parameters.gridCellSize());
+        obstacles = new ObstacleIndex(width, height, Vehicle.RENDER_BUFFER, parameters.avoidanceRange());
+        stepper = new ArrayStepper(parameters);
+    }
+
+    /**
+     * connects to the workers of the adjacent tiles, steps every tick and
+     * sends the vehicles to the coordinator every gather interval and after
+     * the last tick
+     */
+    private void run() throws IOException {
+        connectPeers();
+        try {
+            for (int t = 1; t <= ticks; t++) {
+                exchange();
+                step();
+                if (t == ticks || gatherInterval > 0 && t % gatherInterval == 0) {
+                    gather();
+                }
+                migrate();
+            }
+            // the last messages must reach the peers before the sockets close
+            for (Peer peer : peers) {
+                awaitSent(peer);
+            }
+        } finally {
+            for (Peer peer : peers) {
+                peer.sender.shutdownNow();
+                peer.socket.close();
+            }
+        }
+    }
+
+    /**
+     * opens a server socket, tells the coordinator its port and connects to
+     * every peer: to the ones of higher tiles, and from the ones of lower
+     * tiles, which say their tile first
+     */
+    private void connectPeers() throws IOException {
+        try (ServerSocket server = new ServerSocket(0)) {
+            coordinatorOut.writeInt(server.getLocalPort());
+            coordinatorOut.flush();
+            int count = coordinatorIn.readInt();
+            int accepts = 0;
+            for (int k = 0; k < count; k++) {
+                int peerTile = coordinatorIn.readInt();
+                String host = coordinatorIn.readUTF();
+                int port = coordinatorIn.readInt();
+                if (peerTile < tile) {
+                    accepts++;
+                    continue;
+                }
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port));
+                socket.setTcpNoDelay(true);
+                Peer peer = new Peer(peerTile, haloNeighbours.contains(peerTile), socket);
+                peer.out.writeInt(tile);
+                peer.out.flush();
+                peers.add(peer);
+            }
+            for (int k = 0; k < accepts; k++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                int peerTile = new DataInputStream(socket.getInputStream()).readInt();
+                peers.add(new Peer(peerTile, haloNeighbours.contains(peerTile), socket));
+            }
+        }
+        // the ghosts and migrants are added in the order of their tiles, so a
+        // run does not depend on the order the peers connected in
+        peers.sort((a, b) -> Integer.compare(a.tile, b.tile));
+    }
+
+    /**
+     * sends every peer the vehicles that left for its tile and the halo of
+     * the vehicles within the vision radius of its tile, then reads the
+     * same from every peer, adding the migrants to the owned vehicles and
+     * the halos behind them as ghosts. the vehicles that left this tile
+     * stay as ghosts too, as the tiles they left for sent their halos
+     * before receiving them
+     */
+    private void exchange() throws IOException {
+        float radiusSq = parameters.visionRadius * parameters.visionRadius;
+        for (Peer peer : peers) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream message = new DataOutputStream(bytes);
+            int migrants = 0;
+            for (int k = 0; k < departed.size(); k++) {
+                if (departedTiles[k] == peer.tile) migrants++;
+            }
+            message.writeInt(migrants);
+            for (int k = 0; k < departed.size(); k++) {
+                if (departedTiles[k] == peer.tile) writeVehicle(message, departed, k, departedIds[k]);
+            }
+            if (peer.halo) {
+                ByteArrayOutputStream haloBytes = new ByteArrayOutputStream();
+                DataOutputStream halo = new DataOutputStream(haloBytes);
+                int ghosts = 0;
+                for (int i = 0; i < owned; i++) {
+                    if (layout.distanceSq(peer.tile, flock.posX[i], flock.posY[i]) <= radiusSq) {
+                        writeGhost(halo, flock, i);
+                        ghosts++;
+                    }
+                }
+                for (int k = 0; k < departed.size(); k++) {
+                    if (departedTiles[k] != peer.tile
+                            && layout.distanceSq(peer.tile, departed.posX[k], departed.posY[k]) <= radiusSq) {
+                        writeGhost(halo, departed, k);
+                        ghosts++;
+                    }
+                }
+                message.writeInt(ghosts);
+                haloBytes.writeTo(message);
+            } else {
+                message.writeInt(0);
+            }
+            send(peer, bytes.toByteArray());
+        }
+
+        DataInputStream[] messages = new DataInputStream[peers.size()];
+        for (int p = 0; p < peers.size(); p++) {
+            Peer peer = peers.get(p);
+            byte[] bytes = new byte[peer.in.readInt()];
+            peer.in.readFully(bytes);
+            messages[p] = new DataInputStream(new ByteArrayInputStream(bytes));
+            int migrants = messages[p].readInt();
+            for (int k = 0; k < migrants; k++) {
+                addOwned(messages[p]);
+            }
+        }
+        for (DataInputStream message : messages) {
+            int ghosts = message.readInt();
+            for (int k = 0; k < ghosts; k++) {
+                readGhost(message, flock);
+            }
+        }
+        for (int k = 0; k < departed.size(); k++) {
+            flock.add(departed.posX[k], departed.posY[k], departed.velX[k], departed.velY[k],
+                    departed.flockNumber[k], 0, 0, 0);
+        }
+        departed.setSize(0);
+    }
+
+    /**
+     * hands a message to the peer's sender, after the previous one was sent
+     */
+    private void send(Peer peer, byte[] message) throws IOException {
+        awaitSent(peer);
+        peer.sending = peer.sender.submit(() -> {
+            try {
+                peer.out.writeInt(message.length);
+                peer.out.write(message);
+                peer.out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * waits for the last message handed to the peer's sender to be sent
+     */
+    private static void awaitSent(Peer peer) throws IOException {
+        if (peer.sending == null) return;
+        try {
+            peer.sending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted sending to tile " + peer.tile, e);
+        } catch (ExecutionException e) {
+            throw new IOException("failed sending to tile " + peer.tile, e.getCause());
+        }
+    }
+
+    /**
+     * steps the owned vehicles against the owned vehicles and the ghosts,
+     * then drops the ghosts
+     */
+    private void step() {
+        grid.rebuild(flock.posX, flock.posY, flock.size());
+        next.ensureCapacity(flock.capacity());
+        stepper.step(flock, grid, null, obstacles, NO_NEAREST, layout.width, layout.height, next, 0, owned);
+        flock.swapKinematics(next);
+        flock.setSize(owned);
+        tick++;
+    }
+
+    /**
+     * sends the tick and every owned vehicle to the coordinator
+     */
+    private void gather() throws IOException {
+        coordinatorOut.writeLong(tick);
+        coordinatorOut.writeInt(owned);
+        for (int i = 0; i < owned; i++) {
+            writeVehicle(coordinatorOut, flock, i, ids[i]);
+        }
+        coordinatorOut.flush();
+    }
+
+    /**
+     * moves the vehicles that left the tile, keeping the order of the
+     * others, to be sent to their new tiles in the next exchange
+     *
+     * @throws IllegalStateException if a vehicle moved further than an
+     *                               adjacent tile
+     */
+    private void migrate() {
+        int kept = 0;
+        for (int i = 0; i < owned; i++) {
+            int to = layout.tileOf(flock.posX[i], flock.posY[i]);
+            if (to == tile) {
+                flock.copy(i, kept);
+                ids[kept++] = ids[i];
+                continue;
+            }
+            if (!isPeer(to)) {
+                throw new IllegalStateException("vehicle " + ids[i] + " moved from tile " + tile
+                        + " to tile " + to + ", which is not adjacent");
+            }
+            int k = departed.add(flock.posX[i], flock.posY[i], flock.velX[i], flock.velY[i], flock.flockNumber[i],
+                    flock.alignmentCoefficient[i], flock.cohesionCoefficient[i], flock.separationCoefficient[i]);
+            if (k == departedTiles.length) {
+                departedTiles = Arrays.copyOf(departedTiles, k * 2);
+                departedIds = Arrays.copyOf(departedIds, k * 2);
+            }
+            departedTiles[k] = to;
+            departedIds[k] = ids[i];
+        }
+        owned = kept;
+        flock.setSize(owned);
+    }
+
+    private boolean isPeer(int other) {
+        for (Peer peer : peers) {
+            if (peer.tile == other) return true;
+        }
+        return false;
+    }
+
+    /**
+     * reads a vehicle sent in full and adds it to the owned vehicles, which
+     * must be all the vehicles held
+     */
+    private void addOwned(DataInput in) throws IOException {
+        int id = readVehicle(in, flock);
+        if (owned == ids.length) {
+            ids = Arrays.copyOf(ids, owned * 2);
+        }
+        ids[owned++] = id;
+    }
+
+    /**
+     * writes the vehicle at the given index in full
+     *
+     * @param out   - the output to write to
+     * @param flock - the flock holding the vehicle
+     * @param i     - the index of the vehicle
+     * @param id    - the id of the vehicle in the whole simulation
+     * @throws IOException if the output fails
+     */
+    static void writeVehicle(DataOutput out, FlockArrays flock, int i, int id) throws IOException {
+        out.writeInt(id);
+        out.writeFloat(flock.posX[i]);
+        out.writeFloat(flock.posY[i]);
+        out.writeFloat(flock.velX[i]);
+        out.writeFloat(flock.velY[i]);
+        out.writeInt(flock.flockNumber[i]);
+        out.writeFloat(flock.alignmentCoefficient[i]);
+        out.writeFloat(flock.cohesionCoefficient[i]);
+        out.writeFloat(flock.separationCoefficient[i]);
+    }
+
+    /**
+     * reads a vehicle written by {@link #writeVehicle} and adds it to the
+     * given flock with zero acceleration
+     *
+     * @param in    - the input to read from
+     * @param flock - the flock to add the vehicle to
+     * @return the id of the vehicle in the whole simulation
+     * @throws IOException if the input fails
+     */
+    static int readVehicle(DataInput in, FlockArrays flock) throws IOException {
+        int id = in.readInt();
+        flock.add(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readInt(),
+                in.readFloat(), in.readFloat(), in.readFloat());
+        return id;
+    }
+
+    private static void writeGhost(DataOutput out, FlockArrays flock, int i) throws IOException {
+        out.writeFloat(flock.posX[i]);
+        out.writeFloat(flock.posY[i]);
+        out.writeFloat(flock.velX[i]);
+        out.writeFloat(flock.velY[i]);
+        out.writeInt(flock.flockNumber[i]);
+    }
+
+    private static void readGhost(DataInput in, FlockArrays flock) throws IOException {
+        flock.add(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readInt(), 0, 0, 0);
+    }
+}
@@ -0,0 +1,203 @@
+package flocking;
+
+import processing.core.PGraphics;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * TrajectoryReader class - streams the frames of a file written by a
+ * {@link TrajectoryRecorder} back one at a time. only the current frame is
+ * held in memory, so recordings larger than the memory can be played back
+ */
+class TrajectoryReader implements Closeable {
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final float positionStep;
+    private final Inflater inflater = new Inflater();
+
+    private long tick = -1;
+    private int size = 0;
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] heading = new int[0];
+    private int[] dx = new int[0];
+    private int[] dy = new int[0];
+    private int[] flockNumber = new int[0];
+    private byte[] raw = new byte[1 << 16];
+    private int rawPosition;
+    private byte[] compressed = new byte[1 << 16];
+
+    /**
+     * constructor. reads the header of the file
+     *
+     * @param path - the recorded file
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    TrajectoryReader(Path path) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile()), 1 << 20));
+        try {
+            if (in.readInt() != TrajectoryRecorder.MAGIC) {
+                throw new IOException(path + " is not a trajectory recording");
+            }
+            int version = in.readInt();
+            if (version != TrajectoryRecorder.VERSION) {
+                throw new IOException("unsupported trajectory version " + version + " in " + path);
+            }
+            this.width = in.readInt();
+            this.height = in.readInt();
+            in.readInt(); // the keyframe interval
+            this.positionStep = in.readFloat();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * reads and decodes the next frame
+     *
+     * @return true if a frame was read, false at the end of the recording
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    boolean next() throws IOException {
+        long frameTick;
+        try {
+            frameTick = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        int n = in.readInt();
+        byte type = in.readByte();
+        int rawLength = in.readInt();
+        int compressedLength = in.readInt();
+        if (type != TrajectoryRecorder.KEYFRAME && (type != TrajectoryRecorder.DELTA_FRAME || n != size)) {
+            throw new IOException("corrupt trajectory frame at tick " + frameTick);
+        }
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        if (raw.length < rawLength) {
+            raw = new byte[rawLength];
+        }
+        in.readFully(compressed, 0, compressedLength);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            if (inflater.inflate(raw, 0, rawLength) != rawLength) {
+                throw new IOException("corrupt trajectory frame at tick " + frameTick);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt trajectory frame at tick " + frameTick, e);
+        }
+
+        rawPosition = 0;
+        if (x.length < n) {
+            x = new int[n];
+            y = new int[n];
+            heading = new int[n];
+            dx = new int[n];
+            dy = new int[n];
+            flockNumber = new int[n];
+        }
+        if (type == TrajectoryRecorder.KEYFRAME) {
+            for (int i = 0; i < n; i++) flockNumber[i] = readVarInt();
+            for (int i = 0; i < n; i++) x[i] = readVarInt();
+            for (int i = 0; i < n; i++) y[i] = readVarInt();
+            for (int i = 0; i < n; i++) heading[i] = readVarInt();
+            Arrays.fill(dx, 0, n, 0);
+            Arrays.fill(dy, 0, n, 0);
+        } else {
+            for (int i = 0; i < n; i++) {
+                dx[i] += readVarInt();
+                x[i] += dx[i];
+            }
+            for (int i = 0; i < n; i++) {
+                dy[i] += readVarInt();
+                y[i] += dy[i];
+            }
+            for (int i = 0; i < n; i++) {
+                heading[i] = (heading[i] + readVarInt()) & (TrajectoryRecorder.HEADING_STEPS - 1);
+            }
+        }
+        tick = frameTick;
+        size = n;
+        return true;
+    }
+
+    /**
+     * draws every vehicle of the current frame
+     *
+     * @param g - the graphics to draw on
+     */
+    void display(PGraphics g) {
+        for (int i = 0; i < size; i++) {
+            Vehicle.display(g, getX(i), getY(i), getHeading(i), flockNumber[i]);
+        }
+    }
+
+    private int readVarInt() {
+        int v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = raw[rawPosition++];
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    float getX(int i) {
+        return x[i] * positionStep;
+    }
+
+    float getY(int i) {
+        return y[i] * positionStep;
+    }
+
+    /**
+     * returns the heading of a vehicle in the current frame
+     *
+     * @param i - the index of the vehicle
+     * @return the heading in radians, in [0, 2 * PI)
+     */
+    float getHeading(int i) {
+        return (float) (heading[i] * 2 * Math.PI / TrajectoryRecorder.HEADING_STEPS);
+    }
+
+    int getFlockNumber(int i) {
+        return flockNumber[i];
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,333 @@
+package flocking;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * TrajectoryRecorder class - records the position and heading of every
+ * vehicle on every tick to a compact binary file. the simulation thread only
+ * copies the raw state into one of two buffers, a background writer does the
+ * quantizing, encoding, compression and disk I/O. once both buffers are
+ * waiting for the writer, recording blocks until one is written, so a slow
+ * disk slows the simulation down instead of filling the memory
+ * <p>
+ * the file starts with a header of magic, version, width, height, keyframe
+ * interval and position step, followed by the frames. a frame is its tick,
+ * vehicle count, type, raw and compressed lengths and a deflated body. the
+ * body is columnar: for a keyframe the flock numbers, x, y and heading
+ * columns as absolute values, for any other frame the x and y columns as the
+ * difference between this tick's movement and the previous tick's, and the
+ * heading column as the difference from the previous heading. positions are
+ * quantized to multiples of the position step and headings to 1/256 of a
+ * turn, and every value is written as a zigzag varint, so a vehicle that
+ * steers smoothly takes about three bytes per frame before compression.
+ * the vehicles are recorded in the order of their ids, so the columns of
+ * consecutive frames line up even when the engine reorders the vehicles
+ */
+class TrajectoryRecorder {
+    static final int MAGIC = 0x464C4B54;
+    static final int VERSION = 1;
+    static final byte KEYFRAME = 0;
+    static final byte DELTA_FRAME = 1;
+    // the number of steps in a full turn of a quantized heading
+    static final int HEADING_STEPS = 256;
+    private static final int BUFFERS = 2;
+
+    // the raw state of the vehicles on a single tick
+    private static final class Frame {
+        long tick;
+        int size;
+        boolean keyframe;
+        float[] x = new float[0];
+        float[] y = new float[0];
+        float[] vx = new float[0];
+        float[] vy = new float[0];
+        int[] flockNumber = new int[0];
+
+        void ensureCapacity(int n) {
+            if (x.length < n) {
+                x = new float[n];
+                y = new float[n];
+                vx = new float[n];
+                vy = new float[n];
+                flockNumber = new int[n];
+            }
+        }
+    }
+
+    private final DataOutputStream out;
+    private final float positionStep;
+    private final int keyframeInterval;
+    private final BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Frame stop = new Frame();
+    private final Thread writer;
+    private volatile IOException failure;
+    private int frameCount = 0;
+    private boolean keyframeRequested = false;
+
+    // the writer's state: the quantized previous frame and the encoding buffers
+    private int[] previousX = new int[0];
+    private int[] previousY = new int[0];
+    private int[] previousHeading = new int[0];
+    // the last change of every quantized position, the predicted next change
+    private int[] previousDX = new int[0];
+    private int[] previousDY = new int[0];
+    private int previousSize = -1;
+    private int sinceKeyframe = 0;
+    private byte[] raw = new byte[1 << 16];
+    private int rawLength;
+    private byte[] compressed = new byte[1 << 16];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    /**
+     * constructor. writes the header and starts the writer thread
+     *
+     * @param path             - the file to record to, replaced if it exists
+     * @param width            - the width of the recorded world
+     * @param height           - the height of the recorded world
+     * @param positionStep     - the step positions are quantized to, in pixels
+     * @param keyframeInterval - the number of frames between keyframes, a
+     *                         reader can only start decoding at a keyframe
+     * @throws IOException if the file cannot be opened
+     */
+    TrajectoryRecorder(Path path, int width, int height, float positionStep, int keyframeInterval) throws IOException {
+        if (positionStep <= 0 || keyframeInterval <= 0) {
+            throw new IllegalArgumentException("position step and keyframe interval must be positive");
+        }
+        this.positionStep = positionStep;
+        this.keyframeInterval = keyframeInterval;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile()), 1 << 20));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(keyframeInterval);
+        out.writeFloat(positionStep);
+        for (int i = 0; i < BUFFERS; i++) {
+            freeFrames.add(new Frame());
+        }
+        this.writer = new Thread(this::write, "trajectory-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * queues a copy of the current state of the engine as the next frame,
+     * blocking while both buffers are waiting for the writer
+     *
+     * @param engine - the engine to record
+     */
+    void record(FlockEngine engine) {
+        checkFailure();
+        try {
+            Frame frame = freeFrames.take();
+            int n = engine.size();
+            frame.tick = engine.getTick();
+            frame.size = n;
+            frame.keyframe = keyframeRequested;
+            keyframeRequested = false;
+            frame.ensureCapacity(n);
+            if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS && !engine.isReordered()) {
+                FlockArrays arrays = engine.getArrays();
+                System.arraycopy(arrays.posX, 0, frame.x, 0, n);
+                System.arraycopy(arrays.posY, 0, frame.y, 0, n);
+                System.arraycopy(arrays.velX, 0, frame.vx, 0, n);
+                System.arraycopy(arrays.velY, 0, frame.vy, 0, n);
+                System.arraycopy(arrays.flockNumber, 0, frame.flockNumber, 0, n);
+            } else if (engine.getStorageMode() == FlockEngine.StorageMode.ARRAYS) {
+                FlockArrays arrays = engine.getArrays();
+                for (int id = 0; id < n; id++) {
+                    int i = engine.indexOf(id);
+                    frame.x[id] = arrays.posX[i];
+                    frame.y[id] = arrays.posY[i];
+                    frame.vx[id] = arrays.velX[i];
+                    frame.vy[id] = arrays.velY[i];
+                    frame.flockNumber[id] = arrays.flockNumber[i];
+                }
+            } else {
+                ArrayList<Vehicle> vehicles = engine.getVehicles();
+                for (int id = 0; id < n; id++) {
+                    Vehicle v = vehicles.get(engine.indexOf(id));
+                    frame.x[id] = v.getX();
+                    frame.y[id] = v.getY();
+                    frame.vx[id] = v.getVelocityX();
+                    frame.vy[id] = v.getVelocityY();
+                    frame.flockNumber[id] = v.getFlockNumber();
+                }
+            }
+            queue.put(frame);
+            frameCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * makes the next recorded frame a keyframe, which a reader can start
+     * decoding at. the vehicles are recorded in the order of their ids, so
+     * the engine reordering them needs no keyframe
+     */
+    void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    /**
+     * waits for all queued frames to be written, stops the writer and closes
+     * the file
+     */
+    void close() {
+        try {
+            queue.put(stop);
+            writer.join();
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            deflater.end();
+        }
+        checkFailure();
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("trajectory recording failed", failure);
+        }
+    }
+
+    /**
+     * the loop of the writer thread
+     */
+    private void write() {
+        try {
+            while (true) {
+                Frame frame = queue.take();
+                if (frame == stop) {
+                    return;
+                }
+                try {
+                    if (failure == null) {
+                        writeFrame(frame);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    freeFrames.put(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeFrame(Frame frame) throws IOException {
+        int n = frame.size;
+        boolean keyframe = frame.keyframe || n != previousSize || sinceKeyframe >= keyframeInterval;
+        if (previousX.length < n) {
+            previousX = new int[n];
+            previousY = new int[n];
+            previousHeading = new int[n];
+            previousDX = new int[n];
+            previousDY = new int[n];
+        }
+        rawLength = 0;
+        if (keyframe) {
+            for (int i = 0; i < n; i++) {
+                writeVarInt(frame.flockNumber[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                previousX[i] = quantize(frame.x[i]);
+                previousDX[i] = 0;
+                writeVarInt(previousX[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                previousY[i] = quantize(frame.y[i]);
+                previousDY[i] = 0;
+                writeVarInt(previousY[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                previousHeading[i] = heading(frame.vx[i], frame.vy[i]);
+                writeVarInt(previousHeading[i]);
+            }
+            sinceKeyframe = 0;
+        } else {
+            for (int i = 0; i < n; i++) {
+                int dx = quantize(frame.x[i]) - previousX[i];
+                writeVarInt(dx - previousDX[i]);
+                previousX[i] += dx;
+                previousDX[i] = dx;
+            }
+            for (int i = 0; i < n; i++) {
+                int dy = quantize(frame.y[i]) - previousY[i];
+                writeVarInt(dy - previousDY[i]);
+                previousY[i] += dy;
+                previousDY[i] = dy;
+            }
+            for (int i = 0; i < n; i++) {
+                int h = heading(frame.vx[i], frame.vy[i]);
+                // the shortest way around the circle, in [-128, 127]
+                writeVarInt((byte) (h - previousHeading[i]));
+                previousHeading[i] = h;
+            }
+        }
+        sinceKeyframe++;
+        previousSize = n;
+
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        out.writeLong(frame.tick);
+        out.writeInt(n);
+        out.writeByte(keyframe ? KEYFRAME : DELTA_FRAME);
+        out.writeInt(rawLength);
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+    }
+
+    private int quantize(float position) {
+        return Math.round(position / positionStep);
+    }
+
+    /**
+     * returns the heading of the given velocity in steps of a full turn
+     */
+    static int heading(float vx, float vy) {
+        return (int) Math.round(Math.atan2(vy, vx) * HEADING_STEPS / (2 * Math.PI)) & (HEADING_STEPS - 1);
+    }
+
+    /**
+     * appends the given value to the raw body as a zigzag varint
+     */
+    private void writeVarInt(int value) {
+        if (raw.length - rawLength < 5) {
+            raw = Arrays.copyOf(raw, raw.length * 2);
+        }
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7F) != 0) {
+            raw[rawLength++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        raw[rawLength++] = (byte) v;
+    }
+}
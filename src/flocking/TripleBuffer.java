@@ -0,0 +1,67 @@
+package flocking;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * a lock-free triple buffer handing values from a single writer thread to a
+ * single reader thread. the writer fills the back value and publishes it,
+ * the reader takes the latest published value. neither ever waits for the
+ * other, and a published value is not touched by the writer again until the
+ * reader has moved on to a newer one
+ *
+ * @param <T> the type of the values
+ */
+class TripleBuffer<T> {
+    // the index bits of the shared slot, and the bit marking it unread
+    private static final int INDEX = 3;
+    private static final int FRESH = 4;
+
+    private final T[] values;
+    // the slot between the writer and the reader
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // owned by the writer
+    private int back = 0;
+    // owned by the reader
+    private int front = 2;
+
+    /**
+     * constructor
+     *
+     * @param factory - creates the three values
+     */
+    @SuppressWarnings("unchecked")
+    TripleBuffer(Supplier<T> factory) {
+        values = (T[]) new Object[]{factory.get(), factory.get(), factory.get()};
+    }
+
+    /**
+     * returns the value the writer fills next. called by the writer only
+     *
+     * @return the back value
+     */
+    T back() {
+        return values[back];
+    }
+
+    /**
+     * publishes the back value, and makes the oldest value the new back
+     * value. called by the writer only
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * returns the latest published value. called by the reader only
+     *
+     * @return the latest published value, or the value returned by the
+     * previous call if nothing was published since
+     */
+    T latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return values[front];
+    }
+}
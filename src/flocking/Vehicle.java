@@ -0,0 +1,714 @@
+package flocking;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PVector;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Vehicle class - represents a vehicle agent in the simulation
+ */
+class Vehicle implements Locatable {
+    // the rendering buffer from screen edges
+    static final int RENDER_BUFFER = 10;
+    static final float VISION_RADIUS = 150;
+    static final float OBSTACLE_AVOIDANCE_COEFFICIENT = 2f;
+    static final float MAX_SPEED = 4;
+    static final float MAX_FORCE = 0.2f;
+
+
+    private final FlockEngine engine;
+    //vehicle's rendering constants
+    float r;
+
+
+    // the vehicle's awareness constants
+    private final float maxSpeed;
+    private final float maxForce;
+    private final float visionRadius;
+    private final float minVisionAngle;
+    private final float maxVisionAngle;
+    static final float MIN_VISION_ANGLE = 3f / 4f;
+    static final float MAX_VISION_ANGLE = 5f / 4f;
+    // the cosines bounding the blind spot between the vision angles
+    private static final double BLIND_SPOT_MIN_COS = Math.cos(MAX_VISION_ANGLE);
+    private static final double BLIND_SPOT_MAX_COS = Math.cos(MIN_VISION_ANGLE);
+
+    // vehicle fields
+    private final PVector position;
+    private final PVector acceleration;
+    private final PVector velocity;
+
+    // flock fields
+    private final int flockNumber;
+    private final PVector coefficientVector;
+    private static final int minDistanceFromEdge = 150;
+
+    // the scratch of the far field search, reused by every call: the
+    // neighbours looked at one by one, the steering sums, the number of
+    // aggregated neighbours and of flockmates among them, and whether the
+    // vehicle steers away from the aggregated centroids
+    private final ArrayList<Vehicle> nearNeighbours = new ArrayList<>();
+    private final PVector farAlignment = new PVector();
+    private final PVector farCohesion = new PVector();
+    private final PVector farSeparation = new PVector();
+    private int farCount;
+    private int farFlockmates;
+    private boolean separateFromCentroids;
+    private final Consumer<Point<Vehicle>> nearVisitor = this::visitNear;
+    private final Consumer<float[]> farVisitor = this::visitFar;
+
+
+    /**
+     * constructor. creates a vehicle in the given x,y coordinates
+     *
+     * @param engine            - the engine simulating this vehicle
+     * @param x                 - the vehicle's x coordinate
+     * @param y                 - the vehicle's y coordinate
+     * @param flockNumber       - the number of the flock of this vehicle
+     * @param coefficientVector - a vector that holds the alignment,
+     *                          cohesion, and separation coefficients in
+     *                          this order
+     */
+    Vehicle(FlockEngine engine, float x,
+            float y,
+            int flockNumber,
+            PVector coefficientVector) {
+        this(engine, x, y, engine.random(-10, 10), engine.random(-10, 10), flockNumber, coefficientVector);
+    }
+
+    /**
+     * constructor. creates a vehicle in the given x,y coordinates with the
+     * given velocity
+     *
+     * @param engine            - the engine simulating this vehicle
+     * @param x                 - the vehicle's x coordinate
+     * @param y                 - the vehicle's y coordinate
+     * @param vx                - the vehicle's x velocity
+     * @param vy                - the vehicle's y velocity
+     * @param flockNumber       - the number of the flock of this vehicle
+     * @param coefficientVector - a vector that holds the alignment,
+     *                          cohesion, and separation coefficients in
+     *                          this order
+     */
+    Vehicle(FlockEngine engine, float x,
+            float y,
+            float vx,
+            float vy,
+            int flockNumber,
+            PVector coefficientVector) {
+        this.engine = engine;
+        this.flockNumber = flockNumber;
+        this.coefficientVector = coefficientVector;
+        acceleration = new PVector(0, 0);
+        velocity = new PVector(vx, vy);
+        position = new PVector(x, y);
+        r = 6 + flockNumber % 2;
+        maxSpeed = engine.getParameters().maxSpeed;
+        maxForce = engine.getParameters().maxForce;
+        visionRadius = engine.getParameters().visionRadius;
+        minVisionAngle = MIN_VISION_ANGLE;
+        maxVisionAngle = MAX_VISION_ANGLE;
+
+    }
+
+    /**
+     * a method to updates the vehicle's acceleration
+     */
+    void update() {
+        // Update velocity
+        velocity.add(acceleration);
+        // Limit speed
+        velocity.limit(maxSpeed);
+        position.add(velocity);
+        // Reset acceleration to 0 each cycle
+        acceleration.mult(0);
+    }
+
+    /**
+     * applies a force to the vehicle's acceleration
+     *
+     * @param force - the force to be applied
+     */
+    void applyForce(PVector force) {
+        // We could add mass here if we want A = F / M
+        acceleration.add(force);
+    }
+
+
+    /**
+     * returns all neighbours within the visionRadius of the current
+     * vehicle
+     *
+     * @return all neighbours of the current vehicle
+     */
+    ArrayList<Vehicle> getNeighboursQuad() {
+        ArrayList<Vehicle> neighbours = new ArrayList<>();
+        // the tree holds the positions from the start of the tick, and
+        // vehicles move at most maxSpeed since
+        engine.getQuadTree().queryRadius(this.getX(), this.getY(), this.visionRadius + this.maxSpeed, other -> {
+            Vehicle v = other.getUserData();
+            if (v != this && isNeighbour(v)) {
+                neighbours.add(v);
+            }
+        });
+        return neighbours;
+    }
+
+    /**
+     * returns all neighbours within the visionRadius of the current
+     * vehicle, looking only at the grid cells around it
+     *
+     * @param flock - all vehicles in the flock, in the order the grid was
+     *              built from
+     * @return all neighbours of the current vehicle
+     */
+    ArrayList<Vehicle> getNeighboursGrid(ArrayList<Vehicle> flock) {
+        SpatialGrid grid = engine.getGrid();
+        ArrayList<Vehicle> neighbours = new ArrayList<>();
+        int cx = grid.cellX(position.x);
+        int cy = grid.cellY(position.y);
+        for (int row = Math.max(0, cy - 1); row <= Math.min(grid.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(grid.columns - 1, cx + 1); col++) {
+                int cell = row * grid.columns + col;
+                int end = grid.cellStart[cell] + grid.cellCount[cell];
+                for (int k = grid.cellStart[cell]; k < end; k++) {
+                    Vehicle other = flock.get(grid.ids[k]);
+                    if (other != this && isNeighbour(other)) {
+                        neighbours.add(other);
+                    }
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * returns all neighbours within the visionRadius of the current
+     * vehicle
+     *
+     * @param flock - all vehicles in the flock
+     * @return all neighbours of the current vehicle
+     */
+    ArrayList<Vehicle> getNeighbours(ArrayList<Vehicle> flock) {
+        ArrayList<Vehicle> neighbours = new ArrayList<>();
+        for (Vehicle other :
+                flock) {
+            if (other != this && isNeighbour(other)) {
+                neighbours.add(other);
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * returns the k nearest of the given neighbours, in the order {@link
+     * ArrayStepper} reacts to them
+     *
+     * @param neighbours - the neighbours of this vehicle
+     * @param k          - the number of nearest neighbours to return
+     * @return the k nearest neighbours, or all of them if there are at most k
+     */
+    private ArrayList<Vehicle> nearest(ArrayList<Vehicle> neighbours, int k) {
+        NearestNeighbours heap = new NearestNeighbours();
+        heap.reset(k);
+        for (int i = 0; i < neighbours.size(); i++) {
+            Vehicle other = neighbours.get(i);
+            float dx = other.position.x - this.position.x;
+            float dy = other.position.y - this.position.y;
+            heap.offer(i, dx * dx + dy * dy);
+        }
+        ArrayList<Vehicle> nearest = new ArrayList<>(heap.size);
+        for (int i = 0; i < heap.size; i++) {
+            nearest.add(neighbours.get(heap.ids[i]));
+        }
+        return nearest;
+    }
+
+    /**
+     * calculates whether the given vehicle is within the vision radius and
+     * in the vision of this, with no square root or trigonometry
+     *
+     * @param other - the other vehicle
+     * @return true if the other vehicle is a neighbour of this, false otherwise
+     */
+    private boolean isNeighbour(Vehicle other) {
+        float dx = other.position.x - this.position.x;
+        float dy = other.position.y - this.position.y;
+        float distSq = dx * dx + dy * dy;
+        return distSq <= visionRadius * visionRadius && inView(velocity.x, velocity.y, dx, dy, distSq);
+    }
+
+    /**
+     * calculates whether an offset is in the vision of a vehicle with the
+     * given velocity. a vehicle is blind to the offsets whose angle to its
+     * velocity is between the min and max vision angles, and that angle is
+     * compared through its cosine, dot / (|velocity| * |offset|), with both
+     * sides squared, so no acos or square root is needed
+     *
+     * @param vx     - the x velocity of the vehicle
+     * @param vy     - the y velocity of the vehicle
+     * @param dx     - the x offset from the vehicle
+     * @param dy     - the y offset from the vehicle
+     * @param distSq - the squared length of the offset
+     * @return true if the offset is in the vision of the vehicle, false otherwise
+     */
+    static boolean inView(float vx, float vy, float dx, float dy, float distSq) {
+        double magSq = (double) (vx * vx + vy * vy) * distSq;
+        if (magSq == 0) {
+            // the angle between a zero vector and any other vector is 0
+            return !(MIN_VISION_ANGLE <= 0 && 0 <= MAX_VISION_ANGLE);
+        }
+        double dot = vx * dx + vy * dy;
+        return !(atLeast(dot, BLIND_SPOT_MIN_COS, magSq) && atMost(dot, BLIND_SPOT_MAX_COS, magSq));
+    }
+
+    // whether dot >= cos * sqrt(magSq)
+    private static boolean atLeast(double dot, double cos, double magSq) {
+        if (cos >= 0) return dot >= 0 && dot * dot >= cos * cos * magSq;
+        return dot >= 0 || dot * dot <= cos * cos * magSq;
+    }
+
+    // whether dot <= cos * sqrt(magSq)
+    private static boolean atMost(double dot, double cos, double magSq) {
+        if (cos >= 0) return dot <= 0 || dot * dot <= cos * cos * magSq;
+        return dot <= 0 && dot * dot >= cos * cos * magSq;
+    }
+
+    /**
+     * calculates and returns the desired steering vector for this
+     * vehicle to alignment with its neighbors direction
+     *
+     * @param neighbors - the flock of this vehicle
+     * @return the desired velocity vector for alignment for this vehicle
+     */
+    PVector alignment(ArrayList<Vehicle> neighbors) {
+        // desired steering velocity vector
+        PVector steering = new PVector();
+        int total = 0;
+        for (Vehicle v :
+                neighbors) {
+            if (v.flockNumber == this.flockNumber) {
+                steering.add(v.velocity);
+                total++;
+            }
+        }
+        if (total != 0) {
+            steering.setMag(maxSpeed);
+            steering.sub(this.velocity);
+            steering.limit(maxForce);
+        }
+        return steering;
+    }
+
+    /**
+     * calculates and returns the desired steering vector for this
+     * vehicle to move towards the center of its local neighborhood
+     *
+     * @param neighbors - the flock of this vehicle
+     * @return the desired velocity vector for cohesion for this vehicle
+     */
+    PVector cohesion(ArrayList<Vehicle> neighbors) {
+        PVector steering = new PVector();
+        int total = 0;
+        for (Vehicle v :
+                neighbors) {
+            if (v.flockNumber == this.flockNumber) {
+                total++;
+                steering.add(v.position);
+            }
+        }
+        if (total != 0) {
+            steering.div(total);
+            steering.sub(position);
+            steering.setMag(maxSpeed);
+            steering.sub(velocity);
+            steering.limit(maxForce);
+        }
+        return steering;
+    }
+
+    /**
+     * calculates and returns the desired steering vector for this
+     * vehicle to move away from its neighbors, weighted by the adjacency of other vehicles
+     *
+     * @param neighbours - the local flock of this vehicle
+     * @return the desired steering vector for separation for this vehicle
+     */
+
+    PVector separation(ArrayList<Vehicle> neighbours) {
+        PVector steering = new PVector();
+        for (Vehicle v :
+                neighbours) {
+            float dist = PVector.dist(this.position, v.position);
+            if (dist != 0) {
+                PVector distVector = PVector.sub(this.position, v.position);
+                distVector.div(dist);
+                steering.add(distVector);
+            }
+        }
+        steering.div(neighbours.size());
+        steering.setMag(maxSpeed);
+        steering.sub(velocity);
+        steering.limit(maxForce);
+        return steering;
+    }
+
+
+    /**
+     * applies the alignment, cohesion and separation steering vectors of
+     * this vehicle, weighted by its coefficients, gathering all three in a
+     * single pass over its neighbours. behaves as {@link #alignment}, {@link
+     * #cohesion} and {@link #separation} combined
+     *
+     * @param neighbours - the local flock of this vehicle, not empty
+     */
+    void steer(ArrayList<Vehicle> neighbours) {
+        PVector alignment = new PVector();
+        PVector cohesion = new PVector();
+        PVector separation = new PVector();
+        int total = gather(neighbours, alignment, cohesion, separation);
+        steer(neighbours.size(), total, alignment, cohesion, separation);
+    }
+
+    /**
+     * adds the velocities and positions of the given neighbours that are in
+     * this vehicle's flock, and the unit vectors away from all of them, to
+     * the given sums
+     *
+     * @param neighbours - the neighbours of this vehicle
+     * @param alignment  - the sum of the velocities of the flockmates
+     * @param cohesion   - the sum of the positions of the flockmates
+     * @param separation - the sum of the unit vectors away from the neighbours
+     * @return the number of flockmates among the neighbours
+     */
+    private int gather(ArrayList<Vehicle> neighbours, PVector alignment, PVector cohesion, PVector separation) {
+        int total = 0;
+        for (int i = 0; i < neighbours.size(); i++) {
+            Vehicle v = neighbours.get(i);
+            if (v.flockNumber == this.flockNumber) {
+                alignment.add(v.velocity);
+                cohesion.add(v.position);
+                total++;
+            }
+            float dx = this.position.x - v.position.x;
+            float dy = this.position.y - v.position.y;
+            float distSq = dx * dx + dy * dy;
+            if (distSq != 0) {
+                float dist = (float) Math.sqrt(distSq);
+                separation.x += dx / dist;
+                separation.y += dy / dist;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * applies the alignment, cohesion and separation steering vectors of
+     * this vehicle from the sums gathered over its neighbours
+     *
+     * @param neighbours - the number of neighbours the separation is averaged
+     *                   over, or 0 to apply no separation
+     * @param total      - the number of flockmates among the neighbours
+     * @param alignment  - the sum of the velocities of the flockmates
+     * @param cohesion   - the sum of the positions of the flockmates
+     * @param separation - the sum of the unit vectors away from the neighbours
+     */
+    private void steer(int neighbours, int total, PVector alignment, PVector cohesion, PVector separation) {
+        if (total != 0) {
+            alignment.setMag(maxSpeed);
+            alignment.sub(this.velocity);
+            alignment.limit(maxForce);
+
+            cohesion.div(total);
+            cohesion.sub(position);
+            cohesion.setMag(maxSpeed);
+            cohesion.sub(velocity);
+            cohesion.limit(maxForce);
+        }
+        acceleration.add(alignment.mult(coefficientVector.x));
+        acceleration.add(cohesion.mult(coefficientVector.y));
+        if (neighbours != 0) {
+            separation.div(neighbours);
+            separation.setMag(maxSpeed);
+            separation.sub(velocity);
+            separation.limit(maxForce);
+            acceleration.add(separation.mult(coefficientVector.z));
+        }
+    }
+
+    /**
+     * applies the steering vectors of this vehicle as {@link #steer} does,
+     * looking at its neighbours one by one only up close. a distant quad
+     * tree node is taken as the vehicles of every flock in it gathered at
+     * their centroid, moving with their summed velocity, as of the start of
+     * the tick, for alignment and cohesion. separation only counts the
+     * neighbours looked at one by one, unless {@link
+     * FlockEngine#setFarFieldSeparation} makes the vehicles steer away from
+     * the centroids too
+     *
+     * @param openingAngle - the largest ratio of a node's width to its
+     *                     distance for the node to be aggregated
+     * @return the number of neighbours, counting the vehicles of the
+     * aggregated nodes whose flock centroid is in sight
+     */
+    int steerFarField(float openingAngle) {
+        nearNeighbours.clear();
+        farAlignment.set(0, 0);
+        farCohesion.set(0, 0);
+        farSeparation.set(0, 0);
+        farCount = 0;
+        farFlockmates = 0;
+        separateFromCentroids = engine.isFarFieldSeparation();
+        // the tree holds the positions from the start of the tick, and
+        // vehicles move at most maxSpeed since
+        engine.getQuadTree().queryFarField(position.x, position.y, visionRadius + maxSpeed, openingAngle, maxSpeed,
+                nearVisitor, farVisitor);
+        int total = gather(nearNeighbours, farAlignment, farCohesion, farSeparation) + farFlockmates;
+        int count = nearNeighbours.size() + farCount;
+        if (count != 0) {
+            int separated = nearNeighbours.size() + (separateFromCentroids ? farCount : 0);
+            steer(separated, total, farAlignment, farCohesion, farSeparation);
+        }
+        return count;
+    }
+
+    private void visitNear(Point<Vehicle> other) {
+        Vehicle v = other.getUserData();
+        if (v != this && isNeighbour(v)) {
+            nearNeighbours.add(v);
+        }
+    }
+
+    /**
+     * adds the flocks of an aggregated node whose centroids are in sight to
+     * the far field sums
+     *
+     * @param aggregates - the aggregates of the node
+     */
+    private void visitFar(float[] aggregates) {
+        for (int at = 0; at < aggregates.length; at += QuadTree.AGG_STRIDE) {
+            float count = aggregates[at + QuadTree.AGG_COUNT];
+            if (count == 0) continue;
+            float dx = aggregates[at + QuadTree.AGG_X] / count - position.x;
+            float dy = aggregates[at + QuadTree.AGG_Y] / count - position.y;
+            float distSq = dx * dx + dy * dy;
+            if (distSq > visionRadius * visionRadius || !inView(velocity.x, velocity.y, dx, dy, distSq)) {
+                continue;
+            }
+            farCount += (int) count;
+            if (at / QuadTree.AGG_STRIDE == flockNumber) {
+                farFlockmates += (int) count;
+                farAlignment.x += aggregates[at + QuadTree.AGG_VX];
+                farAlignment.y += aggregates[at + QuadTree.AGG_VY];
+                farCohesion.x += aggregates[at + QuadTree.AGG_X];
+                farCohesion.y += aggregates[at + QuadTree.AGG_Y];
+            }
+            if (separateFromCentroids && distSq != 0) {
+                float dist = (float) Math.sqrt(distSq);
+                farSeparation.x -= count * dx / dist;
+                farSeparation.y -= count * dy / dist;
+            }
+        }
+    }
+
+    /**
+     * calculates and returns the desired steering vector for this
+     * vehicle to move away from obstacles
+     *
+     * @param obstacles - the index of the obstacles in the world, only the
+     *                  cells around this vehicle are looked at
+     * @return the desired steering vector for obstacle avoidance for this vehicle
+     */
+
+    PVector obstacleAvoidance(ObstacleIndex obstacles) {
+        PVector steering = new PVector();
+
+        int cx = obstacles.cellX(position.x);
+        int cy = obstacles.cellY(position.y);
+        for (int row = Math.max(0, cy - 1); row <= Math.min(obstacles.rows - 1, cy + 1); row++) {
+            for (int col = Math.max(0, cx - 1); col <= Math.min(obstacles.columns - 1, cx + 1); col++) {
+                ArrayList<Obstacle> cell = obstacles.cell(col, row);
+                if (cell == null) continue;
+                for (Obstacle o :
+                        cell) {
+                    float dx = this.position.x - o.position.x;
+                    float dy = this.position.y - o.position.y;
+                    float range = (visionRadius + o.getObstacleSize()) * 1.25f;
+                    if (dx * dx + dy * dy <= range * range) {
+                        float dist = (float) Math.sqrt(dx * dx + dy * dy);
+                        PVector steerAwayVector = PVector.sub(this.position, o.position);
+                        steerAwayVector.setMag(maxSpeed);
+                        steerAwayVector.div((dist + o.getObstacleSize()) * 1.2f);
+                        steering.add(steerAwayVector);
+                    }
+                }
+            }
+        }
+        return steering;
+    }
+
+    /**
+     * calculates and returns the desired steering vector for this
+     * vehicle to move away from the edges of the screen
+     */
+    void avoidEdges() {
+        PVector desired = velocity.copy();
+        if (position.x < minDistanceFromEdge) {
+            desired.x = maxSpeed;
+        }
+        if (position.x > engine.getWidth() - minDistanceFromEdge) {
+            desired.x = -maxSpeed;
+        }
+        if (position.y < minDistanceFromEdge) {
+            desired.y = maxSpeed;
+        }
+        if (position.y > engine.getHeight() - minDistanceFromEdge) {
+            desired.y = -maxSpeed;
+        }
+        PVector steering = PVector.sub(desired, velocity);
+        steering.setMag(maxSpeed);
+        steering.limit(2 * maxForce);
+        applyForce(steering);
+    }
+
+    /**
+     * makes the vehicle flock with all other vehicles in its flock
+     *
+     * @param boids - the ArrayList of vehicles in this vehicles flock
+     */
+    void flock(ArrayList<Vehicle> boids) {
+        FrameMetrics metrics = engine.getMetrics();
+        PhaseCounters counters = metrics == null ? null : metrics.getCounters();
+        long start = counters == null ? 0 : System.nanoTime();
+        int k = engine.getTopologicalNeighbours(flockNumber);
+        float openingAngle = engine.getOpeningAngle();
+        if (engine.getNeighbourSearch() == FlockEngine.NeighbourSearch.QUAD_TREE && openingAngle > 0 && k == 0) {
+            // the steering sums are gathered along with the search
+            int count = steerFarField(openingAngle);
+            if (counters != null) {
+                start = counters.lap(PhaseCounters.Phase.NEIGHBOUR_SEARCH, start);
+                counters.neighbours(count);
+            }
+            if (count != 0) {
+                PVector obstacleAvoidance = obstacleAvoidance(engine.getObstacleIndex());
+                acceleration.add(obstacleAvoidance.mult(OBSTACLE_AVOIDANCE_COEFFICIENT));
+                if (counters != null) counters.lap(PhaseCounters.Phase.OBSTACLES, start);
+            }
+            return;
+        }
+        // loop through the boids and find neighbours
+        ArrayList<Vehicle> neighbours;
+        switch (engine.getNeighbourSearch()) {
+            case QUAD_TREE:
+                neighbours = this.getNeighboursQuad();
+                break;
+            case GRID:
+                neighbours = this.getNeighboursGrid(boids);
+                break;
+            default:
+                neighbours = this.getNeighbours(boids);
+        }
+        if (k > 0) {
+            neighbours = nearest(neighbours, k);
+        }
+        if (counters != null) {
+            start = counters.lap(PhaseCounters.Phase.NEIGHBOUR_SEARCH, start);
+            counters.neighbours(neighbours.size());
+        }
+        if (neighbours.size() != 0) {
+            steer(neighbours);
+            if (counters != null) start = counters.lap(PhaseCounters.Phase.STEERING, start);
+            PVector obstacleAvoidance = obstacleAvoidance(engine.getObstacleIndex());
+            acceleration.add(obstacleAvoidance.mult(OBSTACLE_AVOIDANCE_COEFFICIENT));
+            if (counters != null) counters.lap(PhaseCounters.Phase.OBSTACLES, start);
+        }
+    }
+
+    /**
+     * if the vehicle exits the screen, moves it to the other side of
+     * the screen
+     */
+    void edges() {
+        if (position.x < -RENDER_BUFFER)
+            position.x = engine.getWidth() + RENDER_BUFFER;
+        if (position.x > engine.getWidth() + RENDER_BUFFER)
+            position.x = -RENDER_BUFFER;
+        if (position.y < -RENDER_BUFFER)
+            position.y = engine.getHeight() + RENDER_BUFFER;
+        if (position.y > engine.getHeight() + RENDER_BUFFER)
+            position.y = -RENDER_BUFFER;
+    }
+
+    /**
+     * displays the vehicle
+     *
+     * @param g - the graphics to draw the vehicle on
+     */
+    void display(PGraphics g) {
+        display(g, position.x, position.y, velocity.heading(), flockNumber);
+    }
+
+    /**
+     * displays a vehicle with the given state
+     *
+     * @param g           - the graphics to draw the vehicle on
+     * @param x           - the vehicle's x coordinate
+     * @param y           - the vehicle's y coordinate
+     * @param heading     - the heading of the vehicle's velocity
+     * @param flockNumber - the number of the flock of the vehicle
+     */
+    static void display(PGraphics g, float x, float y, float heading, int flockNumber) {
+        PVector color = BoidSimulation.colorArray[flockNumber];
+        float r = 6 + flockNumber % 2;
+        // Draw a triangle rotated in the direction of velocity
+        float theta = heading + PConstants.PI / 2;
+        g.fill(color.x, color.y, color.z);
+        g.noStroke();
+        g.pushMatrix();
+        g.translate(x, y);
+        g.rotate(theta);
+        g.beginShape();
+        g.vertex(0, -r * 2);
+        g.vertex(-r, r * 2);
+        g.vertex(r, r * 2);
+        g.endShape(PConstants.CLOSE);
+        g.popMatrix();
+    }
+
+    float getVelocityX() {
+        return velocity.x;
+    }
+
+    float getVelocityY() {
+        return velocity.y;
+    }
+
+    float getAccelerationX() {
+        return acceleration.x;
+    }
+
+    float getAccelerationY() {
+        return acceleration.y;
+    }
+
+    int getFlockNumber() {
+        return flockNumber;
+    }
+
+    PVector getCoefficientVector() {
+        return coefficientVector;
+    }
+
+    @Override
+    public float getX() {
+        return position.x;
+    }
+
+    @Override
+    public float getY() {
+        return position.y;
+    }
+}
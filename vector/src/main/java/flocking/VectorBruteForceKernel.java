@@ -0,0 +1,183 @@
+package flocking;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorBruteForceKernel class - the brute force steering sums of {@link
+ * ArrayStepper}, computed for as many candidates per instruction as the
+ * CPU's widest vectors hold. the distance test, the vision cone test and
+ * the flockmate test are lane masks, and the sums are masked lane-wise
+ * additions reduced once per vehicle
+ * <p>
+ * the vision cone is tested in float, and the candidates too close to its
+ * edges for float precision are tested again by {@link Vehicle#inView}, so
+ * the neighbours are the ones the scalar loop finds. the sums are added in
+ * a different order than the scalar loop, so they may differ from it in
+ * the last bits
+ */
+final class VectorBruteForceKernel implements BruteForceKernel {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+    // the cosines bounding the blind spot between the vision angles
+    private static final float BLIND_SPOT_MIN_COS = (float) Math.cos(Vehicle.MAX_VISION_ANGLE);
+    private static final float BLIND_SPOT_MAX_COS = (float) Math.cos(Vehicle.MIN_VISION_ANGLE);
+    // the relative error of the float cone test is a few ulps, so a
+    // candidate closer to an edge than this may be on either side of it
+    private static final float VIEW_TOLERANCE = 1e-5f;
+
+    /**
+     * constructor
+     *
+     * @throws UnsupportedOperationException if the CPU has no vectors of
+     *                                       at least two floats
+     */
+    public VectorBruteForceKernel() {
+        if (FLOATS.length() < 2) {
+            throw new UnsupportedOperationException("no float vectors on this CPU");
+        }
+    }
+
+    @Override
+    public void accumulate(FlockArrays flock, int i, float visionRadiusSq, float[] sums) {
+        float[] posX = flock.posX;
+        float[] posY = flock.posY;
+        float[] velX = flock.velX;
+        float[] velY = flock.velY;
+        int[] flockNumbers = flock.flockNumber;
+        int n = flock.size();
+        float x = posX[i];
+        float y = posY[i];
+        float vx = flock.velX[i];
+        float vy = flock.velY[i];
+        float speed = (float) Math.sqrt(vx * vx + vy * vy);
+        int flockNumber = flockNumbers[i];
+
+        int count = 0;
+        int mates = 0;
+        FloatVector ax = FloatVector.zero(FLOATS);
+        FloatVector ay = FloatVector.zero(FLOATS);
+        FloatVector cx = FloatVector.zero(FLOATS);
+        FloatVector cy = FloatVector.zero(FLOATS);
+        FloatVector sx = FloatVector.zero(FLOATS);
+        FloatVector sy = FloatVector.zero(FLOATS);
+        int lanes = FLOATS.length();
+        int bound = FLOATS.loopBound(n);
+        int j = 0;
+        for (; j < bound; j += lanes) {
+            FloatVector px = FloatVector.fromArray(FLOATS, posX, j);
+            FloatVector py = FloatVector.fromArray(FLOATS, posY, j);
+            FloatVector dx = px.sub(x);
+            FloatVector dy = py.sub(y);
+            FloatVector distSq = dx.mul(dx).add(dy.mul(dy));
+            VectorMask<Float> neighbours = distSq.compare(VectorOperators.LE, visionRadiusSq);
+            if (i >= j && i < j + lanes) {
+                neighbours = neighbours.andNot(VectorMask.fromLong(FLOATS, 1L << (i - j)));
+            }
+            if (!neighbours.anyTrue()) continue;
+
+            // the vision cone, as Vehicle.inView: blind where
+            // min cos * |v||d| <= dot <= max cos * |v||d|, for a non zero |v||d|
+            FloatVector dist = distSq.sqrt();
+            FloatVector dot = dx.mul(vx).add(dy.mul(vy));
+            FloatVector mag = dist.mul(speed);
+            FloatVector low = mag.mul(BLIND_SPOT_MIN_COS);
+            FloatVector high = mag.mul(BLIND_SPOT_MAX_COS);
+            VectorMask<Float> blind = dot.compare(VectorOperators.GE, low)
+                    .and(dot.compare(VectorOperators.LE, high))
+                    .and(mag.compare(VectorOperators.NE, 0));
+            FloatVector tolerance = mag.mul(VIEW_TOLERANCE);
+            VectorMask<Float> unsure = dot.sub(low).abs().compare(VectorOperators.LE, tolerance)
+                    .or(dot.sub(high).abs().compare(VectorOperators.LE, tolerance))
+                    .and(neighbours);
+            neighbours = neighbours.andNot(blind);
+            if (unsure.anyTrue()) {
+                neighbours = retestView(neighbours, unsure, posX, posY, j, x, y, vx, vy);
+            }
+            count += neighbours.trueCount();
+
+            VectorMask<Integer> sameFlock = IntVector.fromArray(INTS, flockNumbers, j)
+                    .compare(VectorOperators.EQ, flockNumber);
+            VectorMask<Float> flockmates = sameFlock.cast(FLOATS).and(neighbours);
+            if (flockmates.anyTrue()) {
+                mates += flockmates.trueCount();
+                ax = ax.add(FloatVector.fromArray(FLOATS, velX, j), flockmates);
+                ay = ay.add(FloatVector.fromArray(FLOATS, velY, j), flockmates);
+                cx = cx.add(px, flockmates);
+                cy = cy.add(py, flockmates);
+            }
+
+            VectorMask<Float> apart = neighbours.and(distSq.compare(VectorOperators.NE, 0));
+            sx = sx.add(dx.neg().div(dist), apart);
+            sy = sy.add(dy.neg().div(dist), apart);
+        }
+
+        float alignmentX = ax.reduceLanes(VectorOperators.ADD);
+        float alignmentY = ay.reduceLanes(VectorOperators.ADD);
+        float cohesionX = cx.reduceLanes(VectorOperators.ADD);
+        float cohesionY = cy.reduceLanes(VectorOperators.ADD);
+        float separationX = sx.reduceLanes(VectorOperators.ADD);
+        float separationY = sy.reduceLanes(VectorOperators.ADD);
+        // the candidates that do not fill a whole vector
+        for (; j < n; j++) {
+            if (j == i) continue;
+            float dx = posX[j] - x;
+            float dy = posY[j] - y;
+            float distSq = dx * dx + dy * dy;
+            if (distSq > visionRadiusSq || !Vehicle.inView(vx, vy, dx, dy, distSq)) continue;
+            count++;
+            if (flockNumbers[j] == flockNumber) {
+                mates++;
+                alignmentX += velX[j];
+                alignmentY += velY[j];
+                cohesionX += posX[j];
+                cohesionY += posY[j];
+            }
+            if (distSq != 0) {
+                float dist = (float) Math.sqrt(distSq);
+                separationX += (x - posX[j]) / dist;
+                separationY += (y - posY[j]) / dist;
+            }
+        }
+
+        sums[NEIGHBOURS] = count;
+        sums[FLOCKMATES] = mates;
+        sums[ALIGNMENT_X] = alignmentX;
+        sums[ALIGNMENT_Y] = alignmentY;
+        sums[COHESION_X] = cohesionX;
+        sums[COHESION_Y] = cohesionY;
+        sums[SEPARATION_X] = separationX;
+        sums[SEPARATION_Y] = separationY;
+    }
+
+    /**
+     * tests the vision cone of the given lanes again as {@link
+     * Vehicle#inView} does
+     *
+     * @param neighbours - the neighbours found by the float test
+     * @param unsure     - the lanes to test again
+     * @param j          - the id of the first lane
+     * @return the neighbours, with the unsure lanes set by the scalar test
+     */
+    private static VectorMask<Float> retestView(VectorMask<Float> neighbours, VectorMask<Float> unsure,
+                                                float[] posX, float[] posY, int j, float x, float y,
+                                                float vx, float vy) {
+        long bits = neighbours.toLong();
+        long lanes = unsure.toLong();
+        while (lanes != 0) {
+            int lane = Long.numberOfTrailingZeros(lanes);
+            lanes &= lanes - 1;
+            float dx = posX[j + lane] - x;
+            float dy = posY[j + lane] - y;
+            if (Vehicle.inView(vx, vy, dx, dy, dx * dx + dy * dy)) {
+                bits |= 1L << lane;
+            } else {
+                bits &= ~(1L << lane);
+            }
+        }
+        return VectorMask.fromLong(FLOATS, bits);
+    }
+}
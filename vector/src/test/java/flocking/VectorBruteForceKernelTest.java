@@ -0,0 +1,74 @@
+package flocking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * checks that the vectorized kernel finds the neighbours the scalar brute
+ * force loop finds, and gathers the same sums up to the order they are
+ * added in
+ */
+class VectorBruteForceKernelTest {
+    private static final FlockParameters PARAMETERS = new FlockParameters(60, 4, 0.2f);
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Test
+    void sumsMatchTheScalarLoop() {
+        FlockEngine engine = new FlockEngine(WIDTH, HEIGHT, 21, FlockEngine.StorageMode.ARRAYS, PARAMETERS);
+        engine.populate(3, 150);
+        engine.step(20);
+        FlockArrays flock = engine.getArrays();
+        addOnVisionCone(flock, 0);
+        addOnVisionCone(flock, 1);
+        // a vehicle on top of another, and one standing still
+        flock.add(flock.posX[2], flock.posY[2], flock.velX[2], flock.velY[2], flock.flockNumber[2], 1, 1, 1);
+        flock.add(flock.posX[3] + 5, flock.posY[3], 0, 0, flock.flockNumber[3], 1, 1, 1);
+
+        VectorBruteForceKernel kernel = new VectorBruteForceKernel();
+        ArrayStepper stepper = new ArrayStepper(PARAMETERS);
+        float visionRadiusSq = PARAMETERS.visionRadius * PARAMETERS.visionRadius;
+        float[] expected = new float[BruteForceKernel.SUMS];
+        float[] actual = new float[BruteForceKernel.SUMS];
+        for (int i = 0; i < flock.size(); i++) {
+            stepper.accumulateBruteForce(flock, i, expected);
+            kernel.accumulate(flock, i, visionRadiusSq, actual);
+            float count = expected[BruteForceKernel.NEIGHBOURS];
+            assertEquals(count, actual[BruteForceKernel.NEIGHBOURS], "neighbours of " + i);
+            assertEquals(expected[BruteForceKernel.FLOCKMATES], actual[BruteForceKernel.FLOCKMATES],
+                    "flockmates of " + i);
+            // float sums of count terms, bounded by the speed, the world and 1
+            assertSum(expected, actual, BruteForceKernel.ALIGNMENT_X, count * PARAMETERS.maxSpeed);
+            assertSum(expected, actual, BruteForceKernel.ALIGNMENT_Y, count * PARAMETERS.maxSpeed);
+            assertSum(expected, actual, BruteForceKernel.COHESION_X, count * WIDTH);
+            assertSum(expected, actual, BruteForceKernel.COHESION_Y, count * HEIGHT);
+            assertSum(expected, actual, BruteForceKernel.SEPARATION_X, count);
+            assertSum(expected, actual, BruteForceKernel.SEPARATION_Y, count);
+        }
+    }
+
+    private static void assertSum(float[] expected, float[] actual, int k, float bound) {
+        assertEquals(expected[k], actual[k], 1e-5f * bound + 1e-6f);
+    }
+
+    /**
+     * adds vehicles around the given one at the angles its blind spot starts
+     * and ends at, on both sides, where the float and double cone tests may
+     * disagree
+     */
+    private static void addOnVisionCone(FlockArrays flock, int i) {
+        double heading = Math.atan2(flock.velY[i], flock.velX[i]);
+        for (float angle : new float[]{Vehicle.MIN_VISION_ANGLE, Vehicle.MAX_VISION_ANGLE}) {
+            for (int side = -1; side <= 1; side += 2) {
+                for (int ulps = -2; ulps <= 2; ulps++) {
+                    double a = heading + side * (angle + ulps * Math.ulp(angle));
+                    for (float r = 7; r < PARAMETERS.visionRadius; r += 13) {
+                        flock.add(flock.posX[i] + r * (float) Math.cos(a), flock.posY[i] + r * (float) Math.sin(a),
+                                1, 0, (flock.flockNumber[i] + ulps + 2) % 3, 1, 1, 1);
+                    }
+                }
+            }
+        }
+    }
+}